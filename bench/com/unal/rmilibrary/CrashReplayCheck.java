@@ -0,0 +1,237 @@
+// CrashReplayCheck.java
+package com.unal.rmilibrary;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Verificación de caída y recuperación del log del motor en memoria (InventoryLog).
+//
+// En cada ronda un proceso hijo retoma el log donde quedó y escribe registros sin parar
+// (informando por la salida cada seq confirmado) hasta que se lo mata a la fuerza. Luego
+// se reaplica el log y se comprueba que los seq son consecutivos desde 1, que cada registro
+// trae sus datos intactos y que no se perdió ninguno confirmado. Cada tantas rondas se
+// corta a mano el último registro (como una escritura a medio hacer): la recuperación debe
+// descartarlo con un aviso y la ronda siguiente debe continuar desde el anterior.
+//
+// Al final se daña un registro de un segmento viejo, con segmentos válidos después: la
+// recuperación debe fallar en lugar de saltarse esos registros. Termina con código 1 si
+// algo no se cumple.
+//
+// Uso:
+//   java -cp "out;bench-out" com.unal.rmilibrary.CrashReplayCheck [--rounds 20] [--segment-kb 64]
+public class CrashReplayCheck {
+
+    private static final int OVERHEAD = 4 + 8 + 4;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 3 && args[0].equals("--child")) {
+            child(Path.of(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+        int rounds = 20;
+        int segmentKb = 64;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--rounds": rounds = Integer.parseInt(args[i + 1]); break;
+                case "--segment-kb": segmentKb = Integer.parseInt(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+            }
+        }
+        Path dir = Files.createTempDirectory("library-crash-");
+        boolean ok = true;
+        try {
+            long last = 0;
+            for (int round = 1; round <= rounds; round++) {
+                long acked = runChild(dir, segmentKb << 10);
+                long recovered = verify(dir);
+                boolean roundOk = recovered >= acked && recovered >= last;
+                boolean torn = false;
+                if (roundOk && round % 4 == 0 && recovered > last) {
+                    // Simula un registro a medio escribir al final del log
+                    tearLastRecord(dir);
+                    long after = verify(dir);
+                    torn = true;
+                    roundOk = after == recovered - 1;
+                    recovered = after;
+                }
+                System.out.printf(Locale.ROOT, "{\"round\":%d,\"acked\":%d,\"recovered\":%d,\"tornTail\":%b,"
+                        + "\"segments\":%d,\"ok\":%b}%n", round, acked, recovered, torn, segments(dir).size(), roundOk);
+                ok &= roundOk;
+                last = recovered;
+            }
+
+            // Un registro dañado en medio del log, con registros válidos después, no se salta
+            List<Path> segments = segments(dir);
+            boolean failedLoudly = false;
+            if (segments.size() >= 2) {
+                corruptFirstRecord(segments.get(0));
+                try {
+                    InventoryLog.replay(dir, 0, (seq, in) -> { });
+                } catch (IOException ex) {
+                    failedLoudly = true;
+                    System.out.println("Recuperación con un hueco en el log: " + ex.getMessage());
+                }
+            }
+            System.out.printf(Locale.ROOT, "{\"check\":\"gapFailsLoudly\",\"ok\":%b}%n", failedLoudly);
+            ok &= failedLoudly;
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+        System.out.println(ok ? "OK: la recuperación cumple en todas las rondas" : "FALLÓ");
+        System.exit(ok ? 0 : 1);
+    }
+
+    // Lanza el hijo, lo mata después de un rato y retorna el último seq que confirmó
+    private static long runChild(Path dir, int segmentBytes) throws Exception {
+        Process p = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), CrashReplayCheck.class.getName(),
+                "--child", dir.toString(), String.valueOf(segmentBytes))
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        AtomicLong acked = new AtomicLong();
+        Thread reader = new Thread(() -> {
+            try (BufferedReader r = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
+                for (String line = r.readLine(); line != null; line = r.readLine()) {
+                    acked.set(Long.parseLong(line.trim()));
+                }
+            } catch (IOException | NumberFormatException ex) {
+                // El hijo murió a mitad de una línea: vale la última completa
+            }
+        });
+        reader.start();
+        // Esperar a que el hijo empiece a escribir y matarlo en un momento al azar
+        long started = acked.get();
+        while (acked.get() == started && p.isAlive()) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(ThreadLocalRandom.current().nextInt(20, 200));
+        p.destroyForcibly();
+        p.waitFor();
+        reader.join();
+        return acked.get();
+    }
+
+    // Reaplica el log comprobando seq consecutivos y datos intactos; retorna el último seq
+    private static long verify(Path dir) throws IOException {
+        long[] expected = {1};
+        long last = InventoryLog.replay(dir, 0, (seq, in) -> {
+            if (seq != expected[0]) {
+                throw new IOException("Se esperaba el seq " + expected[0] + " y llegó " + seq);
+            }
+            if (!Arrays.equals(payload(seq), in.readAllBytes())) {
+                throw new IOException("Datos alterados en el seq " + seq);
+            }
+            expected[0]++;
+        });
+        if (last != expected[0] - 1) {
+            throw new IOException("replay informó " + last + " pero entregó hasta " + (expected[0] - 1));
+        }
+        return last;
+    }
+
+    // Proceso hijo: retoma el log y escribe lotes de 1 a 8 registros hasta que lo maten
+    private static void child(Path dir, int segmentBytes) throws IOException {
+        long last = InventoryLog.replay(dir, 0, (seq, in) -> { });
+        try (InventoryLog log = new InventoryLog(dir, segmentBytes, last, false)) {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            for (;;) {
+                int n = rnd.nextInt(1, 9);
+                List<byte[]> records = new ArrayList<>(n);
+                for (int i = 1; i <= n; i++) {
+                    records.add(payload(last + i));
+                }
+                last = log.append(records);
+                System.out.println(last);
+                System.out.flush();
+            }
+        }
+    }
+
+    // Datos de un registro, derivados de su seq para poder verificarlos
+    private static byte[] payload(long seq) {
+        byte[] data = new byte[8 + (int) (seq % 57)];
+        for (int i = 0; i < 8; i++) {
+            data[i] = (byte) (seq >>> (56 - 8 * i));
+        }
+        for (int i = 8; i < data.length; i++) {
+            data[i] = (byte) (seq * 31 + i);
+        }
+        return data;
+    }
+
+    // Cambia un byte de datos del último registro del segmento más nuevo que tenga alguno
+    private static void tearLastRecord(Path dir) throws IOException {
+        List<Path> segments = segments(dir);
+        for (int s = segments.size() - 1; s >= 0; s--) {
+            List<Long> offsets = recordOffsets(segments.get(s));
+            if (!offsets.isEmpty()) {
+                flipDataByte(segments.get(s), offsets.get(offsets.size() - 1));
+                return;
+            }
+        }
+    }
+
+    private static void corruptFirstRecord(Path segment) throws IOException {
+        List<Long> offsets = recordOffsets(segment);
+        if (!offsets.isEmpty()) {
+            flipDataByte(segment, offsets.get(0));
+        }
+    }
+
+    private static void flipDataByte(Path segment, long offset) throws IOException {
+        try (RandomAccessFile f = new RandomAccessFile(segment.toFile(), "rw")) {
+            long pos = offset + 4 + 8; // primer byte de datos
+            f.seek(pos);
+            int b = f.read();
+            f.seek(pos);
+            f.write(b ^ 0xff);
+        }
+    }
+
+    // Posición de cada registro del segmento (sin validar el crc)
+    private static List<Long> recordOffsets(Path segment) throws IOException {
+        List<Long> out = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(segment))) {
+            long size = Files.size(segment);
+            long pos = 0;
+            while (pos + OVERHEAD <= size) {
+                int len = in.readInt();
+                if (len <= 0 || pos + OVERHEAD + len > size) {
+                    break;
+                }
+                out.add(pos);
+                in.skipNBytes(8L + len + 4);
+                pos += OVERHEAD + len;
+            }
+        }
+        return out;
+    }
+
+    private static List<Path> segments(Path dir) throws IOException {
+        List<Path> out = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "log-*.wal")) {
+            for (Path p : ds) {
+                out.add(p);
+            }
+        }
+        out.sort(null);
+        return out;
+    }
+}
@@ -0,0 +1,422 @@
+// LibraryBenchmark.java
+package com.unal.rmilibrary;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+// Benchmark del servicio de la biblioteca.
+//
+// Para cada tamaño de BD, cada modo (LibraryServiceImpl llamado en el mismo proceso,
+// 'inproc', o RMI por un registry local), cada operación y cada cantidad de hilos,
+// corre un calentamiento y luego mide durante unos segundos: operaciones por segundo
+// y percentiles de latencia. Solo las respuestas exitosas entran en el histograma; las
+// demás (NO_COPIES, RESERVED, BUSY...) se cuentan aparte por código, y las excepciones
+// también. Los préstamos medidos se devuelven sin medir para que el stock no cambie.
+// Los resultados se escriben en JSON para comparar corridas y detectar regresiones.
+//
+// La BD se arma desde cero en un archivo temporal: db/seed.sql más libros y
+// préstamos históricos sintéticos. La configuración del DAO (pool, caché,
+// group commit, PRAGMAs) se toma de las mismas propiedades -Dlibrary.* del servidor.
+//
+// Uso:
+//   java -cp "out;bench-out;lib/sqlite-jdbc-3.36.0.3.jar" com.unal.rmilibrary.LibraryBenchmark
+//        [--books 1000,100000] [--loans 0,1000000] [--threads 1,4,16]
+//        [--ops query,loanByISBN,loanByTitle,returnBook] [--modes inproc,rmi]
+//        [--warmup 2] [--seconds 5] [--seed db/seed.sql] [--out bench-results.json]
+//        [--drop-indexes] [--rmi-port 1199]
+public class LibraryBenchmark {
+
+    // Ejemplares por libro sintético: los préstamos casi nunca fallan por falta de copias
+    private static final int SYNTHETIC_COPIES = 1_000_000;
+
+    // Tamaño del contador de fallos por código (ResponseStatus.INTERNAL_ERROR es el mayor)
+    private static final int STATUS_CODES = ResponseStatus.INTERNAL_ERROR + 1;
+
+    private static final String[] ALL_OPS = {"query", "loanByISBN", "loanByTitle", "returnBook"};
+
+    public static void main(String[] args) throws Exception {
+        Options opt = Options.parse(args);
+        ServerConfig config = ServerConfig.fromSystemProperties();
+        List<String> results = new ArrayList<>();
+
+        System.out.println("Configuración: " + config);
+        for (int books : opt.books) {
+            for (int loans : opt.loans) {
+                Path dbFile = Files.createTempFile("library-bench-", ".db");
+                String url = "jdbc:sqlite:" + dbFile.toAbsolutePath();
+                // El motor en memoria guarda su log y snapshots en una carpeta propia por corrida
+                Path memoryDir = Files.createTempDirectory("library-bench-mem-");
+                config.memoryDir = memoryDir.toString();
+                try {
+                    // La BD se llena antes de crear el servicio: el motor en memoria, el índice
+                    // de búsqueda y OverdueTracker cargan su estado al arrancar. Las tablas las
+                    // crea BookDAO, igual que en el servidor
+                    new BookDAO(url, new ServerConfig()).close();
+                    List<String> isbns = new ArrayList<>();
+                    List<String> titles = new ArrayList<>();
+                    populate(url, opt.seed, books, loans, isbns, titles);
+                    System.out.printf("BD: %d libros, %d préstamos históricos%n", isbns.size(), loans);
+
+                    LibraryServiceImpl service = new LibraryServiceImpl(url, config);
+                    if (opt.dropIndexes) {
+                        // Después de crear el servicio, que vuelve a crear los índices que falten
+                        dropIndexes(url);
+                    }
+
+                    for (String mode : opt.modes) {
+                        LibraryService target = service;
+                        Registry registry = null;
+                        if (mode.equals("rmi")) {
+                            registry = LocateRegistry.createRegistry(opt.rmiPort);
+                            registry.rebind("LibraryService", service);
+                            target = (LibraryService) registry.lookup("LibraryService");
+                        }
+                        for (String op : opt.ops) {
+                            for (int threads : opt.threads) {
+                                Result r = run(target, op, threads, opt, isbns, titles);
+                                String json = r.toJson(mode, op, threads, isbns.size(), loans);
+                                System.out.println(json);
+                                results.add(json);
+                            }
+                        }
+                        if (registry != null) {
+                            registry.unbind("LibraryService");
+                            UnicastRemoteObject.unexportObject(registry, true);
+                        }
+                    }
+                    UnicastRemoteObject.unexportObject(service, true);
+                    service.close();
+                } finally {
+                    deleteTree(memoryDir);
+                    Files.deleteIfExists(dbFile);
+                    Files.deleteIfExists(Paths.get(dbFile + "-wal"));
+                    Files.deleteIfExists(Paths.get(dbFile + "-shm"));
+                }
+            }
+        }
+
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(opt.out, StandardCharsets.UTF_8))) {
+            out.println("[");
+            out.println("  " + String.join(",\n  ", results));
+            out.println("]");
+        }
+        System.out.println("Resultados en " + opt.out.toAbsolutePath());
+        System.exit(0); // el registry RMI deja hilos vivos
+    }
+
+    // Carga db/seed.sql y agrega libros y préstamos sintéticos en una sola transacción
+    private static void populate(String url, Path seed, int books, int loans,
+                                 List<String> isbns, List<String> titles) throws SQLException, IOException {
+        try (Connection conn = DriverManager.getConnection(url)) {
+            conn.setAutoCommit(false);
+            if (seed != null && Files.exists(seed)) {
+                // seed.sql repite algunos ISBN: se ignoran los duplicados
+                String sql = new String(Files.readAllBytes(seed), StandardCharsets.UTF_8)
+                        .replace("INSERT INTO", "INSERT OR IGNORE INTO");
+                try (Statement st = conn.createStatement()) {
+                    for (String stmt : sql.split(";\\s*(\\r?\\n|$)")) {
+                        if (!stmt.trim().isEmpty()) {
+                            st.executeUpdate(stmt);
+                        }
+                    }
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT OR IGNORE INTO books(isbn, title, author, total_copies, available_copies) VALUES (?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < books; i++) {
+                    ps.setString(1, syntheticIsbn(i));
+                    ps.setString(2, "Synthetic Title " + i);
+                    ps.setString(3, "Author " + (i % 5000));
+                    ps.setInt(4, SYNTHETIC_COPIES);
+                    ps.setInt(5, SYNTHETIC_COPIES);
+                    ps.addBatch();
+                    if (i % 10_000 == 9_999) {
+                        ps.executeBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+            try (PreparedStatement ps = conn.prepareStatement("SELECT isbn, title FROM books");
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    isbns.add(rs.getString(1));
+                    titles.add(rs.getString(2));
+                }
+            }
+            // Préstamos históricos ya devueltos: hacen crecer 'loans' como en producción
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO loans(isbn, user_id, loan_date, due_date, returned) VALUES (?, ?, ?, ?, 1)")) {
+                String today = LocalDate.now().toString();
+                for (int i = 0; i < loans; i++) {
+                    ps.setString(1, isbns.get(i % isbns.size()));
+                    ps.setString(2, "hist-" + (i % 50_000));
+                    ps.setString(3, today);
+                    ps.setString(4, today);
+                    ps.addBatch();
+                    if (i % 10_000 == 9_999) {
+                        ps.executeBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+            conn.commit();
+        }
+    }
+
+    // Quita todos los índices que crea BookDAO (para medir el "antes"). Se buscan en
+    // sqlite_master: dejar alguno (por ejemplo idx_loans_user_id) le daría a SQLite otro
+    // camino para returnBook y el "antes" saldría mejor de lo que es. Solo quedan las
+    // claves primarias
+    private static void dropIndexes(String url) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url); Statement st = conn.createStatement()) {
+            List<String> names = new ArrayList<>();
+            try (ResultSet rs = st.executeQuery(
+                    "SELECT name FROM sqlite_master WHERE type = 'index' AND sql IS NOT NULL")) {
+                while (rs.next()) {
+                    names.add(rs.getString(1));
+                }
+            }
+            for (String name : names) {
+                st.executeUpdate("DROP INDEX IF EXISTS \"" + name + "\"");
+            }
+            System.out.println("Índices quitados: " + String.join(", ", names));
+        }
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path f : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(f);
+            }
+        }
+    }
+
+    private static String syntheticIsbn(int i) {
+        return String.format("bench-%09d", i);
+    }
+
+    // Corre una operación con N hilos: calentamiento y luego medición
+    private static Result run(LibraryService service, String op, int threads, Options opt,
+                              List<String> isbns, List<String> titles) throws InterruptedException {
+        runPhase(service, op, threads, opt.warmupSeconds, isbns, titles, new LatencyHistogram(),
+                new AtomicLongArray(STATUS_CODES), new AtomicLong());
+        LatencyHistogram histogram = new LatencyHistogram();
+        AtomicLongArray failed = new AtomicLongArray(STATUS_CODES);
+        AtomicLong errors = new AtomicLong();
+        long elapsed = runPhase(service, op, threads, opt.seconds, isbns, titles, histogram, failed, errors);
+        return new Result(histogram, failed, errors.get(), elapsed);
+    }
+
+    // Ejecuta la operación en bucle en cada hilo durante 'seconds'; retorna la duración real (ns)
+    // Las respuestas no exitosas se suman en 'failed' (índice = código de ResponseStatus) y
+    // las excepciones en 'errors'
+    private static long runPhase(LibraryService service, String op, int threads, int seconds,
+                                 List<String> isbns, List<String> titles, LatencyHistogram histogram,
+                                 AtomicLongArray failed, AtomicLong errors)
+            throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] window = new long[2];
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String userId = "bench-user-" + t;
+            Thread w = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                    long end = window[1];
+                    while (System.nanoTime() < end) {
+                        int i = rnd.nextInt(isbns.size());
+                        String isbn = isbns.get(i);
+                        // Una excepción cuenta para esa iteración y el hilo sigue midiendo
+                        try {
+                            long t0;
+                            long t1;
+                            int status;
+                            switch (op) {
+                                case "query":
+                                    t0 = System.nanoTime();
+                                    status = service.queryByISBN(isbn).status;
+                                    t1 = System.nanoTime();
+                                    break;
+                                case "loanByISBN":
+                                    t0 = System.nanoTime();
+                                    status = service.loanByISBN(isbn, userId).status;
+                                    t1 = System.nanoTime();
+                                    if (ResponseStatus.isSuccess(status)) {
+                                        service.returnBook(isbn, userId); // sin medir: repone el stock
+                                    }
+                                    break;
+                                case "loanByTitle":
+                                    t0 = System.nanoTime();
+                                    status = service.loanByTitle(titles.get(i), userId).status;
+                                    t1 = System.nanoTime();
+                                    if (ResponseStatus.isSuccess(status)) {
+                                        // Los títulos sintéticos son únicos: el ejemplar es el de ese ISBN
+                                        service.returnBook(isbn, userId);
+                                    }
+                                    break;
+                                default:
+                                    // returnBook: se presta (sin medir) y se mide solo la devolución
+                                    status = service.loanByISBN(isbn, userId).status;
+                                    if (!ResponseStatus.isSuccess(status)) {
+                                        failed.incrementAndGet(status);
+                                        continue;
+                                    }
+                                    t0 = System.nanoTime();
+                                    status = service.returnBook(isbn, userId).status;
+                                    t1 = System.nanoTime();
+                                    break;
+                            }
+                            if (ResponseStatus.isSuccess(status)) {
+                                histogram.record(t1 - t0);
+                            } else {
+                                failed.incrementAndGet(status);
+                            }
+                        } catch (Exception ex) {
+                            if (errors.getAndIncrement() == 0) {
+                                ex.printStackTrace(); // solo la primera, para no inundar la salida
+                            }
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "bench-" + op + "-" + t);
+            workers.add(w);
+            w.start();
+        }
+        window[0] = System.nanoTime();
+        window[1] = window[0] + seconds * 1_000_000_000L;
+        start.countDown();
+        done.await();
+        if (errors.get() > 0) {
+            System.err.println("Llamadas con excepción en " + op + ": " + errors.get());
+        }
+        return System.nanoTime() - window[0];
+    }
+
+    // Resultado de una medición
+    private static final class Result {
+        final LatencyHistogram histogram; // solo respuestas exitosas
+        final AtomicLongArray failed;
+        final long errors;
+        final long elapsedNanos;
+
+        Result(LatencyHistogram histogram, AtomicLongArray failed, long errors, long elapsedNanos) {
+            this.histogram = histogram;
+            this.failed = failed;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        String toJson(String mode, String op, int threads, int books, int loans) {
+            double opsPerSec = histogram.getCount() * 1e9 / elapsedNanos;
+            long failedTotal = 0;
+            StringBuilder byStatus = new StringBuilder();
+            for (int status = 0; status < failed.length(); status++) {
+                long n = failed.get(status);
+                if (n > 0) {
+                    failedTotal += n;
+                    byStatus.append(byStatus.length() == 0 ? "" : ",").append('"').append(status).append("\":").append(n);
+                }
+            }
+            return String.format(Locale.ROOT,
+                    "{\"mode\":\"%s\",\"op\":\"%s\",\"threads\":%d,\"books\":%d,\"historicalLoans\":%d,"
+                            + "\"ops\":%d,\"opsPerSec\":%.1f,\"meanUs\":%.1f,\"p50Us\":%.1f,\"p99Us\":%.1f,"
+                            + "\"p999Us\":%.1f,\"maxUs\":%.1f,\"failed\":%d,\"failedByStatus\":{%s},\"errors\":%d}",
+                    mode, op, threads, books, loans, histogram.getCount(), opsPerSec,
+                    histogram.getMean() / 1000.0, histogram.percentile(50) / 1000.0,
+                    histogram.percentile(99) / 1000.0, histogram.percentile(99.9) / 1000.0,
+                    histogram.getMax() / 1000.0, failedTotal, byStatus, errors);
+        }
+    }
+
+    // Opciones de línea de comandos
+    private static final class Options {
+        int[] books = {1_000};
+        int[] loans = {0};
+        int[] threads = {1, 4, 16};
+        String[] ops = ALL_OPS;
+        String[] modes = {"inproc", "rmi"};
+        int warmupSeconds = 2;
+        int seconds = 5;
+        Path seed = Paths.get("db", "seed.sql");
+        Path out = Paths.get("bench-results.json");
+        boolean dropIndexes = false;
+        int rmiPort = 1199;
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                if (a.equals("--drop-indexes")) {
+                    o.dropIndexes = true;
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Falta el valor de " + a);
+                }
+                String v = args[++i];
+                switch (a) {
+                    case "--books": o.books = ints(v); break;
+                    case "--loans": o.loans = ints(v); break;
+                    case "--threads": o.threads = ints(v); break;
+                    case "--ops": o.ops = v.split(","); break;
+                    case "--modes":
+                        o.modes = v.split(",");
+                        for (String m : o.modes) {
+                            if (!m.equals("inproc") && !m.equals("rmi")) {
+                                throw new IllegalArgumentException("Modo desconocido: " + m + " (inproc o rmi)");
+                            }
+                        }
+                        break;
+                    case "--warmup": o.warmupSeconds = Integer.parseInt(v); break;
+                    case "--seconds": o.seconds = Integer.parseInt(v); break;
+                    case "--seed": o.seed = v.isEmpty() ? null : Paths.get(v); break;
+                    case "--out": o.out = Paths.get(v); break;
+                    case "--rmi-port": o.rmiPort = Integer.parseInt(v); break;
+                    default: throw new IllegalArgumentException("Opción desconocida: " + a);
+                }
+            }
+            return o;
+        }
+
+        private static int[] ints(String csv) {
+            String[] parts = csv.split(",");
+            int[] r = new int[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                r[i] = Integer.parseInt(parts[i].trim().replace("_", ""));
+            }
+            return r;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+// StripeStress.java
+package com.unal.rmilibrary;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Prueba de estrés de los candados por franja de ISBN de BookDAO.
+//
+// N hilos prestan y devuelven en bucle, todos sobre el mismo ISBN ("same", se serializan
+// en una franja) o cada uno sobre el suyo ("distinct", franjas distintas). Mientras corre,
+// un hilo revisa que ningún libro quede con disponibles negativos; al final se comprueba
+// que los contadores cierran: disponibles = total - préstamos sin devolver, y préstamos y
+// devoluciones registrados en la BD = los confirmados a los hilos. Informa operaciones por
+// segundo para cada cantidad de hilos. Termina con código 1 si algo no cierra.
+//
+// Uso:
+//   java -cp "out;bench-out;lib/sqlite-jdbc-3.36.0.3.jar" com.unal.rmilibrary.StripeStress
+//        [--threads 1,2,4,8] [--seconds 3] [--copies 4]
+public class StripeStress {
+
+    public static void main(String[] args) throws Exception {
+        int[] threads = {1, 2, 4, 8};
+        int seconds = 3;
+        int copies = 4;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--threads": threads = ints(args[i + 1]); break;
+                case "--seconds": seconds = Integer.parseInt(args[i + 1]); break;
+                case "--copies": copies = Integer.parseInt(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+            }
+        }
+        boolean ok = true;
+        for (String mode : new String[]{"same", "distinct"}) {
+            for (int n : threads) {
+                ok &= run(mode, n, seconds, copies);
+            }
+        }
+        System.out.println(ok ? "OK: todos los contadores cierran" : "FALLÓ: hay contadores que no cierran");
+        System.exit(ok ? 0 : 1);
+    }
+
+    // Una corrida sobre una BD nueva; retorna si los contadores cierran
+    private static boolean run(String mode, int threads, int seconds, int copies) throws Exception {
+        Path dbFile = Files.createTempFile("library-stress-", ".db");
+        String url = "jdbc:sqlite:" + dbFile.toAbsolutePath();
+        try {
+            BookDAO dao = new BookDAO(url, ServerConfig.fromSystemProperties());
+            int books = mode.equals("same") ? 1 : threads;
+            try (Connection conn = DriverManager.getConnection(url);
+                 PreparedStatement ps = conn.prepareStatement("INSERT INTO books VALUES (?, ?, 'Stress', ?, ?)")) {
+                for (int b = 0; b < books; b++) {
+                    ps.setString(1, isbn(b));
+                    ps.setString(2, "Stress " + b);
+                    ps.setInt(3, copies);
+                    ps.setInt(4, copies);
+                    ps.executeUpdate();
+                }
+            }
+
+            AtomicLong loans = new AtomicLong();
+            AtomicLong noCopies = new AtomicLong();
+            AtomicLong returns = new AtomicLong();
+            AtomicLong failures = new AtomicLong();
+            AtomicBoolean stop = new AtomicBoolean();
+            AtomicLong minSeen = new AtomicLong(Long.MAX_VALUE);
+
+            // Revisa en paralelo que no aparezcan disponibles negativos
+            Thread checker = new Thread(() -> {
+                try (Connection conn = DriverManager.getConnection(url);
+                     PreparedStatement ps = conn.prepareStatement("SELECT MIN(available_copies) FROM books")) {
+                    while (!stop.get()) {
+                        try (ResultSet rs = ps.executeQuery()) {
+                            rs.next();
+                            minSeen.accumulateAndGet(rs.getLong(1), Math::min);
+                        }
+                    }
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                    failures.incrementAndGet();
+                }
+            }, "stress-checker");
+
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String isbn = isbn(mode.equals("same") ? 0 : t);
+                String userId = "stress-" + t;
+                Thread w = new Thread(() -> {
+                    try {
+                        start.await();
+                        while (!stop.get()) {
+                            LoanResponse l = dao.loanByISBN(isbn, userId);
+                            if (l.status == ResponseStatus.NO_COPIES) {
+                                noCopies.incrementAndGet();
+                                continue;
+                            }
+                            if (l.status != ResponseStatus.LOANED) {
+                                failures.incrementAndGet();
+                                continue;
+                            }
+                            loans.incrementAndGet();
+                            if (dao.queryByISBN(isbn).get().availableCopies < 0) {
+                                failures.incrementAndGet();
+                            }
+                            if (dao.returnBook(isbn, userId).status == ResponseStatus.RETURNED) {
+                                returns.incrementAndGet();
+                            } else {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    } catch (Exception ex) {
+                        ex.printStackTrace();
+                        failures.incrementAndGet();
+                    }
+                }, "stress-" + t);
+                workers.add(w);
+                w.start();
+            }
+            checker.start();
+            long t0 = System.nanoTime();
+            start.countDown();
+            Thread.sleep(seconds * 1000L);
+            stop.set(true);
+            for (Thread w : workers) {
+                w.join();
+            }
+            long elapsed = System.nanoTime() - t0;
+            checker.join();
+            dao.close();
+
+            // Los contadores de la BD deben coincidir con lo confirmado a los hilos
+            long dbLoans;
+            long dbReturned;
+            long mismatched;
+            try (Connection conn = DriverManager.getConnection(url)) {
+                dbLoans = single(conn, "SELECT COUNT(*) FROM loans");
+                dbReturned = single(conn, "SELECT COUNT(*) FROM loans WHERE returned = 1");
+                mismatched = single(conn, "SELECT COUNT(*) FROM books b WHERE b.available_copies <> "
+                        + "b.total_copies - (SELECT COUNT(*) FROM loans l WHERE l.isbn = b.isbn AND l.returned = 0)");
+            }
+            boolean ok = failures.get() == 0 && minSeen.get() >= 0 && mismatched == 0
+                    && dbLoans == loans.get() && dbReturned == returns.get();
+            System.out.printf(Locale.ROOT, "{\"mode\":\"%s\",\"threads\":%d,\"opsPerSec\":%.0f,\"loans\":%d,"
+                            + "\"returns\":%d,\"noCopies\":%d,\"minAvailable\":%d,\"dbLoans\":%d,\"dbReturned\":%d,"
+                            + "\"mismatchedBooks\":%d,\"failures\":%d,\"ok\":%b}%n",
+                    mode, threads, (loans.get() + returns.get()) * 1e9 / elapsed, loans.get(), returns.get(),
+                    noCopies.get(), minSeen.get(), dbLoans, dbReturned, mismatched, failures.get(), ok);
+            return ok;
+        } finally {
+            Files.deleteIfExists(dbFile);
+            Files.deleteIfExists(Paths.get(dbFile + "-wal"));
+            Files.deleteIfExists(Paths.get(dbFile + "-shm"));
+        }
+    }
+
+    private static long single(Connection conn, String sql) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static String isbn(int i) {
+        return String.format("stress-%04d", i);
+    }
+
+    private static int[] ints(String csv) {
+        String[] parts = csv.split(",");
+        int[] r = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            r[i] = Integer.parseInt(parts[i].trim());
+        }
+        return r;
+    }
+}
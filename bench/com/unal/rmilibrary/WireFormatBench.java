@@ -0,0 +1,134 @@
+// WireFormatBench.java
+package com.unal.rmilibrary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Locale;
+
+// Compara la forma en la red de LoanResponse, QueryResponse y ReturnResponse: la
+// serialización por defecto que tenían antes (campos públicos, mensaje y LocalDate) contra
+// la actual (código de ResponseStatus enviado como CompactResponse).
+//
+// Cada respuesta se escribe en un ObjectOutputStream nuevo, como hace RMI en cada llamada
+// (los descriptores de clase viajan cada vez). Informa bytes por objeto y ns por operación
+// de serializar, de deserializar y de ida y vuelta.
+//
+// Uso:
+//   java -cp "out;bench-out" com.unal.rmilibrary.WireFormatBench [--iterations 200000]
+public class WireFormatBench {
+
+    // ---- Forma anterior (copia de las clases antes del formato compacto) ----
+
+    static class LegacyLoanResponse implements Serializable {
+        public final boolean success;
+        public final String message;
+        public final LocalDate dueDate;
+
+        LegacyLoanResponse(boolean success, String message, LocalDate dueDate) {
+            this.success = success;
+            this.message = message;
+            this.dueDate = dueDate;
+        }
+    }
+
+    static class LegacyQueryResponse implements Serializable {
+        public final boolean found;
+        public final String title;
+        public final int totalCopies;
+        public final int availableCopies;
+
+        LegacyQueryResponse(boolean found, String title, int totalCopies, int availableCopies) {
+            this.found = found;
+            this.title = title;
+            this.totalCopies = totalCopies;
+            this.availableCopies = availableCopies;
+        }
+    }
+
+    static class LegacyReturnResponse implements Serializable {
+        public final boolean success;
+        public final String message;
+
+        LegacyReturnResponse(boolean success, String message) {
+            this.success = success;
+            this.message = message;
+        }
+    }
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = 200_000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--iterations")) {
+                iterations = Integer.parseInt(args[i + 1]);
+            } else {
+                throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+            }
+        }
+        LocalDate due = LocalDate.now().plusDays(14);
+        String title = "El Señor de los Anillos: La Comunidad del Anillo";
+
+        compare("loan", iterations,
+                new LegacyLoanResponse(true, ResponseStatus.message(ResponseStatus.LOANED, null), due),
+                new LoanResponse(ResponseStatus.LOANED, due));
+        compare("loanNoCopies", iterations,
+                new LegacyLoanResponse(false, ResponseStatus.message(ResponseStatus.NO_COPIES, null), null),
+                new LoanResponse(ResponseStatus.NO_COPIES, null));
+        compare("query", iterations,
+                new LegacyQueryResponse(true, title, 5, 3),
+                new QueryResponse(true, title, 5, 3));
+        compare("queryNotFound", iterations,
+                new LegacyQueryResponse(false, "", 0, 0),
+                new QueryResponse(false, "", 0, 0));
+        compare("return", iterations,
+                new LegacyReturnResponse(true, ResponseStatus.message(ResponseStatus.RETURNED, null)),
+                new ReturnResponse(ResponseStatus.RETURNED));
+    }
+
+    private static void compare(String name, int iterations, Object legacy, Object compact) throws Exception {
+        report(name, "serializable", legacy, iterations);
+        report(name, "compact", compact, iterations);
+    }
+
+    private static void report(String name, String form, Object value, int iterations) throws Exception {
+        byte[] bytes = write(value);
+        // Calentamiento para que el JIT compile ambos caminos antes de medir
+        for (int i = 0; i < iterations / 4; i++) {
+            sink = read(write(value));
+        }
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = write(value);
+        }
+        long t1 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = read(bytes);
+        }
+        long t2 = System.nanoTime();
+        double writeNs = (t1 - t0) / (double) iterations;
+        double readNs = (t2 - t1) / (double) iterations;
+        System.out.printf(Locale.ROOT, "{\"response\":\"%s\",\"form\":\"%s\",\"bytes\":%d,\"writeNs\":%.0f,"
+                        + "\"readNs\":%.0f,\"roundTripNs\":%.0f}%n",
+                name, form, bytes.length, writeNs, readNs, writeNs + readNs);
+    }
+
+    private static byte[] write(Object value) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(buf)) {
+            out.writeObject(value);
+        }
+        return buf.toByteArray();
+    }
+
+    private static Object read(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+}
@@ -1,4 +1,10 @@
 -- schema.sql
+-- WAL: lecturas y escrituras concurrentes sin bloquearse entre sí (persistente en el archivo)
+PRAGMA journal_mode = WAL;
+-- synchronous y busy_timeout son por conexión; el servidor los aplica a cada conexión del pool
+PRAGMA synchronous = NORMAL;
+PRAGMA busy_timeout = 5000;
+
 CREATE TABLE IF NOT EXISTS books (
   isbn TEXT PRIMARY KEY,
   title TEXT NOT NULL,
@@ -16,3 +22,16 @@ CREATE TABLE IF NOT EXISTS loans (
   returned INTEGER NOT NULL DEFAULT 0,
   FOREIGN KEY(isbn) REFERENCES books(isbn)
 );
+
+-- Préstamo activo de un usuario (returnBook)
+CREATE INDEX IF NOT EXISTS idx_loans_isbn_user_returned ON loans(isbn, user_id, returned);
+
+-- Búsqueda exacta por título (loanByTitle)
+CREATE INDEX IF NOT EXISTS idx_books_title ON books(title);
+
+-- Historial de préstamos de un usuario por páginas (listLoans)
+CREATE INDEX IF NOT EXISTS idx_loans_user_id ON loans(user_id, id);
+
+-- Préstamos activos por fecha de devolución (carga de OverdueTracker); índice parcial,
+-- no crece con el historial de préstamos devueltos
+CREATE INDEX IF NOT EXISTS idx_loans_active ON loans(due_date, id) WHERE returned = 0;
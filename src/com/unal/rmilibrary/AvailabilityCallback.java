@@ -0,0 +1,15 @@
+// AvailabilityCallback.java
+package com.unal.rmilibrary;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+// Objeto remoto que exporta el cliente para recibir avisos de disponibilidad
+// (ver LibraryService.subscribeAvailability). No se publica en el registro RMI
+public interface AvailabilityCallback extends Remote {
+
+    // Se liberó un ejemplar del ISBN y queda reservado para 'userId' hasta 'holdUntil'
+    // (milisegundos desde 1970): en ese tiempo solo ese usuario puede llevárselo.
+    // 'book' es el estado del libro al reservarlo
+    void available(String isbn, String userId, QueryResponse book, long holdUntil) throws RemoteException;
+}
@@ -0,0 +1,385 @@
+// AvailabilityNotifier.java
+package com.unal.rmilibrary;
+
+import java.rmi.RemoteException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Avisos de disponibilidad (ver LibraryService.subscribeAvailability), para que los
+// clientes no tengan que consultar una y otra vez un libro sin ejemplares.
+//
+// Por cada ISBN con usuarios esperando guarda la fila de espera (en orden de suscripción),
+// las reservas vigentes y el último estado que avisó el motor (InventoryListener). Cuando
+// hay más disponibles que reservas (típicamente una devolución lleva el libro de 0 a 1),
+// el primero de la fila recibe una reserva por holdWindowMillis y su aviso se encola: unos
+// pocos hilos llaman a los clientes por RMI, así la devolución nunca espera a un cliente.
+// Mientras dura la reserva los motores no prestan ese ejemplar a otros (HoldGate); si vence
+// sin préstamo pasa al siguiente de la fila. Un suscriptor que no responde (falla, o no
+// contesta en library.notify.timeoutMs, ver LibraryServer) se descarta de todas las filas
+// y su reserva pasa al siguiente. Como un cliente que se cae sin avisar solo se nota al
+// enviarle un aviso, cada suscripción vence a las library.notify.subscriptionTtlSec y un
+// barrido periódico la saca de la fila; volver a suscribirse la renueva sin perder el turno
+public class AvailabilityNotifier implements InventoryListener, LoanListener, HoldGate, AutoCloseable {
+
+    // Avisos en cola como máximo; si se llena el aviso se pierde (la reserva sigue vigente)
+    static final int MAX_QUEUED = 10_000;
+
+    // Cada cuánto se barren las suscripciones vencidas, como máximo
+    private static final long MAX_SWEEP_MILLIS = 60_000;
+
+    private final long holdWindowMillis;
+    private final long subscriptionTtlMillis;
+    private final ThreadPoolExecutor senders;
+    private final ScheduledExecutorService expiry;
+
+    // Solo los ISBN con usuarios esperando o reservas; sin suscripciones está vacío
+    private final Map<String, Watch> watches = new ConcurrentHashMap<>();
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong pruned = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong lapsed = new AtomicLong(); // suscripciones vencidas sin aviso
+
+    // Un usuario en la fila: su callback y cuándo vence la suscripción (ms)
+    private static final class Waiter {
+        final AvailabilityCallback callback;
+        final long expiresAt;
+
+        Waiter(AvailabilityCallback callback, long expiresAt) {
+            this.callback = callback;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    // Un ISBN observado. Todo se protege con el monitor del propio Watch
+    private static final class Watch {
+        final Map<String, Waiter> waiters = new LinkedHashMap<>();               // usuario -> en espera
+        final Map<String, Long> holds = new HashMap<>();                         // usuario -> vence (ms)
+        QueryResponse state;        // último estado conocido; null hasta el primero
+        volatile int holdCount;     // holds.size(), para no tomar el monitor si no hay reservas
+        boolean removed;            // ya no está en 'watches': hay que crear otro
+
+        boolean isIdle() {
+            return waiters.isEmpty() && holds.isEmpty();
+        }
+    }
+
+    public AvailabilityNotifier(int holdWindowSec, int notifyThreads, int subscriptionTtlSec) {
+        this.holdWindowMillis = TimeUnit.SECONDS.toMillis(holdWindowSec);
+        this.subscriptionTtlMillis = TimeUnit.SECONDS.toMillis(subscriptionTtlSec);
+        AtomicInteger n = new AtomicInteger();
+        this.senders = new ThreadPoolExecutor(notifyThreads, notifyThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED), r -> {
+                    Thread t = new Thread(r, "availability-notify-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.expiry = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hold-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+        long sweep = Math.min(subscriptionTtlMillis, MAX_SWEEP_MILLIS);
+        this.expiry.scheduleWithFixedDelay(this::sweepLapsed, sweep, sweep, TimeUnit.MILLISECONDS);
+    }
+
+    // ---- Suscripciones ----
+
+    // Pone al usuario en la fila del ISBN (si ya estaba, solo cambia su callback y renueva
+    // el vencimiento, conservando el turno). No hace nada si ya tiene una reserva de ese libro
+    public void subscribe(String isbn, String userId, AvailabilityCallback callback) {
+        for (;;) {
+            Watch w = watches.computeIfAbsent(isbn, k -> new Watch());
+            synchronized (w) {
+                if (w.removed) {
+                    continue; // se quitó entre computeIfAbsent y el monitor
+                }
+                if (!w.holds.containsKey(userId)) {
+                    w.waiters.put(userId, new Waiter(callback, System.currentTimeMillis() + subscriptionTtlMillis));
+                }
+                grant(isbn, w);
+                return;
+            }
+        }
+    }
+
+    // Estado del libro leído después de suscribirse. Solo se usa si el motor todavía no
+    // avisó ningún cambio del ISBN (un aviso del motor siempre es más reciente)
+    public void seen(String isbn, QueryResponse state) {
+        Watch w = watches.get(isbn);
+        if (w == null) {
+            return;
+        }
+        synchronized (w) {
+            if (w.state == null) {
+                w.state = state;
+                grant(isbn, w);
+            }
+        }
+    }
+
+    // Saca al usuario de la fila del ISBN y suelta su reserva, si la tiene
+    public void unsubscribe(String isbn, String userId) {
+        Watch w = watches.get(isbn);
+        if (w == null) {
+            return;
+        }
+        synchronized (w) {
+            w.waiters.remove(userId);
+            if (w.holds.remove(userId) != null) {
+                grant(isbn, w);
+            }
+        }
+        removeIfIdle(isbn, w);
+    }
+
+    // ---- Avisos del motor ----
+
+    @Override
+    public void changed(String isbn, QueryResponse state) {
+        Watch w = watches.get(isbn);
+        if (w == null) {
+            return;
+        }
+        synchronized (w) {
+            w.state = state;
+            grant(isbn, w);
+        }
+    }
+
+    // El préstamo del usuario que tenía la reserva la consume. No se reserva nada más: se
+    // llevó justo el ejemplar reservado (y el motor en memoria avisa el préstamo antes que
+    // el cambio de inventario, así que el estado guardado todavía cuenta ese ejemplar)
+    @Override
+    public void loaned(LoanRecord loan) {
+        Watch w = watches.get(loan.isbn);
+        if (w == null || w.holdCount == 0) {
+            return;
+        }
+        synchronized (w) {
+            if (w.holds.remove(loan.userId) == null) {
+                return;
+            }
+            w.holdCount = w.holds.size();
+        }
+        removeIfIdle(loan.isbn, w);
+    }
+
+    // Las devoluciones llegan como cambio de inventario (changed)
+    @Override
+    public void returned(String isbn, String userId) {
+    }
+
+    @Override
+    public int heldForOthers(String isbn, String userId) {
+        Watch w = watches.get(isbn);
+        if (w == null || w.holdCount == 0) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        int n = 0;
+        synchronized (w) {
+            for (Map.Entry<String, Long> h : w.holds.entrySet()) {
+                if (h.getValue() > now && !h.getKey().equals(userId)) {
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public boolean watched(String isbn) {
+        return watches.containsKey(isbn);
+    }
+
+    // ---- Reservas ----
+
+    // Reserva los ejemplares libres para los primeros de la fila y encola sus avisos.
+    // Se llama con el monitor del Watch tomado
+    private void grant(String isbn, Watch w) {
+        QueryResponse state = w.state;
+        if (state != null && state.found) {
+            int free = state.availableCopies - w.holds.size();
+            Iterator<Map.Entry<String, Waiter>> it = w.waiters.entrySet().iterator();
+            while (free > 0 && it.hasNext()) {
+                Map.Entry<String, Waiter> next = it.next();
+                String userId = next.getKey();
+                AvailabilityCallback callback = next.getValue().callback;
+                it.remove();
+                long until = System.currentTimeMillis() + holdWindowMillis;
+                w.holds.put(userId, until);
+                free--;
+                schedule(() -> expire(isbn, userId, until), holdWindowMillis);
+                send(isbn, userId, callback, state, until);
+            }
+        }
+        w.holdCount = w.holds.size();
+    }
+
+    // La reserva venció sin préstamo: el ejemplar pasa al siguiente de la fila
+    private void expire(String isbn, String userId, long until) {
+        Watch w = watches.get(isbn);
+        if (w == null) {
+            return;
+        }
+        synchronized (w) {
+            Long current = w.holds.get(userId);
+            if (current == null || current != until) {
+                return; // ya la usó, la soltó o tiene otra más nueva
+            }
+            w.holds.remove(userId);
+            expired.incrementAndGet();
+            grant(isbn, w);
+        }
+        removeIfIdle(isbn, w);
+    }
+
+    // Saca de las filas las suscripciones vencidas (hilo hold-expiry). No se avisa al cliente:
+    // si sigue esperando, vuelve a suscribirse
+    private void sweepLapsed() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Watch> e : watches.entrySet()) {
+            Watch w = e.getValue();
+            synchronized (w) {
+                Iterator<Waiter> it = w.waiters.values().iterator();
+                while (it.hasNext()) {
+                    if (it.next().expiresAt <= now) {
+                        it.remove();
+                        lapsed.incrementAndGet();
+                    }
+                }
+            }
+            removeIfIdle(e.getKey(), w);
+        }
+    }
+
+    // Quita el ISBN si nadie espera ni tiene reservas (el monitor del Watch no debe estar tomado)
+    private void removeIfIdle(String isbn, Watch w) {
+        watches.computeIfPresent(isbn, (k, current) -> {
+            if (current != w) {
+                return current;
+            }
+            synchronized (w) {
+                if (!w.isIdle()) {
+                    return w;
+                }
+                w.removed = true;
+                return null;
+            }
+        });
+    }
+
+    private void schedule(Runnable task, long delayMillis) {
+        try {
+            expiry.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            // Apagándose: las reservas ya no importan
+        }
+    }
+
+    // ---- Envío ----
+
+    // Encola el aviso sin esperar: si la cola está llena se cuenta como perdido
+    private void send(String isbn, String userId, AvailabilityCallback callback, QueryResponse state, long until) {
+        try {
+            senders.execute(() -> deliver(isbn, userId, callback, state, until));
+        } catch (RejectedExecutionException ex) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void deliver(String isbn, String userId, AvailabilityCallback callback, QueryResponse state, long until) {
+        try {
+            callback.available(isbn, userId, state, until);
+            sent.incrementAndGet();
+        } catch (RemoteException ex) {
+            // También llega aquí si el cliente no contesta a tiempo (SocketTimeoutException dentro)
+            System.err.println("Suscriptor de disponibilidad descartado (" + userId + "): " + ex.getMessage());
+            unsubscribe(isbn, userId);
+            prune(callback);
+        }
+    }
+
+    // Quita de todas las filas las suscripciones de un callback que dejó de responder
+    private void prune(AvailabilityCallback callback) {
+        long n = 1; // la del aviso que falló
+        for (Map.Entry<String, Watch> e : watches.entrySet()) {
+            Watch w = e.getValue();
+            synchronized (w) {
+                Iterator<Waiter> it = w.waiters.values().iterator();
+                while (it.hasNext()) {
+                    if (it.next().callback.equals(callback)) {
+                        it.remove();
+                        n++;
+                    }
+                }
+            }
+            removeIfIdle(e.getKey(), w);
+        }
+        pruned.addAndGet(n);
+    }
+
+    // ---- Contadores ----
+
+    // Usuarios esperando en todas las filas
+    public long getWaiting() {
+        long n = 0;
+        for (Watch w : watches.values()) {
+            synchronized (w) {
+                n += w.waiters.size();
+            }
+        }
+        return n;
+    }
+
+    // Reservas vigentes
+    public long getHolds() {
+        long n = 0;
+        for (Watch w : watches.values()) {
+            n += w.holdCount;
+        }
+        return n;
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getPruned() {
+        return pruned.get();
+    }
+
+    public long getLapsed() {
+        return lapsed.get();
+    }
+
+    public String describeStats() {
+        return "avisos de disponibilidad: esperando=" + getWaiting() + ", reservas=" + getHolds()
+                + ", enviados=" + sent.get() + ", perdidos=" + dropped.get()
+                + ", suscriptores descartados=" + pruned.get() + ", reservas vencidas=" + expired.get()
+                + ", suscripciones vencidas=" + lapsed.get();
+    }
+
+    @Override
+    public void close() {
+        senders.shutdownNow();
+        expiry.shutdownNow();
+    }
+}
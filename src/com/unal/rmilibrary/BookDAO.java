@@ -1,21 +1,124 @@
 // BookDAO.java
 package com.unal.rmilibrary;
 
+import com.unal.rmilibrary.ConnectionPool.PooledConnection;
+
 import java.sql.*;              // Librerías JDBC para trabajar con SQLite
 import java.time.LocalDate;     // Manejo de fechas (préstamos, devoluciones)
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;      // Para devolver valores opcionales (puede o no haber resultado)
+import java.util.concurrent.locks.ReentrantLock; // Candados por franja de ISBN
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class BookDAO implements LibraryDAO {
+
+    // Número de franjas de candados: operaciones sobre ISBN distintos
+    // casi nunca comparten candado y pueden ejecutarse en paralelo
+    private static final int LOCK_STRIPES = 64;
+
+    // Carga en bloque: filas por executeBatch y por transacción. Lotes cortos: cada uno
+    // tiene tomadas sus franjas mientras corre y no debe frenar mucho a los préstamos
+    private static final int IMPORT_BATCH_ROWS = 1_000;
+
+    // Sentencias SQL (se preparan una vez por conexión y quedan en caché en el pool)
+    private static final String SQL_QUERY =
+            "SELECT title, total_copies, available_copies FROM books WHERE isbn = ?";
+    private static final String SQL_FIND_BY_TITLE =
+            "SELECT isbn, available_copies FROM books WHERE title = ? ORDER BY available_copies DESC";
+    private static final String SQL_TAKE_COPY =
+            "UPDATE books SET available_copies = available_copies - 1 WHERE isbn = ? AND available_copies > ?";
+    private static final String SQL_GIVE_BACK_COPY =
+            "UPDATE books SET available_copies = available_copies + 1 WHERE isbn = ?";
+    private static final String SQL_BOOK_EXISTS =
+            "SELECT 1 FROM books WHERE isbn = ?";
+    private static final String SQL_INSERT_LOAN =
+            "INSERT INTO loans(isbn, user_id, loan_date, due_date, returned) VALUES (?, ?, ?, ?, 0)";
+    private static final String SQL_ALL_BOOKS =
+            "SELECT isbn, title, author FROM books ORDER BY title, isbn";
+    private static final String SQL_LIST_BOOKS =
+            "SELECT isbn, title, author, total_copies, available_copies FROM books "
+                    + "WHERE isbn > ? ORDER BY isbn LIMIT ?";
+    private static final String SQL_LIST_LOANS =
+            "SELECT id, isbn, loan_date, due_date, returned FROM loans "
+                    + "WHERE user_id = ? AND id > ? ORDER BY id LIMIT ?";
+    // Si el ISBN ya existe se actualiza; los disponibles se mueven lo mismo que el total
+    private static final String SQL_UPSERT_BOOK =
+            "INSERT INTO books(isbn, title, author, total_copies, available_copies) VALUES (?, ?, ?, ?, ?) "
+                    + "ON CONFLICT(isbn) DO UPDATE SET title = excluded.title, author = excluded.author, "
+                    + "available_copies = MAX(0, available_copies + excluded.total_copies - total_copies), "
+                    + "total_copies = excluded.total_copies";
+    // Se marca el préstamo activo más antiguo del usuario para ese ISBN (igual que el motor en memoria)
+    private static final String SQL_MARK_RETURNED =
+            "UPDATE loans SET returned = 1 WHERE id = ("
+                    + "SELECT id FROM loans WHERE isbn = ? AND user_id = ? AND returned = 0 ORDER BY id LIMIT 1)";
+    private static final String SQL_LAST_ID =
+            "SELECT last_insert_rowid()";
+    // Recorre el índice parcial idx_loans_active: solo préstamos sin devolver
+    private static final String SQL_ACTIVE_LOANS =
+            "SELECT id, isbn, user_id, loan_date, due_date FROM loans WHERE returned = 0 ORDER BY due_date, id";
+
+    private final ConnectionPool pool; // Conexiones JDBC reutilizables (ej: "jdbc:sqlite:library.db")
+
+    // Caché write-through del inventario para queryByISBN
+    private final InventoryCache cache;
+
+    // Candados de escritura por franja de ISBN (las lecturas no toman candado)
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    // Escritor con group commit para préstamos y devoluciones individuales; null si está desactivado
+    private final GroupCommitWriter groupWriter;
+
+    // Tiempo en BD, espera de candados y errores por operación
+    private final LibraryMetrics metrics;
+
+    // Índice de títulos y autores para search (se arma al iniciar)
+    private final CatalogIndex index = new CatalogIndex();
 
-public class BookDAO {
+    // Recibe los cambios confirmados (replicación); null si no hay réplicas
+    private volatile InventoryListener listener;
 
-    private final String url; // Cadena de conexión JDBC (ej: "jdbc:sqlite:library.db")
+    // Recibe los préstamos y devoluciones confirmados (OverdueTracker)
+    private volatile LoanListener loanListener;
 
-    // Constructor: recibe la URL de conexión JDBC
-    // y asegura que las tablas 'books' y 'loans' existan (si no, las crea)
+    // Reservas de ejemplares para usuarios avisados (AvailabilityNotifier); null si no hay
+    private volatile HoldGate holdGate;
+
+    // Constructor: recibe la URL de conexión JDBC y usa la configuración por defecto
     public BookDAO(String jdbcUrl) throws SQLException {
-        this.url = jdbcUrl;
-        try (Connection conn = getConnection()) {
+        this(jdbcUrl, new ServerConfig());
+    }
+
+    // Constructor: recibe la URL de conexión JDBC y la configuración (pool y PRAGMAs),
+    // y asegura que las tablas 'books' y 'loans' y sus índices existan (si no, los crea)
+    public BookDAO(String jdbcUrl, ServerConfig config) throws SQLException {
+        this(jdbcUrl, config, new LibraryMetrics());
+    }
+
+    // Igual que el anterior, registrando los tiempos en 'metrics'
+    public BookDAO(String jdbcUrl, ServerConfig config, LibraryMetrics metrics) throws SQLException {
+        this.metrics = metrics;
+        // synchronous y busy_timeout son por conexión: se aplican a cada conexión del pool
+        this.pool = new ConnectionPool(jdbcUrl, config.poolSize, List.of(
+                "PRAGMA busy_timeout = " + config.busyTimeoutMs,
+                "PRAGMA synchronous = " + config.synchronous));
+        this.cache = new InventoryCache(config.cacheSize);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        try (PooledConnection conn = pool.acquire()) {
             // Inicializa tablas si no existen
-            try (Statement st = conn.createStatement()) {
+            try (Statement st = conn.connection().createStatement()) {
+                // WAL: los lectores no bloquean al escritor ni viceversa.
+                // Es persistente en el archivo de la BD, basta con activarlo una vez
+                st.execute("PRAGMA journal_mode = WAL");
+
                 // Tabla de libros: cada libro identificado por ISBN
                 st.executeUpdate("CREATE TABLE IF NOT EXISTS books ("
                         + "isbn TEXT PRIMARY KEY, "
@@ -32,180 +135,653 @@ public class BookDAO {
                         + "loan_date TEXT NOT NULL, "
                         + "due_date TEXT NOT NULL, "
                         + "returned INTEGER NOT NULL DEFAULT 0)");
+
+                // Índice para buscar el préstamo activo de un usuario en returnBook
+                st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_loans_isbn_user_returned "
+                        + "ON loans(isbn, user_id, returned)");
+
+                // Índice para loanByTitle (WHERE title = ?)
+                st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_books_title ON books(title)");
+
+                // Índice para listLoans (WHERE user_id = ? AND id > ? ORDER BY id)
+                st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_loans_user_id ON loans(user_id, id)");
+
+                // Índice parcial de los préstamos activos por fecha de devolución: no crece
+                // con el historial y permite cargar OverdueTracker sin recorrer toda la tabla
+                st.executeUpdate("CREATE INDEX IF NOT EXISTS idx_loans_active "
+                        + "ON loans(due_date, id) WHERE returned = 0");
+            }
+            loadIndex(conn);
+        }
+        this.groupWriter = config.groupCommit
+                ? new GroupCommitWriter(this, config.groupCommitMaxBatch, config.groupCommitMaxDelayMs)
+                : null;
+        metrics.attach(pool, cache, groupWriter);
+    }
+
+    // Pool de conexiones (para consultar sus contadores de uso y espera)
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    // Caché del inventario (para consultar aciertos, fallos y expulsiones)
+    public InventoryCache getCache() {
+        return cache;
+    }
+
+    // Índice de búsqueda del catálogo
+    @Override
+    public CatalogIndex getCatalogIndex() {
+        return index;
+    }
+
+    // Escritor de group commit, o null si está desactivado
+    public GroupCommitWriter getGroupWriter() {
+        return groupWriter;
+    }
+
+    // Contadores del pool y de la caché
+    @Override
+    public String describeStats() {
+        return pool.describeStats() + "\n" + cache.describeStats();
+    }
+
+    // Detiene el escritor de group commit y cierra las conexiones del pool
+    @Override
+    public void close() {
+        if (groupWriter != null) {
+            groupWriter.close();
+        }
+        pool.close();
+    }
+
+    // Devuelve la franja de candado a la que pertenece el ISBN.
+    // Las escrituras sobre un mismo ISBN quedan serializadas; las de ISBN distintos no.
+    private static int stripeOf(String isbn) {
+        return Math.floorMod(isbn.hashCode(), LOCK_STRIPES);
+    }
+
+    // Franjas (sin repetir y en orden ascendente) de un grupo de ISBN.
+    // Tomarlas siempre en el mismo orden evita interbloqueos entre lotes
+    private static int[] stripesOf(Collection<String> isbns) {
+        return isbns.stream().mapToInt(BookDAO::stripeOf).distinct().sorted().toArray();
+    }
+
+    // Trabajo a ejecutar dentro de una transacción abierta. Debe anotar en 'changed'
+    // el estado nuevo de cada libro que modifique, para publicarlo en la caché al confirmar
+    interface TxWork<T> {
+        T run(PooledConnection conn, TxChanges changed) throws SQLException;
+    }
+
+    // Lo que cambió una transacción: el estado nuevo de cada libro (caché y réplicas) y los
+    // préstamos y devoluciones (OverdueTracker). Se publica solo si la transacción se confirma
+    static final class TxChanges {
+        final Map<String, QueryResponse> books = new LinkedHashMap<>();
+        final List<Consumer<LoanListener>> loans = new ArrayList<>();
+
+        void addAll(TxChanges other) {
+            books.putAll(other.books);
+            loans.addAll(other.loans);
+        }
+    }
+
+    // Toma los candados de las franjas (en orden) y registra cuánto se esperó por ellos
+    private void lockAll(int[] stripes, OperationMetrics m) {
+        long start = System.nanoTime();
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+        }
+        m.recordLockWait(System.nanoTime() - start);
+    }
+
+    private void unlockAll(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            locks[stripes[i]].unlock();
+        }
+    }
+
+    // Avisa los cambios confirmados al listener. Se llama con los candados de los ISBN
+    // tomados, así los avisos de un mismo libro salen en el orden de sus commits
+    private void publish(TxChanges changed) {
+        InventoryListener l = listener;
+        if (l != null) {
+            changed.books.forEach(l::changed);
+        }
+        LoanListener ll = loanListener;
+        if (ll != null) {
+            for (Consumer<LoanListener> event : changed.loans) {
+                event.accept(ll);
             }
         }
     }
 
-    // Obtiene una conexión a la base de datos SQLite
-    private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(url);
+    @Override
+    public void setInventoryListener(InventoryListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void setLoanListener(LoanListener listener) {
+        this.loanListener = listener;
+    }
+
+    @Override
+    public void setHoldGate(HoldGate gate) {
+        this.holdGate = gate;
+    }
+
+    // Ejemplares del ISBN que 'userId' no puede llevarse porque están reservados para otros
+    private int heldForOthers(String isbn, String userId) {
+        HoldGate g = holdGate;
+        return g == null ? 0 : g.heldForOthers(isbn, userId);
     }
 
-    // Consulta un libro por su ISBN
+    // Ejecuta 'work' en una sola transacción con los candados de los ISBN indicados.
+    // Si no cambió nada se deshace; si falla, se responde con onError
+    private <T> T runWrite(OperationMetrics m, Collection<String> isbns, TxWork<T> work,
+                           Function<SQLException, T> onError) {
+        int[] stripes = stripesOf(isbns);
+        lockAll(stripes, m);
+        TxChanges changed = new TxChanges();
+        long dbStart = System.nanoTime();
+        try (PooledConnection conn = pool.acquire()) {
+            conn.begin(); // Transacción manual para consistencia
+            T result = work.run(conn, changed);
+            if (changed.books.isEmpty()) {
+                conn.rollback();
+            } else {
+                conn.commit(); // Confirmar transacción
+                // write-through, aún con los candados de los ISBN
+                changed.books.forEach(cache::put);
+                publish(changed);
+            }
+            return result;
+        } catch (SQLException ex) {
+            changed.books.keySet().forEach(cache::invalidate);
+            ex.printStackTrace();
+            m.error();
+            return onError.apply(ex);
+        } finally {
+            m.recordDbTime(System.nanoTime() - dbStart);
+            unlockAll(stripes);
+        }
+    }
+
+    // Escritura de una operación sobre un solo ISBN: pasa por el group commit si está
+    // activado, o corre en su propia transacción si no
+    private <T> T write(OperationMetrics m, String isbn, TxWork<T> work, Function<SQLException, T> onError) {
+        if (groupWriter != null) {
+            return groupWriter.submit(isbn, work, ex -> {
+                m.error();
+                return onError.apply(ex);
+            });
+        }
+        return runWrite(m, List.of(isbn), work, onError);
+    }
+
+    // Aplica un grupo de operaciones encoladas en una sola transacción (hilo del group commit).
+    // Cada operación recibe su respuesta solo después del commit
+    void runGroup(List<GroupCommitWriter.Pending<?>> group) {
+        List<String> isbns = new ArrayList<>(group.size());
+        for (GroupCommitWriter.Pending<?> p : group) {
+            isbns.add(p.isbn);
+        }
+        int[] stripes = stripesOf(isbns);
+        lockAll(stripes, metrics.groupCommit);
+        TxChanges changed = new TxChanges();
+        long dbStart = System.nanoTime();
+        metrics.groupCommit.begin();
+        try (PooledConnection conn = pool.acquire()) {
+            conn.begin();
+            for (GroupCommitWriter.Pending<?> p : group) {
+                p.execute(conn, changed);
+            }
+            if (changed.books.isEmpty()) {
+                conn.rollback();
+            } else {
+                conn.commit(); // un solo commit (y un solo fsync) para todo el grupo
+                changed.books.forEach(cache::put);
+                publish(changed);
+            }
+            for (GroupCommitWriter.Pending<?> p : group) {
+                p.complete();
+            }
+        } catch (SQLException ex) {
+            changed.books.keySet().forEach(cache::invalidate);
+            ex.printStackTrace();
+            metrics.groupCommit.error();
+            for (GroupCommitWriter.Pending<?> p : group) {
+                p.fail(ex);
+            }
+        } finally {
+            metrics.groupCommit.recordDbTime(System.nanoTime() - dbStart);
+            metrics.groupCommit.end(dbStart);
+            unlockAll(stripes);
+        }
+    }
+
+    // Consulta un libro por su ISBN (primero en la caché, luego en la BD)
     // Retorna un QueryResponse dentro de Optional si existe, o vacío si no
-    public synchronized Optional<QueryResponse> queryByISBN(String isbn) throws SQLException {
-        try (Connection conn = getConnection(); PreparedStatement ps = conn.prepareStatement(
-                "SELECT title, total_copies, available_copies FROM books WHERE isbn = ?")) {
-            ps.setString(1, isbn);
+    @Override
+    public Optional<QueryResponse> queryByISBN(String isbn) throws SQLException {
+        QueryResponse cached = cache.get(isbn);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        long dbStart = System.nanoTime();
+        try (PooledConnection conn = pool.acquire()) {
+            return Optional.ofNullable(loadBook(conn, isbn));
+        } finally {
+            metrics.queryByISBN.recordDbTime(System.nanoTime() - dbStart);
+        }
+    }
+
+    // Consulta varios libros con una sola conexión; el resultado va en el mismo orden
+    @Override
+    public List<Optional<QueryResponse>> queryMany(List<String> isbns) throws SQLException {
+        return queryMany(isbns, metrics.queryMany);
+    }
+
+    private List<Optional<QueryResponse>> queryMany(List<String> isbns, OperationMetrics m) throws SQLException {
+        List<Optional<QueryResponse>> results = new ArrayList<>(isbns.size());
+        PooledConnection conn = null;
+        long dbStart = 0;
+        try {
+            for (String isbn : isbns) {
+                QueryResponse r = cache.get(isbn);
+                if (r == null) {
+                    if (conn == null) {
+                        dbStart = System.nanoTime();
+                        conn = pool.acquire(); // solo si algún ISBN no estaba en caché
+                    }
+                    r = loadBook(conn, isbn);
+                }
+                results.add(Optional.ofNullable(r));
+            }
+        } finally {
+            if (conn != null) {
+                conn.close();
+                m.recordDbTime(System.nanoTime() - dbStart);
+            }
+        }
+        return results;
+    }
+
+    // Carga en el índice de búsqueda todos los libros, ordenados por título
+    private void loadIndex(PooledConnection conn) throws SQLException {
+        try (Statement st = conn.connection().createStatement();
+             ResultSet rs = st.executeQuery(SQL_ALL_BOOKS)) {
+            while (rs.next()) {
+                index.put(rs.getString("isbn"), rs.getString("title"), rs.getString("author"));
+            }
+        }
+    }
+
+    // Busca en el índice por título y/o autor y completa la página con el inventario
+    // actual (desde la caché o la BD). Los resultados salen en orden de título
+    @Override
+    public SearchResponse search(SearchQuery q) throws SQLException {
+        CatalogIndex.Page page = index.search(q.text, q.field, q.mode, q.offset, q.limit);
+        List<String> isbns = new ArrayList<>(page.hits.size());
+        for (CatalogIndex.Hit h : page.hits) {
+            isbns.add(h.isbn);
+        }
+        List<Optional<QueryResponse>> stock = queryMany(isbns, metrics.searchBooks);
+        List<BookSummary> books = new ArrayList<>(page.hits.size());
+        for (int i = 0; i < page.hits.size(); i++) {
+            CatalogIndex.Hit h = page.hits.get(i);
+            QueryResponse r = stock.get(i).orElse(null);
+            books.add(new BookSummary(h.isbn, h.title, h.author,
+                    r == null ? 0 : r.totalCopies, r == null ? 0 : r.availableCopies));
+        }
+        return new SearchResponse(books, page.total, q.offset);
+    }
+
+    // Página del catálogo por ISBN. Paginación por clave (isbn > ?) sobre la clave primaria:
+    // cada página cuesta lo mismo sin importar cuán adelante esté
+    @Override
+    public BookPage listBooks(String afterIsbn, int limit) throws SQLException {
+        long dbStart = System.nanoTime();
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(SQL_LIST_BOOKS);
+            ps.setString(1, afterIsbn == null ? "" : afterIsbn);
+            ps.setInt(2, limit + 1); // uno de más para saber si hay otra página
+            List<BookSummary> books = new ArrayList<>(limit);
+            boolean more = false;
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    // Se encontró el libro → devolver detalles
-                    return Optional.of(new QueryResponse(
-                            true,
-                            rs.getString("title"),
-                            rs.getInt("total_copies"),
-                            rs.getInt("available_copies")
-                    ));
-                } else {
-                    // No se encontró el libro
-                    return Optional.empty();
+                while (rs.next()) {
+                    if (books.size() == limit) {
+                        more = true;
+                        break;
+                    }
+                    books.add(new BookSummary(rs.getString("isbn"), rs.getString("title"), rs.getString("author"),
+                            rs.getInt("total_copies"), rs.getInt("available_copies")));
                 }
             }
+            return new BookPage(ResponseStatus.OK, books, more ? books.get(books.size() - 1).isbn : null);
+        } finally {
+            metrics.listBooks.recordDbTime(System.nanoTime() - dbStart);
         }
     }
 
-    // Registrar un préstamo de libro por ISBN
-    public synchronized LoanResponse loanByISBN(String isbn, String userId) {
-        try (Connection conn = getConnection()) {
-            conn.setAutoCommit(false); // Transacción manual para consistencia
-
-            // Verificar disponibilidad
-            try (PreparedStatement ps = conn.prepareStatement(
-                    "SELECT available_copies FROM books WHERE isbn = ?")) {
-                ps.setString(1, isbn);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        // No existe el libro
-                        conn.rollback();
-                        return new LoanResponse(false, "Libro no encontrado (ISBN).", null);
+    // Página del historial de préstamos de un usuario (activos y devueltos) por id
+    @Override
+    public LoanPage listLoans(String userId, long afterId, int limit) throws SQLException {
+        long dbStart = System.nanoTime();
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(SQL_LIST_LOANS);
+            ps.setString(1, userId);
+            ps.setLong(2, afterId);
+            ps.setInt(3, limit + 1);
+            List<LoanRecord> loans = new ArrayList<>(Math.min(limit, 64));
+            boolean more = false;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (loans.size() == limit) {
+                        more = true;
+                        break;
                     }
-                    int available = rs.getInt("available_copies");
-                    if (available <= 0) {
-                        // No hay ejemplares disponibles
-                        conn.rollback();
-                        return new LoanResponse(false, "No hay ejemplares disponibles.", null);
+                    loans.add(new LoanRecord(rs.getLong("id"), rs.getString("isbn"), userId,
+                            LocalDate.parse(rs.getString("loan_date")), LocalDate.parse(rs.getString("due_date")),
+                            rs.getInt("returned") != 0));
+                }
+            }
+            return new LoanPage(ResponseStatus.OK, loans, more ? loans.get(loans.size() - 1).id : LoanPage.END);
+        } finally {
+            metrics.listLoans.recordDbTime(System.nanoTime() - dbStart);
+        }
+    }
+
+    // Recorre los préstamos sin devolver por fecha de devolución. Usa el índice parcial
+    // idx_loans_active, así el costo depende de los préstamos activos y no del historial
+    @Override
+    public void forEachActiveLoan(Consumer<LoanRecord> action) throws SQLException {
+        try (PooledConnection conn = pool.acquire();
+             ResultSet rs = conn.prepare(SQL_ACTIVE_LOANS).executeQuery()) {
+            while (rs.next()) {
+                action.accept(new LoanRecord(rs.getLong("id"), rs.getString("isbn"), rs.getString("user_id"),
+                        LocalDate.parse(rs.getString("loan_date")), LocalDate.parse(rs.getString("due_date")), false));
+            }
+        }
+    }
+
+    // Carga en bloque con una sentencia preparada y executeBatch, en transacciones de
+    // IMPORT_BATCH_ROWS filas. Cada transacción se arma fuera de los candados y corre con
+    // los de las franjas de sus ISBN, como cualquier escritura, así puede convivir con
+    // préstamos y devoluciones del mismo proceso: un lote cubre casi todas las franjas,
+    // pero las suelta al confirmar, en milisegundos. Al confirmar se
+    // actualizan el índice de búsqueda y la caché, y se avisa el estado nuevo de cada libro
+    // al listener (réplicas, avisos de disponibilidad)
+    @Override
+    public long importBooks(Iterator<BookSummary> books) throws SQLException {
+        long count = 0;
+        List<BookSummary> inTx = new ArrayList<>(IMPORT_BATCH_ROWS);
+        List<String> isbns = new ArrayList<>(IMPORT_BATCH_ROWS);
+        while (books.hasNext()) {
+            while (books.hasNext() && inTx.size() < IMPORT_BATCH_ROWS) {
+                BookSummary b = books.next();
+                inTx.add(b);
+                isbns.add(b.isbn);
+            }
+            importTx(inTx, isbns);
+            count += inTx.size();
+            inTx.clear();
+            isbns.clear();
+        }
+        return count;
+    }
+
+    // Una transacción de la carga en bloque, con los candados de sus ISBN
+    private void importTx(List<BookSummary> inTx, List<String> isbns) throws SQLException {
+        int[] stripes = stripesOf(isbns);
+        lockAll(stripes, metrics.importBooks);
+        long dbStart = System.nanoTime();
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(SQL_UPSERT_BOOK);
+            TxChanges changed = new TxChanges();
+            conn.begin();
+            try {
+                for (BookSummary b : inTx) {
+                    ps.setString(1, b.isbn);
+                    ps.setString(2, b.title);
+                    ps.setString(3, b.author);
+                    ps.setInt(4, b.totalCopies);
+                    ps.setInt(5, b.availableCopies);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                if (listener != null) {
+                    // Los disponibles los calcula el upsert: se leen dentro de la transacción
+                    for (String isbn : isbns) {
+                        QueryResponse r = readBook(conn, isbn);
+                        if (r != null) {
+                            changed.books.put(isbn, r);
+                        }
                     }
                 }
+                conn.commit();
+            } catch (SQLException | RuntimeException ex) {
+                ps.clearBatch();
+                conn.rollback();
+                metrics.importBooks.error();
+                throw ex;
+            }
+            // La caché se invalida en vez de llenarse: una carga grande la vaciaría
+            for (BookSummary b : inTx) {
+                cache.invalidate(b.isbn);
+                index.put(b.isbn, b.title, b.author);
             }
+            publish(changed);
+        } finally {
+            metrics.importBooks.recordDbTime(System.nanoTime() - dbStart);
+            unlockAll(stripes);
+        }
+    }
 
-            // Reducir en 1 la cantidad de ejemplares disponibles
-            try (PreparedStatement ps1 = conn.prepareStatement(
-                    "UPDATE books SET available_copies = available_copies - 1 WHERE isbn = ?")) {
-                ps1.setString(1, isbn);
-                ps1.executeUpdate();
+    // Lee un libro de la BD tras un fallo de caché y lo guarda en ella; null si no existe
+    private QueryResponse loadBook(PooledConnection conn, String isbn) throws SQLException {
+        long stamp = cache.stamp(isbn); // antes de leer, para no guardar un valor viejo
+        QueryResponse r = readBook(conn, isbn);
+        if (r != null) {
+            cache.putIfUnchanged(isbn, r, stamp);
+        }
+        return r;
+    }
+
+    // Lee de la BD el estado de un libro; null si no existe.
+    // Dentro de una transacción ve los cambios aún no confirmados de esa transacción
+    private QueryResponse readBook(PooledConnection conn, String isbn) throws SQLException {
+        PreparedStatement ps = conn.prepare(SQL_QUERY);
+        ps.setString(1, isbn);
+        try (ResultSet rs = ps.executeQuery()) {
+            if (rs.next()) {
+                // Se encontró el libro → devolver detalles
+                return new QueryResponse(
+                        true,
+                        rs.getString("title"),
+                        rs.getInt("total_copies"),
+                        rs.getInt("available_copies")
+                );
             }
+            return null;
+        }
+    }
 
-            // Calcular fecha de devolución (7 días después de hoy)
-            LocalDate due = LocalDate.now().plusDays(7);
+    // Registrar un préstamo de libro por ISBN
+    @Override
+    public LoanResponse loanByISBN(String isbn, String userId) {
+        return write(metrics.loanByISBN, isbn,
+                (conn, changed) -> loanInTx(conn, isbn, userId, changed),
+                ex -> new LoanResponse(ResponseStatus.INTERNAL_ERROR, null, ex.getMessage()));
+    }
 
-            // Registrar el préstamo en la tabla 'loans'
-            try (PreparedStatement ps2 = conn.prepareStatement(
-                    "INSERT INTO loans(isbn, user_id, loan_date, due_date, returned) VALUES (?, ?, ?, ?, 0)")) {
-                ps2.setString(1, isbn);
-                ps2.setString(2, userId);
-                ps2.setString(3, LocalDate.now().toString());
-                ps2.setString(4, due.toString());
-                ps2.executeUpdate();
+    // Registrar varios préstamos para un mismo usuario en una sola transacción.
+    // Cada ISBN tiene su propio resultado (en el mismo orden); un ISBN sin ejemplares
+    // no impide los demás. Si la transacción falla, ninguno queda registrado
+    @Override
+    public List<LoanResponse> loanMany(List<String> isbns, String userId) {
+        return runWrite(metrics.loanMany, isbns, (conn, changed) -> {
+            List<LoanResponse> results = new ArrayList<>(isbns.size());
+            for (String isbn : isbns) {
+                results.add(loanInTx(conn, isbn, userId, changed));
             }
+            return results;
+        }, ex -> new ArrayList<>(Collections.nCopies(isbns.size(),
+                new LoanResponse(ResponseStatus.INTERNAL_ERROR, null, ex.getMessage()))));
+    }
 
-            conn.commit(); // Confirmar transacción
-            return new LoanResponse(true, "Préstamo confirmado.", due);
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            return new LoanResponse(false, "Error interno: " + ex.getMessage(), null);
+    // Préstamo por ISBN dentro de una transacción abierta
+    private LoanResponse loanInTx(PooledConnection conn, String isbn, String userId,
+                                  TxChanges changed) throws SQLException {
+        // Reducir en 1 los ejemplares solo si hay disponibles. Se escribe primero
+        // para que SQLite tome el candado de escritura desde el inicio de la transacción
+        LocalDate due = takeCopyAndRecordLoan(conn, isbn, userId, changed);
+        if (due == null) {
+            // Si no se actualizó ninguna fila: o no existe el libro, o no hay ejemplares
+            // libres de reservas
+            if (!bookExists(conn, isbn)) {
+                return new LoanResponse(ResponseStatus.BOOK_NOT_FOUND, null);
+            }
+            return heldForOthers(isbn, userId) > 0
+                    ? new LoanResponse(ResponseStatus.RESERVED, null)
+                    : new LoanResponse(ResponseStatus.NO_COPIES, null);
         }
+        return new LoanResponse(ResponseStatus.LOANED, due);
     }
 
     // Registrar un préstamo de libro por título
-    public synchronized LoanResponse loanByTitle(String title, String userId) {
-        try (Connection conn = getConnection()) {
-            conn.setAutoCommit(false);
-            String isbnFound = null;
-
-            // Buscar libro por título (el que tenga más disponibles primero)
-            try (PreparedStatement ps = conn.prepareStatement(
-                    "SELECT isbn, available_copies FROM books WHERE title = ? ORDER BY available_copies DESC")) {
-                ps.setString(1, title);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        conn.rollback();
-                        return new LoanResponse(false, "Libro no encontrado por título.", null);
-                    }
-                    isbnFound = rs.getString("isbn");
-                    int available = rs.getInt("available_copies");
-                    if (available <= 0) {
-                        conn.rollback();
-                        return new LoanResponse(false, "No hay ejemplares disponibles para ese título.", null);
+    @Override
+    public LoanResponse loanByTitle(String title, String userId) {
+        List<String> candidates = new ArrayList<>();
+
+        // Buscar los libros con ese título (los que tengan más disponibles primero), sin candado
+        long dbStart = System.nanoTime();
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(SQL_FIND_BY_TITLE);
+            ps.setString(1, title);
+            boolean found = false;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    found = true;
+                    if (rs.getInt("available_copies") > 0) {
+                        candidates.add(rs.getString("isbn"));
                     }
                 }
             }
+            if (!found) {
+                return new LoanResponse(ResponseStatus.TITLE_NOT_FOUND, null);
+            }
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            metrics.loanByTitle.error();
+            return new LoanResponse(ResponseStatus.INTERNAL_ERROR, null, ex.getMessage());
+        } finally {
+            metrics.loanByTitle.recordDbTime(System.nanoTime() - dbStart);
+        }
 
-            // Reducir en 1 la cantidad de ejemplares disponibles
-            try (PreparedStatement ps1 = conn.prepareStatement(
-                    "UPDATE books SET available_copies = available_copies - 1 WHERE isbn = ?")) {
-                ps1.setString(1, isbnFound);
-                ps1.executeUpdate();
+        // Cada ISBN se intenta bajo su propio candado. Si otro cliente se llevó el último
+        // ejemplar entre la búsqueda y el candado, o los que quedan están reservados para
+        // otros usuarios, se prueba el siguiente (null = sin ejemplar para este usuario)
+        for (String isbn : candidates) {
+            LoanResponse r = write(metrics.loanByTitle, isbn, (conn, changed) -> {
+                LocalDate due = takeCopyAndRecordLoan(conn, isbn, userId, changed);
+                return due == null ? null : new LoanResponse(ResponseStatus.LOANED_BY_TITLE, due);
+            }, ex -> new LoanResponse(ResponseStatus.INTERNAL_ERROR, null, ex.getMessage()));
+            if (r != null) {
+                return r;
             }
+        }
+        return new LoanResponse(ResponseStatus.NO_COPIES_FOR_TITLE, null);
+    }
+
+    // Resta un ejemplar disponible y registra el préstamo. Retorna la fecha de devolución,
+    // o null si no se pudo (libro inexistente o sin ejemplares) y entonces no cambia nada
+    private LocalDate takeCopyAndRecordLoan(PooledConnection conn, String isbn, String userId,
+                                            TxChanges changed) throws SQLException {
+        // La condición en el WHERE evita ejemplares negativos y deja los reservados para
+        // otros usuarios (se consulta con el candado del ISBN tomado)
+        PreparedStatement ps = conn.prepare(SQL_TAKE_COPY);
+        ps.setString(1, isbn);
+        ps.setInt(2, heldForOthers(isbn, userId));
+        if (ps.executeUpdate() == 0) {
+            return null;
+        }
 
-            // Calcular fecha de devolución
-            LocalDate due = LocalDate.now().plusDays(7);
+        // Calcular fecha de devolución (7 días después de hoy)
+        LocalDate due = LocalDate.now().plusDays(7);
 
-            // Insertar préstamo en tabla 'loans'
-            try (PreparedStatement ps2 = conn.prepareStatement(
-                    "INSERT INTO loans(isbn, user_id, loan_date, due_date, returned) VALUES (?, ?, ?, ?, 0)")) {
-                ps2.setString(1, isbnFound);
-                ps2.setString(2, userId);
-                ps2.setString(3, LocalDate.now().toString());
-                ps2.setString(4, due.toString());
-                ps2.executeUpdate();
-            }
+        // Registrar el préstamo en la tabla 'loans'
+        LocalDate today = LocalDate.now();
+        PreparedStatement ps2 = conn.prepare(SQL_INSERT_LOAN);
+        ps2.setString(1, isbn);
+        ps2.setString(2, userId);
+        ps2.setString(3, today.toString());
+        ps2.setString(4, due.toString());
+        ps2.executeUpdate();
 
-            conn.commit();
-            return new LoanResponse(true, "Préstamo confirmado (por título).", due);
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            return new LoanResponse(false, "Error interno: " + ex.getMessage(), null);
+        LoanRecord loan = new LoanRecord(lastInsertId(conn), isbn, userId, today, due, false);
+        changed.loans.add(l -> l.loaned(loan));
+        changed.books.put(isbn, readBook(conn, isbn));
+        return due;
+    }
+
+    // Id del préstamo recién insertado en esta conexión
+    private static long lastInsertId(PooledConnection conn) throws SQLException {
+        try (ResultSet rs = conn.prepare(SQL_LAST_ID).executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
         }
     }
 
-    // Registrar la devolución de un libro
-    public synchronized ReturnResponse returnBook(String isbn, String userId) {
-        try (Connection conn = getConnection()) {
-            conn.setAutoCommit(false);
-
-            // Buscar préstamo activo (no devuelto) para ese usuario e ISBN
-            try (PreparedStatement ps = conn.prepareStatement(
-                    "SELECT id FROM loans WHERE isbn = ? AND user_id = ? AND returned = 0 LIMIT 1")) {
-                ps.setString(1, isbn);
-                ps.setString(2, userId);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        conn.rollback();
-                        return new ReturnResponse(false, "No se encontró préstamo activo para ese usuario y ISBN.");
-                    }
-                    int loanId = rs.getInt("id");
+    // Indica si existe un libro con ese ISBN
+    private boolean bookExists(PooledConnection conn, String isbn) throws SQLException {
+        PreparedStatement ps = conn.prepare(SQL_BOOK_EXISTS);
+        ps.setString(1, isbn);
+        try (ResultSet rs = ps.executeQuery()) {
+            return rs.next();
+        }
+    }
 
-                    // Marcar préstamo como devuelto
-                    try (PreparedStatement ps2 = conn.prepareStatement(
-                            "UPDATE loans SET returned = 1 WHERE id = ?")) {
-                        ps2.setInt(1, loanId);
-                        ps2.executeUpdate();
-                    }
+    // Registrar la devolución de un libro
+    @Override
+    public ReturnResponse returnBook(String isbn, String userId) {
+        return write(metrics.returnBook, isbn,
+                (conn, changed) -> returnInTx(conn, isbn, userId, changed),
+                ex -> new ReturnResponse(ResponseStatus.INTERNAL_ERROR, ex.getMessage()));
+    }
 
-                    // Incrementar en 1 la cantidad de copias disponibles
-                    try (PreparedStatement ps3 = conn.prepareStatement(
-                            "UPDATE books SET available_copies = available_copies + 1 WHERE isbn = ?")) {
-                        ps3.setString(1, isbn);
-                        ps3.executeUpdate();
-                    }
-                }
+    // Registrar varias devoluciones de un mismo usuario en una sola transacción
+    @Override
+    public List<ReturnResponse> returnMany(List<String> isbns, String userId) {
+        return runWrite(metrics.returnMany, isbns, (conn, changed) -> {
+            List<ReturnResponse> results = new ArrayList<>(isbns.size());
+            for (String isbn : isbns) {
+                results.add(returnInTx(conn, isbn, userId, changed));
             }
+            return results;
+        }, ex -> new ArrayList<>(Collections.nCopies(isbns.size(),
+                new ReturnResponse(ResponseStatus.INTERNAL_ERROR, ex.getMessage()))));
+    }
 
-            conn.commit();
-            return new ReturnResponse(true, "Devolución registrada correctamente.");
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            return new ReturnResponse(false, "Error interno: " + ex.getMessage());
+    // Devolución dentro de una transacción abierta
+    private ReturnResponse returnInTx(PooledConnection conn, String isbn, String userId,
+                                      TxChanges changed) throws SQLException {
+        // Marcar como devuelto un préstamo activo (no devuelto) para ese usuario e ISBN.
+        // Se hace en una sola sentencia para que la transacción empiece escribiendo
+        PreparedStatement ps = conn.prepare(SQL_MARK_RETURNED);
+        ps.setString(1, isbn);
+        ps.setString(2, userId);
+        if (ps.executeUpdate() == 0) {
+            return new ReturnResponse(ResponseStatus.NO_ACTIVE_LOAN);
         }
+
+        // Incrementar en 1 la cantidad de copias disponibles
+        PreparedStatement ps2 = conn.prepare(SQL_GIVE_BACK_COPY);
+        ps2.setString(1, isbn);
+        ps2.executeUpdate();
+
+        changed.loans.add(l -> l.returned(isbn, userId));
+        changed.books.put(isbn, readBook(conn, isbn));
+        return new ReturnResponse(ResponseStatus.RETURNED);
     }
 }
@@ -0,0 +1,21 @@
+// BookPage.java
+package com.unal.rmilibrary;
+
+import java.io.Serializable;
+import java.util.List;
+
+// Una página del catálogo ordenado por ISBN (ver LibraryService.listBooks)
+public class BookPage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public final int status;              // código de ResponseStatus (OK o BUSY)
+    public final List<BookSummary> books;
+    public final String nextAfterIsbn;    // cursor para la página siguiente; null si no hay más
+
+    public BookPage(int status, List<BookSummary> books, String nextAfterIsbn) {
+        this.status = status;
+        this.books = books;
+        this.nextAfterIsbn = nextAfterIsbn;
+    }
+}
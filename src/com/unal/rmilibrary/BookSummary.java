@@ -0,0 +1,24 @@
+// BookSummary.java
+package com.unal.rmilibrary;
+
+import java.io.Serializable;
+
+// Libro dentro de una página de resultados
+public class BookSummary implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public final String isbn;
+    public final String title;
+    public final String author;
+    public final int totalCopies;
+    public final int availableCopies;
+
+    public BookSummary(String isbn, String title, String author, int totalCopies, int availableCopies) {
+        this.isbn = isbn;
+        this.title = title;
+        this.author = author;
+        this.totalCopies = totalCopies;
+        this.availableCopies = availableCopies;
+    }
+}
@@ -0,0 +1,428 @@
+// CatalogIndex.java
+package com.unal.rmilibrary;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+// Índice invertido en memoria de títulos y autores para searchBooks.
+//
+// Cada libro recibe un id interno que es su posición en orden de título (y de ISBN entre
+// títulos iguales), y cada palabra normalizada (minúsculas, sin tildes) apunta a la lista
+// ordenada de ids que la contienen. Las palabras están en un TreeMap, así un prefijo
+// es un rango contiguo del mapa; la búsqueda difusa solo compara contra palabras de
+// longitud parecida. El resultado de una consulta es un BitSet de ids, de donde la
+// paginación sale recorriendo bits, sin ordenar nada por consulta.
+//
+// Un libro nuevo (o un título cambiado) que no cae al final del orden no renumera en
+// put(): marca el índice como desordenado y la siguiente búsqueda renumera todo una vez,
+// así una carga en bloque paga un solo reordenamiento.
+//
+// Las lecturas son concurrentes; put() y el reordenamiento toman el candado de escritura.
+public class CatalogIndex {
+
+    // Palabras más largas que esto no se indexan (evita basura en la búsqueda difusa)
+    private static final int MAX_TOKEN_LENGTH = 32;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final ReentrantReadWriteLock rw = new ReentrantReadWriteLock();
+
+    // Datos por id
+    private final List<String> isbns = new ArrayList<>();
+    private final List<String> titles = new ArrayList<>();
+    private final List<String> authors = new ArrayList<>();
+    private final Map<String, Integer> idByIsbn = new HashMap<>();
+
+    private final Field titleField = new Field();
+    private final Field authorField = new Field();
+
+    // Algún id quedó fuera del orden de título; se corrige antes de la siguiente búsqueda
+    private volatile boolean unordered;
+
+    // Un libro encontrado
+    public static final class Hit {
+        public final String isbn;
+        public final String title;
+        public final String author;
+
+        Hit(String isbn, String title, String author) {
+            this.isbn = isbn;
+            this.title = title;
+            this.author = author;
+        }
+    }
+
+    // Una página de resultados y el total de coincidencias
+    public static final class Page {
+        public final List<Hit> hits;
+        public final int total;
+
+        Page(List<Hit> hits, int total) {
+            this.hits = hits;
+            this.total = total;
+        }
+    }
+
+    // Agrega un libro o actualiza su título y autor
+    public void put(String isbn, String title, String author) {
+        rw.writeLock().lock();
+        try {
+            Integer existing = idByIsbn.get(isbn);
+            if (existing == null) {
+                int id = isbns.size();
+                isbns.add(isbn);
+                titles.add(title);
+                authors.add(author);
+                idByIsbn.put(isbn, id);
+                titleField.add(id, title);
+                authorField.add(id, author);
+                if (id > 0 && compare(id - 1, id) > 0) {
+                    unordered = true;
+                }
+                return;
+            }
+            int id = existing;
+            if (!same(titles.get(id), title)) {
+                titleField.remove(id, titles.get(id));
+                titles.set(id, title);
+                titleField.add(id, title);
+                if ((id > 0 && compare(id - 1, id) > 0) || (id + 1 < isbns.size() && compare(id, id + 1) > 0)) {
+                    unordered = true;
+                }
+            }
+            if (!same(authors.get(id), author)) {
+                authorField.remove(id, authors.get(id));
+                authors.set(id, author);
+                authorField.add(id, author);
+            }
+        } finally {
+            rw.writeLock().unlock();
+        }
+    }
+
+    // Cantidad de libros indexados
+    public int size() {
+        rw.readLock().lock();
+        try {
+            return isbns.size();
+        } finally {
+            rw.readLock().unlock();
+        }
+    }
+
+    // Busca los libros donde todas las palabras de 'text' coinciden (según 'mode')
+    // en el campo indicado y devuelve la página [offset, offset + limit)
+    public Page search(String text, int field, int mode, int offset, int limit) {
+        List<String> terms = tokens(text);
+        if (terms.isEmpty()) {
+            return new Page(List.of(), 0);
+        }
+        if (unordered) {
+            reorder();
+        }
+        rw.readLock().lock();
+        try {
+            BitSet result = null;
+            for (String term : terms) {
+                BitSet matches = new BitSet(isbns.size());
+                if (field != SearchQuery.AUTHOR) {
+                    titleField.match(term, mode, matches);
+                }
+                if (field != SearchQuery.TITLE) {
+                    authorField.match(term, mode, matches);
+                }
+                if (result == null) {
+                    result = matches;
+                } else {
+                    result.and(matches);
+                }
+                if (result.isEmpty()) {
+                    return new Page(List.of(), 0);
+                }
+            }
+            int total = result.cardinality();
+            List<Hit> hits = new ArrayList<>(Math.min(limit, Math.max(0, total - offset)));
+            int id = result.nextSetBit(0);
+            for (int skipped = 0; id >= 0 && skipped < offset; skipped++) {
+                id = result.nextSetBit(id + 1);
+            }
+            for (; id >= 0 && hits.size() < limit; id = result.nextSetBit(id + 1)) {
+                hits.add(new Hit(isbns.get(id), titles.get(id), authors.get(id)));
+            }
+            return new Page(hits, total);
+        } finally {
+            rw.readLock().unlock();
+        }
+    }
+
+    // Renumera los libros en orden de título e ISBN y traduce las listas de ids (sin volver
+    // a separar palabras)
+    private void reorder() {
+        rw.writeLock().lock();
+        try {
+            if (!unordered) {
+                return; // otra búsqueda ya lo hizo
+            }
+            Integer[] order = new Integer[isbns.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, this::compare);
+            int[] newId = new int[order.length];
+            List<String> newIsbns = new ArrayList<>(order.length);
+            List<String> newTitles = new ArrayList<>(order.length);
+            List<String> newAuthors = new ArrayList<>(order.length);
+            for (int id = 0; id < order.length; id++) {
+                int old = order[id];
+                newId[old] = id;
+                newIsbns.add(isbns.get(old));
+                newTitles.add(titles.get(old));
+                newAuthors.add(authors.get(old));
+                idByIsbn.put(isbns.get(old), id);
+            }
+            isbns.clear();
+            isbns.addAll(newIsbns);
+            titles.clear();
+            titles.addAll(newTitles);
+            authors.clear();
+            authors.addAll(newAuthors);
+            titleField.renumber(newId);
+            authorField.renumber(newId);
+            unordered = false;
+        } finally {
+            rw.writeLock().unlock();
+        }
+    }
+
+    // Orden de los ids: por título y, entre títulos iguales, por ISBN (como SQL_ALL_BOOKS)
+    private int compare(int a, int b) {
+        String ta = titles.get(a) == null ? "" : titles.get(a);
+        String tb = titles.get(b) == null ? "" : titles.get(b);
+        int c = ta.compareTo(tb);
+        return c != 0 ? c : isbns.get(a).compareTo(isbns.get(b));
+    }
+
+    private static boolean same(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    // Palabras normalizadas de un texto: minúsculas, sin tildes ni signos, sin repetir
+    static List<String> tokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        String plain = text;
+        for (int i = 0; i < plain.length(); i++) {
+            if (plain.charAt(i) > 0x7f) {
+                // Solo los textos con caracteres no ASCII pagan la normalización
+                plain = MARKS.matcher(Normalizer.normalize(plain, Normalizer.Form.NFD)).replaceAll("");
+                break;
+            }
+        }
+        plain = plain.toLowerCase(Locale.ROOT);
+        List<String> out = new ArrayList<>(4);
+        int start = -1;
+        for (int i = 0; i <= plain.length(); i++) {
+            boolean wordChar = i < plain.length() && Character.isLetterOrDigit(plain.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String t = plain.substring(start, i);
+                if (t.length() <= MAX_TOKEN_LENGTH && !out.contains(t)) {
+                    out.add(t);
+                }
+                start = -1;
+            }
+        }
+        return out;
+    }
+
+    // Errores de tipeo tolerados según la longitud de la palabra buscada
+    private static int maxEdits(String term) {
+        int n = term.length();
+        return n <= 2 ? 0 : n <= 5 ? 1 : 2;
+    }
+
+    // Distancia de Levenshtein entre a y b si es <= max; max + 1 si es mayor.
+    // Corta en cuanto toda una fila supera max
+    static int boundedDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[] prev = new int[b.length() + 1];
+        int[] cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                rowMin = Math.min(rowMin, cur[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+        }
+        return prev[b.length()];
+    }
+
+    // Conjunto de caracteres de una palabra como bits (c % 64)
+    private static long letterMask(String token) {
+        long mask = 0;
+        for (int i = 0; i < token.length(); i++) {
+            mask |= 1L << (token.charAt(i) & 63);
+        }
+        return mask;
+    }
+
+    // Índice de un campo (título o autor): palabra → ids ordenados
+    private static final class Field {
+        // Búsqueda exacta por palabra
+        private final Map<String, Postings> postings = new HashMap<>();
+        // Las mismas listas en orden alfabético, para recorrer un prefijo
+        private final TreeMap<String, Postings> sorted = new TreeMap<>();
+        // Las mismas listas agrupadas por longitud de la palabra, para la búsqueda difusa
+        private final List<List<Postings>> byLength = new ArrayList<>();
+
+        void add(int id, String text) {
+            for (String t : tokens(text)) {
+                Postings p = postings.get(t);
+                if (p == null) {
+                    p = new Postings(t);
+                    postings.put(t, p);
+                    sorted.put(t, p);
+                    while (byLength.size() <= t.length()) {
+                        byLength.add(new ArrayList<>());
+                    }
+                    byLength.get(t.length()).add(p);
+                }
+                p.add(id);
+            }
+        }
+
+        // Las palabras que quedan sin libros se conservan vacías: no molestan a la búsqueda
+        void remove(int id, String text) {
+            for (String t : tokens(text)) {
+                Postings p = postings.get(t);
+                if (p != null) {
+                    p.remove(id);
+                }
+            }
+        }
+
+        // Cambia cada id viejo por newId[id]
+        void renumber(int[] newId) {
+            for (Postings p : postings.values()) {
+                p.renumber(newId);
+            }
+        }
+
+        // Marca en 'out' los ids donde alguna palabra del campo coincide con 'term'
+        void match(String term, int mode, BitSet out) {
+            switch (mode) {
+                case SearchQuery.KEYWORD: {
+                    Postings p = postings.get(term);
+                    if (p != null) {
+                        p.setAll(out);
+                    }
+                    break;
+                }
+                case SearchQuery.FUZZY: {
+                    int max = maxEdits(term);
+                    long mask = letterMask(term);
+                    int from = Math.max(1, term.length() - max);
+                    int to = Math.min(byLength.size() - 1, term.length() + max);
+                    for (int len = from; len <= to; len++) {
+                        for (Postings p : byLength.get(len)) {
+                            // Cada edición cambia a lo sumo 2 bits de la máscara: filtro barato
+                            // antes de calcular la distancia
+                            if (Long.bitCount(mask ^ p.mask) <= 2 * max
+                                    && boundedDistance(term, p.token, max) <= max) {
+                                p.setAll(out);
+                            }
+                        }
+                    }
+                    break;
+                }
+                default: { // PREFIX: todas las palabras que empiezan por term
+                    for (Postings p : sorted.subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+                        p.setAll(out);
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    // Lista creciente de ids ordenados (un int[] con tamaño, sin objetos por elemento)
+    private static final class Postings {
+        final String token;
+        final long mask;
+        private int[] ids = new int[2];
+        private int size;
+
+        Postings(String token) {
+            this.token = token;
+            this.mask = letterMask(token);
+        }
+
+        void add(int id) {
+            // Casi siempre llega un id mayor a todos (carga inicial y libros nuevos)
+            if (size > 0 && ids[size - 1] >= id) {
+                int pos = Arrays.binarySearch(ids, 0, size, id);
+                if (pos >= 0) {
+                    return;
+                }
+                insertAt(-pos - 1, id);
+                return;
+            }
+            insertAt(size, id);
+        }
+
+        private void insertAt(int pos, int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+                size--;
+            }
+        }
+
+        void renumber(int[] newId) {
+            for (int i = 0; i < size; i++) {
+                ids[i] = newId[ids[i]];
+            }
+            Arrays.sort(ids, 0, size);
+        }
+
+        void setAll(BitSet out) {
+            for (int i = 0; i < size; i++) {
+                out.set(ids[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,537 @@
+// CatalogTool.java
+package com.unal.rmilibrary;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.rmi.Naming;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+// Carga y exportación del catálogo por línea de comandos.
+//
+// Uso:
+//   java -cp "out:lib/*" com.unal.rmilibrary.CatalogTool import <jdbcUrl> <libros.csv|libros.jsonl>
+//   java -cp out com.unal.rmilibrary.CatalogTool export-books [--host localhost] [--port 1099]
+//        [--page 1000] [--format csv|jsonl]
+//   java -cp out com.unal.rmilibrary.CatalogTool export-loans <usuario> [--host ...] [--port ...]
+//        [--page 1000] [--format csv|jsonl]
+//   java -cp out com.unal.rmilibrary.CatalogTool export-overdue [--host ...] [--port ...]
+//        [--page 1000] [--format csv|jsonl]
+//
+// import abre el motor de datos directamente (el de -Dlibrary.engine, igual que el servidor)
+// y lee el archivo por partes: nunca tiene el catálogo completo en memoria. Se debe correr
+// con el servidor detenido, porque el servidor es el único que escribe en la BD o en el log.
+//   CSV:   encabezado isbn,title,author,total_copies[,available_copies]; comillas como en RFC 4180
+//   JSONL: {"isbn":"...","title":"...","author":"...","total_copies":3,"available_copies":3}
+// Sin available_copies un libro nuevo queda con todos sus ejemplares disponibles.
+// Con -Dlibrary.shard.index/count se cargan solo los ISBN de ese fragmento (ver Shards).
+//
+// Las exportaciones recorren el servidor página por página (LibraryPages) y escriben en la
+// salida estándar con el mismo formato que acepta import.
+public class CatalogTool {
+
+    private static final String BOOKS_HEADER = "isbn,title,author,total_copies,available_copies";
+    private static final String LOANS_HEADER = "id,isbn,user_id,loan_date,due_date,returned";
+
+    // Avance de la carga cada tantos libros
+    private static final long PROGRESS_EVERY = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            usage();
+            return;
+        }
+        switch (args[0]) {
+            case "import":
+                if (args.length != 3) {
+                    usage();
+                    return;
+                }
+                importBooks(args[1], Paths.get(args[2]));
+                break;
+            case "export-books":
+                exportBooks(parseArgs(args, 1));
+                break;
+            case "export-loans":
+                if (args.length < 2) {
+                    usage();
+                    return;
+                }
+                exportLoans(args[1], parseArgs(args, 2));
+                break;
+            case "export-overdue":
+                exportOverdue(parseArgs(args, 1));
+                break;
+            default:
+                usage();
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Uso: CatalogTool import <jdbcUrl> <archivo.csv|archivo.jsonl>");
+        System.err.println("     CatalogTool export-books [--host h] [--port p] [--page n] [--format csv|jsonl]");
+        System.err.println("     CatalogTool export-loans <usuario> [--host h] [--port p] [--page n] [--format csv|jsonl]");
+        System.err.println("     CatalogTool export-overdue [--host h] [--port p] [--page n] [--format csv|jsonl]");
+    }
+
+    // ---- Carga ----
+
+    private static void importBooks(String jdbcUrl, Path file) throws Exception {
+        ServerConfig config = ServerConfig.fromSystemProperties();
+        long start = System.nanoTime();
+        long count;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             LibraryDAO dao = LibraryDAO.open(jdbcUrl, config, new LibraryMetrics())) {
+            boolean jsonl = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".jsonl");
+            Iterator<BookSummary> books = jsonl ? new JsonlBooks(in) : new CsvBooks(in);
+            if (config.shardCount > 1) {
+                System.err.printf("Fragmento %d de %d: se cargan solo sus ISBN%n", config.shardIndex, config.shardCount);
+                books = onlyShard(books, config.shardIndex, config.shardCount);
+            }
+            count = dao.importBooks(withProgress(books, start));
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause(); // error leyendo el archivo
+        }
+        long ms = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        System.err.printf("Cargados %d libros en %.1f s (%d libros/min)%n",
+                count, ms / 1000.0, count * 60_000 / ms);
+    }
+
+    // Solo los libros del fragmento indicado (el mismo archivo sirve para todos los fragmentos)
+    private static Iterator<BookSummary> onlyShard(Iterator<BookSummary> books, int shard, int count) {
+        return new Iterator<BookSummary>() {
+            private BookSummary next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && books.hasNext()) {
+                    BookSummary b = books.next();
+                    if (Shards.of(b.isbn, count) == shard) {
+                        next = b;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public BookSummary next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                BookSummary b = next;
+                next = null;
+                return b;
+            }
+        };
+    }
+
+    // Imprime el avance mientras el DAO consume el archivo
+    private static Iterator<BookSummary> withProgress(Iterator<BookSummary> books, long start) {
+        return new Iterator<BookSummary>() {
+            private long n;
+
+            @Override
+            public boolean hasNext() {
+                return books.hasNext();
+            }
+
+            @Override
+            public BookSummary next() {
+                BookSummary b = books.next();
+                if (++n % PROGRESS_EVERY == 0) {
+                    System.err.printf("  %d libros leídos (%d s)%n",
+                            n, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+                }
+                return b;
+            }
+        };
+    }
+
+    // Libro validado a partir de los campos de una línea
+    private static BookSummary toBook(long line, String isbn, String title, String author,
+                                      String total, String available) {
+        if (isbn == null || isbn.trim().isEmpty() || title == null || title.trim().isEmpty() || total == null) {
+            throw new IllegalArgumentException("Línea " + line + ": faltan isbn, title o total_copies");
+        }
+        try {
+            int t = Integer.parseInt(total.trim());
+            int a = available == null || available.trim().isEmpty() ? t : Integer.parseInt(available.trim());
+            if (t < 0 || a < 0 || a > t) {
+                throw new IllegalArgumentException("Línea " + line + ": ejemplares fuera de rango");
+            }
+            return new BookSummary(isbn.trim(), title, author == null || author.isEmpty() ? null : author, t, a);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Línea " + line + ": número inválido", ex);
+        }
+    }
+
+    // Lector perezoso: prepara el siguiente libro solo cuando se lo piden
+    private abstract static class BookReader implements Iterator<BookSummary> {
+        final BufferedReader in;
+        long line;
+        private BookSummary next;
+
+        BookReader(BufferedReader in) {
+            this.in = in;
+        }
+
+        // Siguiente libro del archivo, o null al final
+        abstract BookSummary read() throws IOException;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = read();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public BookSummary next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            BookSummary b = next;
+            next = null;
+            return b;
+        }
+    }
+
+    // CSV con encabezado; las columnas se ubican por nombre
+    private static final class CsvBooks extends BookReader {
+        private int isbn = -1, title = -1, author = -1, total = -1, available = -1;
+
+        CsvBooks(BufferedReader in) throws IOException {
+            super(in);
+            List<String> header = readRecord();
+            if (header == null) {
+                return;
+            }
+            for (int i = 0; i < header.size(); i++) {
+                switch (header.get(i).trim().toLowerCase(Locale.ROOT)) {
+                    case "isbn": isbn = i; break;
+                    case "title": title = i; break;
+                    case "author": author = i; break;
+                    case "total_copies": total = i; break;
+                    case "available_copies": available = i; break;
+                    default: break; // columnas extra se ignoran
+                }
+            }
+            if (isbn < 0 || title < 0 || total < 0) {
+                throw new IllegalArgumentException("El encabezado del CSV debe tener isbn, title y total_copies");
+            }
+        }
+
+        @Override
+        BookSummary read() throws IOException {
+            List<String> r;
+            do {
+                r = readRecord();
+                if (r == null) {
+                    return null;
+                }
+            } while (r.size() == 1 && r.get(0).isEmpty()); // líneas vacías
+            return toBook(line, get(r, isbn), get(r, title), get(r, author), get(r, total), get(r, available));
+        }
+
+        private static String get(List<String> r, int i) {
+            return i < 0 || i >= r.size() ? null : r.get(i);
+        }
+
+        // Un registro CSV; un campo entre comillas puede tener comas, "" y saltos de línea
+        private List<String> readRecord() throws IOException {
+            String s = in.readLine();
+            if (s == null) {
+                return null;
+            }
+            line++;
+            List<String> fields = new ArrayList<>(5);
+            StringBuilder f = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; ; i++) {
+                if (i == s.length()) {
+                    if (!quoted) {
+                        break;
+                    }
+                    s = in.readLine(); // el campo entre comillas sigue en la otra línea
+                    if (s == null) {
+                        throw new IllegalArgumentException("Línea " + line + ": comillas sin cerrar");
+                    }
+                    line++;
+                    f.append('\n');
+                    i = -1;
+                    continue;
+                }
+                char c = s.charAt(i);
+                if (quoted) {
+                    if (c != '"') {
+                        f.append(c);
+                    } else if (i + 1 < s.length() && s.charAt(i + 1) == '"') {
+                        f.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(f.toString());
+                    f.setLength(0);
+                } else {
+                    f.append(c);
+                }
+            }
+            fields.add(f.toString());
+            return fields;
+        }
+    }
+
+    // Un objeto JSON plano por línea
+    private static final class JsonlBooks extends BookReader {
+        JsonlBooks(BufferedReader in) {
+            super(in);
+        }
+
+        @Override
+        BookSummary read() throws IOException {
+            String s;
+            do {
+                s = in.readLine();
+                if (s == null) {
+                    return null;
+                }
+                line++;
+            } while (s.trim().isEmpty());
+            Map<String, String> obj = parseObject(s, line);
+            return toBook(line, obj.get("isbn"), obj.get("title"), obj.get("author"),
+                    obj.get("total_copies"), obj.get("available_copies"));
+        }
+    }
+
+    // Objeto JSON plano (valores de texto, números, true/false o null) como mapa de textos
+    static Map<String, String> parseObject(String s, long line) {
+        Map<String, String> out = new LinkedHashMap<>();
+        int[] pos = {skipSpaces(s, 0)};
+        expect(s, pos, '{', line);
+        if (peek(s, pos) == '}') {
+            return out;
+        }
+        while (true) {
+            String key = parseString(s, pos, line);
+            expect(s, pos, ':', line);
+            String value;
+            if (peek(s, pos) == '"') {
+                value = parseString(s, pos, line);
+            } else {
+                int start = pos[0];
+                while (pos[0] < s.length() && ",} \t".indexOf(s.charAt(pos[0])) < 0) {
+                    pos[0]++;
+                }
+                value = s.substring(start, pos[0]);
+                if (value.equals("null")) {
+                    value = null;
+                }
+                pos[0] = skipSpaces(s, pos[0]);
+            }
+            out.put(key, value);
+            char c = peek(s, pos);
+            pos[0] = skipSpaces(s, pos[0] + 1);
+            if (c == '}') {
+                return out;
+            }
+            if (c != ',') {
+                throw new IllegalArgumentException("Línea " + line + ": JSON inválido");
+            }
+        }
+    }
+
+    private static String parseString(String s, int[] pos, long line) {
+        expect(s, pos, '"', line);
+        StringBuilder b = new StringBuilder();
+        for (int i = pos[0]; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') {
+                pos[0] = skipSpaces(s, i + 1);
+                return b.toString();
+            }
+            if (c == '\\' && i + 1 < s.length()) {
+                char e = s.charAt(++i);
+                switch (e) {
+                    case 'n': b.append('\n'); break;
+                    case 't': b.append('\t'); break;
+                    case 'r': b.append('\r'); break;
+                    case 'b': b.append('\b'); break;
+                    case 'f': b.append('\f'); break;
+                    case 'u':
+                        if (i + 4 >= s.length()) {
+                            throw new IllegalArgumentException("Línea " + line + ": escape \\u incompleto");
+                        }
+                        b.append((char) Integer.parseInt(s.substring(i + 1, i + 5), 16));
+                        i += 4;
+                        break;
+                    default: b.append(e); // \" \\ \/
+                }
+            } else {
+                b.append(c);
+            }
+        }
+        throw new IllegalArgumentException("Línea " + line + ": texto sin cerrar");
+    }
+
+    private static void expect(String s, int[] pos, char c, long line) {
+        if (peek(s, pos) != c) {
+            throw new IllegalArgumentException("Línea " + line + ": se esperaba '" + c + "'");
+        }
+        pos[0] = skipSpaces(s, pos[0] + 1);
+    }
+
+    private static char peek(String s, int[] pos) {
+        return pos[0] < s.length() ? s.charAt(pos[0]) : '\0';
+    }
+
+    private static int skipSpaces(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    // ---- Exportación ----
+
+    private static void exportBooks(Map<String, String> opt) throws Exception {
+        LibraryService service = connect(opt);
+        boolean jsonl = "jsonl".equals(opt.getOrDefault("format", "csv"));
+        long n = 0;
+        try (Writer out = stdout()) {
+            if (!jsonl) {
+                out.write(BOOKS_HEADER + "\n");
+            }
+            Iterator<BookSummary> books = LibraryPages.books(service, pageSize(opt));
+            while (books.hasNext()) {
+                BookSummary b = books.next();
+                if (jsonl) {
+                    out.write("{\"isbn\":" + json(b.isbn) + ",\"title\":" + json(b.title)
+                            + ",\"author\":" + json(b.author) + ",\"total_copies\":" + b.totalCopies
+                            + ",\"available_copies\":" + b.availableCopies + "}\n");
+                } else {
+                    out.write(csv(b.isbn) + "," + csv(b.title) + "," + csv(b.author) + ","
+                            + b.totalCopies + "," + b.availableCopies + "\n");
+                }
+                n++;
+            }
+        }
+        System.err.println("Exportados " + n + " libros");
+    }
+
+    private static void exportLoans(String userId, Map<String, String> opt) throws Exception {
+        long n = writeLoans(LibraryPages.loans(connect(opt), userId, pageSize(opt)), opt);
+        System.err.println("Exportados " + n + " préstamos de " + userId);
+    }
+
+    // Préstamos vencidos sin devolver de todos los usuarios (getOverdueLoans)
+    private static void exportOverdue(Map<String, String> opt) throws Exception {
+        long n = writeLoans(LibraryPages.overdueLoans(connect(opt), pageSize(opt)), opt);
+        System.err.println("Exportados " + n + " préstamos vencidos");
+    }
+
+    private static long writeLoans(Iterator<LoanRecord> loans, Map<String, String> opt) throws IOException {
+        boolean jsonl = "jsonl".equals(opt.getOrDefault("format", "csv"));
+        long n = 0;
+        try (Writer out = stdout()) {
+            if (!jsonl) {
+                out.write(LOANS_HEADER + "\n");
+            }
+            while (loans.hasNext()) {
+                LoanRecord l = loans.next();
+                if (jsonl) {
+                    out.write("{\"id\":" + l.id + ",\"isbn\":" + json(l.isbn) + ",\"user_id\":" + json(l.userId)
+                            + ",\"loan_date\":\"" + l.loanDate + "\",\"due_date\":\"" + l.dueDate
+                            + "\",\"returned\":" + l.returned + "}\n");
+                } else {
+                    out.write(l.id + "," + csv(l.isbn) + "," + csv(l.userId) + "," + l.loanDate + ","
+                            + l.dueDate + "," + (l.returned ? 1 : 0) + "\n");
+                }
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static LibraryService connect(Map<String, String> opt) throws Exception {
+        String url = "rmi://" + opt.getOrDefault("host", "localhost") + ":"
+                + opt.getOrDefault("port", "1099") + "/LibraryService";
+        return (LibraryService) Naming.lookup(url);
+    }
+
+    private static int pageSize(Map<String, String> opt) {
+        return Integer.parseInt(opt.getOrDefault("page", String.valueOf(LibraryDAO.MAX_PAGE)));
+    }
+
+    // Salida estándar con búfer grande (no se cierra System.out al terminar)
+    private static Writer stdout() {
+        return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16) {
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    private static String csv(String v) {
+        if (v == null) {
+            return "";
+        }
+        if (v.indexOf(',') < 0 && v.indexOf('"') < 0 && v.indexOf('\n') < 0 && v.indexOf('\r') < 0) {
+            return v;
+        }
+        return "\"" + v.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String json(String v) {
+        if (v == null) {
+            return "null";
+        }
+        StringBuilder b = new StringBuilder(v.length() + 2).append('"');
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            if (c == '"' || c == '\\') {
+                b.append('\\').append(c);
+            } else if (c < 0x20) {
+                b.append(String.format("\\u%04x", (int) c));
+            } else {
+                b.append(c);
+            }
+        }
+        return b.append('"').toString();
+    }
+
+    // --clave valor a partir de args[from]
+    private static Map<String, String> parseArgs(String[] args, int from) {
+        Map<String, String> opt = new LinkedHashMap<>();
+        for (int i = from; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Argumento inesperado: " + args[i]);
+            }
+            opt.put(args[i].substring(2), args[++i]);
+        }
+        return opt;
+    }
+}
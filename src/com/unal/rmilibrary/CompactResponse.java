@@ -0,0 +1,127 @@
+// CompactResponse.java
+package com.unal.rmilibrary;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.time.LocalDate;
+
+// Forma en la red de QueryResponse, LoanResponse y ReturnResponse.
+// Es Externalizable, así que no se envían descriptores de campos ni el grafo de LocalDate:
+//   byte tipo, byte código de estado y luego
+//   - consulta encontrada: título (UTF), total (int), disponibles (int)
+//   - préstamo: fecha de devolución como día epoch (int), o NO_DATE
+//   - error interno: detalle (UTF)
+// Al deserializar se reconstruye la respuesta original (con su mensaje) en readResolve.
+public final class CompactResponse implements Externalizable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final byte QUERY = 1;
+    private static final byte LOAN = 2;
+    private static final byte RETURN = 3;
+
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private byte kind;
+    private int status;
+    private String title;
+    private int totalCopies;
+    private int availableCopies;
+    private int dueEpochDay = NO_DATE;
+    private String detail;
+
+    // Requerido por Externalizable
+    public CompactResponse() {
+    }
+
+    static CompactResponse of(QueryResponse r) {
+        CompactResponse c = new CompactResponse();
+        c.kind = QUERY;
+        c.status = r.status;
+        c.title = r.title;
+        c.totalCopies = r.totalCopies;
+        c.availableCopies = r.availableCopies;
+        return c;
+    }
+
+    static CompactResponse of(LoanResponse r) {
+        CompactResponse c = new CompactResponse();
+        c.kind = LOAN;
+        c.status = r.status;
+        c.dueEpochDay = r.dueDate == null ? NO_DATE : (int) r.dueDate.toEpochDay();
+        c.detail = r.detail;
+        return c;
+    }
+
+    static CompactResponse of(ReturnResponse r) {
+        CompactResponse c = new CompactResponse();
+        c.kind = RETURN;
+        c.status = r.status;
+        c.detail = r.detail;
+        return c;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeByte(kind);
+        out.writeByte(status);
+        switch (kind) {
+            case QUERY:
+                if (status == ResponseStatus.OK) {
+                    out.writeUTF(title);
+                    out.writeInt(totalCopies);
+                    out.writeInt(availableCopies);
+                }
+                break;
+            case LOAN:
+                out.writeInt(dueEpochDay);
+                break;
+            default:
+                break;
+        }
+        if (status == ResponseStatus.INTERNAL_ERROR) {
+            out.writeUTF(detail == null ? "" : detail);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        kind = in.readByte();
+        status = in.readUnsignedByte();
+        switch (kind) {
+            case QUERY:
+                if (status == ResponseStatus.OK) {
+                    title = in.readUTF();
+                    totalCopies = in.readInt();
+                    availableCopies = in.readInt();
+                } else {
+                    title = "";
+                }
+                break;
+            case LOAN:
+                dueEpochDay = in.readInt();
+                break;
+            case RETURN:
+                break;
+            default:
+                throw new IOException("Tipo de respuesta desconocido: " + kind);
+        }
+        if (status == ResponseStatus.INTERNAL_ERROR) {
+            detail = in.readUTF();
+        }
+    }
+
+    // Reconstruye la respuesta original; el mensaje se arma aquí, en el cliente
+    private Object readResolve() {
+        switch (kind) {
+            case QUERY:
+                return new QueryResponse(status, title, totalCopies, availableCopies);
+            case LOAN:
+                return new LoanResponse(status, dueEpochDay == NO_DATE ? null : LocalDate.ofEpochDay(dueEpochDay), detail);
+            default:
+                return new ReturnResponse(status, detail);
+        }
+    }
+}
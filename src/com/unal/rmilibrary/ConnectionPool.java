@@ -0,0 +1,243 @@
+// ConnectionPool.java
+package com.unal.rmilibrary;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Pool de conexiones JDBC de tamaño fijo.
+// Cada conexión del pool guarda en caché sus PreparedStatement, así el SQL
+// se compila una sola vez por conexión y no en cada préstamo o devolución.
+public class ConnectionPool implements AutoCloseable {
+
+    // Tiempo máximo que una petición espera por una conexión libre
+    private static final long ACQUIRE_TIMEOUT_MS = 30_000;
+
+    private final String url;
+    private final int size;
+    private final List<String> initStatements; // PRAGMAs que se aplican a cada conexión nueva
+    private final BlockingQueue<PooledConnection> idle;
+    private final List<PooledConnection> all = new ArrayList<>();
+
+    // Contadores de uso y de espera
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();          // veces que no había conexión libre
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    // Abre todas las conexiones al crear el pool
+    public ConnectionPool(String jdbcUrl, int size) throws SQLException {
+        this(jdbcUrl, size, List.of());
+    }
+
+    // Igual que el anterior, pero ejecuta initStatements en cada conexión al abrirla
+    public ConnectionPool(String jdbcUrl, int size, List<String> initStatements) throws SQLException {
+        if (size < 1) {
+            throw new IllegalArgumentException("El tamaño del pool debe ser al menos 1: " + size);
+        }
+        this.url = jdbcUrl;
+        this.size = size;
+        this.initStatements = List.copyOf(initStatements);
+        this.idle = new ArrayBlockingQueue<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                PooledConnection pc = new PooledConnection(open());
+                all.add(pc);
+                idle.add(pc);
+            }
+        } catch (SQLException ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    // Abre una conexión física nueva y le aplica las sentencias de inicialización
+    private Connection open() throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement st = conn.createStatement()) {
+            for (String sql : initStatements) {
+                st.execute(sql);
+            }
+        } catch (SQLException ex) {
+            conn.close();
+            throw ex;
+        }
+        return conn;
+    }
+
+    // Toma una conexión libre; si no hay, espera hasta ACQUIRE_TIMEOUT_MS.
+    // Si la conexión física de ese lugar se descartó, se abre otra aquí; si no se puede, el
+    // lugar vuelve al pool vacío y quien pidió recibe el error.
+    // Se debe usar con try-with-resources para devolverla al pool.
+    public PooledConnection acquire() throws SQLException {
+        PooledConnection pc = idle.poll();
+        if (pc == null) {
+            waits.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                pc = idle.poll(ACQUIRE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrumpido esperando una conexión del pool", ex);
+            }
+            long waited = System.nanoTime() - start;
+            totalWaitNanos.addAndGet(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+            if (pc == null) {
+                timeouts.incrementAndGet();
+                throw new SQLException("Tiempo agotado esperando una conexión del pool");
+            }
+        }
+        if (pc.conn == null) {
+            try {
+                pc.conn = open();
+            } catch (SQLException ex) {
+                idle.offer(pc);
+                throw ex;
+            }
+        }
+        acquisitions.incrementAndGet();
+        inUse.incrementAndGet();
+        return pc;
+    }
+
+    // Devuelve la conexión al pool, deshaciendo cualquier transacción sin confirmar
+    private void release(PooledConnection pc) {
+        try {
+            if (!pc.conn.getAutoCommit()) {
+                pc.conn.rollback();
+                pc.conn.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            // La conexión quedó en mal estado: se cierra y el próximo acquire abre otra
+            ex.printStackTrace();
+            pc.closePhysical();
+        }
+        inUse.decrementAndGet();
+        idle.offer(pc);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    public long getAcquisitions() {
+        return acquisitions.get();
+    }
+
+    public long getWaits() {
+        return waits.get();
+    }
+
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+    }
+
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    // Resumen de una línea con los contadores del pool
+    public String describeStats() {
+        return String.format("pool[tamaño=%d, enUso=%d, adquisiciones=%d, esperas=%d, esperaTotalMs=%d, esperaMaxMs=%d, timeouts=%d]",
+                size, getInUse(), getAcquisitions(), getWaits(), getTotalWaitMillis(), getMaxWaitMillis(), getTimeouts());
+    }
+
+    // Cierra todas las conexiones físicas
+    @Override
+    public void close() {
+        for (PooledConnection pc : all) {
+            pc.closePhysical();
+        }
+        idle.clear();
+    }
+
+    // Conexión prestada por el pool. close() la devuelve al pool en lugar de cerrarla.
+    public final class PooledConnection implements AutoCloseable {
+
+        private Connection conn; // null si se descartó y todavía no se reabrió
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        private PooledConnection(Connection conn) {
+            this.conn = conn;
+        }
+
+        // Conexión JDBC subyacente (no se debe cerrar directamente)
+        public Connection connection() {
+            return conn;
+        }
+
+        // Devuelve el PreparedStatement en caché para ese SQL (lo crea la primera vez).
+        // El statement pertenece al pool: no se debe cerrar, solo sus ResultSet.
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement ps = statements.get(sql);
+            if (ps == null) {
+                ps = conn.prepareStatement(sql);
+                statements.put(sql, ps);
+            } else {
+                ps.clearParameters();
+            }
+            return ps;
+        }
+
+        // Inicia una transacción manual
+        public void begin() throws SQLException {
+            conn.setAutoCommit(false);
+        }
+
+        public void commit() throws SQLException {
+            conn.commit();
+        }
+
+        public void rollback() throws SQLException {
+            conn.rollback();
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+
+        // Cierra la conexión física y descarta los statements en caché
+        private void closePhysical() {
+            for (PreparedStatement ps : statements.values()) {
+                try {
+                    ps.close();
+                } catch (SQLException ignored) {
+                    // Se cierra igual la conexión
+                }
+            }
+            statements.clear();
+            if (conn == null) {
+                return;
+            }
+            try {
+                conn.close();
+            } catch (SQLException ignored) {
+                // Nada más que hacer
+            }
+            conn = null;
+        }
+    }
+}
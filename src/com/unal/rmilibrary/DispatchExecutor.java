@@ -0,0 +1,166 @@
+// DispatchExecutor.java
+package com.unal.rmilibrary;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Ejecutor de las llamadas de LibraryServiceImpl con control de admisión.
+//
+// RMI atiende cada cliente en su propio hilo, sin límite. Aquí el trabajo de la llamada
+// pasa a un ejecutor (hilos virtuales en JDK 21+, o un pool fijo) y solo se admiten
+// 'threads + maxQueued' llamadas a la vez: con el servidor saturado, las demás reciben
+// de inmediato una respuesta BUSY ("intente de nuevo") en vez de hacer cola sin límite.
+public class DispatchExecutor implements AutoCloseable {
+
+    // Modos de library.dispatch
+    public static final String AUTO = "auto";       // virtual si el JDK lo soporta, si no pool
+    public static final String VIRTUAL = "virtual";
+    public static final String POOL = "pool";
+    public static final String NONE = "none";       // en el mismo hilo de RMI (con admisión igual)
+
+    // Trabajo de una llamada (puede fallar como la llamada remota)
+    interface Task<T> {
+        T run() throws RemoteException;
+    }
+
+    private final String mode;
+    private final ExecutorService executor; // null en modo NONE
+    private final Semaphore admission;
+    private final int capacity;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public DispatchExecutor(ServerConfig config) {
+        String m = config.dispatch;
+        ExecutorService virtual = null;
+        if (m.equals(AUTO) || m.equals(VIRTUAL)) {
+            virtual = newVirtualThreadExecutor();
+            if (virtual == null && m.equals(VIRTUAL)) {
+                System.err.println("Hilos virtuales no disponibles en este JDK; se usa un pool de "
+                        + config.dispatchThreads + " hilos");
+            }
+            m = virtual == null ? POOL : VIRTUAL;
+        }
+        this.mode = m;
+        if (m.equals(VIRTUAL)) {
+            this.executor = virtual;
+        } else if (m.equals(POOL)) {
+            AtomicInteger n = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(config.dispatchThreads, config.dispatchThreads,
+                    0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+                        Thread t = new Thread(r, "library-dispatch-" + n.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+        } else {
+            this.executor = null;
+        }
+        this.capacity = config.dispatchThreads + config.dispatchMaxQueued;
+        this.admission = new Semaphore(capacity);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() por reflexión, para compilar y correr
+    // también en JDK 17; null si no existe
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    // Reserva un lugar para una llamada. Si no hay, la cuenta como rechazada y retorna false:
+    // quien llama responde BUSY sin esperar. Con true, la llamada debe pasar por runAdmitted
+    boolean admit() {
+        if (admission.tryAcquire()) {
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    // Ejecuta la tarea de una llamada ya admitida, espera su resultado y libera su lugar
+    <T> T runAdmitted(Task<T> task) throws RemoteException {
+        try {
+            if (executor == null) {
+                active.incrementAndGet();
+                try {
+                    return task.run();
+                } finally {
+                    active.decrementAndGet();
+                }
+            }
+            queued.incrementAndGet();
+            Future<T> f = executor.submit(() -> {
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                try {
+                    return task.run();
+                } finally {
+                    active.decrementAndGet();
+                }
+            });
+            return f.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrumpido esperando la respuesta", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RemoteException) {
+                throw (RemoteException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RemoteException("Error ejecutando la llamada", cause);
+        } finally {
+            admission.release();
+        }
+    }
+
+    // Modo efectivo: virtual, pool o none
+    public String getMode() {
+        return mode;
+    }
+
+    // Llamadas admitidas esperando un hilo
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    // Llamadas ejecutándose
+    public int getActive() {
+        return active.get();
+    }
+
+    // Llamadas rechazadas con BUSY desde el arranque
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    // Máximo de llamadas admitidas a la vez
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
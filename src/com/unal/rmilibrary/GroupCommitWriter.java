@@ -0,0 +1,221 @@
+// GroupCommitWriter.java
+package com.unal.rmilibrary;
+
+import com.unal.rmilibrary.ConnectionPool.PooledConnection;
+
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// Escritor con "group commit": los préstamos y devoluciones de todos los clientes
+// se encolan y un único hilo los aplica en transacciones cortas de varias operaciones
+// (hasta maxBatch operaciones o maxDelayMs de espera), pagando un solo fsync por grupo.
+//
+// Cada operación corre dentro de su propio SAVEPOINT: si una falla, solo se deshace
+// esa y recibe su error; las demás del grupo se confirman. Quien llamó recibe la
+// respuesta cuando el grupo ya está confirmado, igual que sin group commit.
+public class GroupCommitWriter implements AutoCloseable {
+
+    private final BookDAO dao;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Pending<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // Encolar y detener se excluyen: nada entra a la cola después de que close() la vació
+    private final Object enqueueLock = new Object();
+
+    // Espera máxima de un llamador por su grupo. Un grupo tarda milisegundos; esto solo
+    // evita que un hilo RMI quede colgado para siempre si el escritor se traba
+    static final long MAX_WAIT_MS = 60_000;
+
+    public GroupCommitWriter(BookDAO dao, int maxBatch, long maxDelayMs) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("maxBatch debe ser al menos 1: " + maxBatch);
+        }
+        this.dao = dao;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.writer = new Thread(this::loop, "group-commit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // Encola la operación y espera a que su grupo se confirme
+    <T> T submit(String isbn, BookDAO.TxWork<T> work, Function<SQLException, T> onError) {
+        Pending<T> p = new Pending<>(isbn, work, onError);
+        synchronized (enqueueLock) {
+            if (!running) {
+                return onError.apply(new SQLException("El escritor de group commit está detenido"));
+            }
+            queue.add(p);
+        }
+        try {
+            return p.future.get(MAX_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return abandonOrWait(p, onError, "Interrumpido esperando el group commit", ex);
+        } catch (TimeoutException ex) {
+            return abandonOrWait(p, onError, "Sin respuesta del group commit en " + MAX_WAIT_MS + " ms", ex);
+        } catch (Exception ex) {
+            return onError.apply(new SQLException("Error en el group commit", ex));
+        }
+    }
+
+    // El llamador deja de esperar. Si la operación sigue en cola se marca como abandonada y
+    // el escritor la descarta: el error que recibe el cliente es cierto, no se aplicó. Si el
+    // escritor ya la tomó, su grupo se va a confirmar o a deshacer: se espera otro plazo por
+    // esa respuesta, y si tampoco llega se avisa que el resultado es desconocido
+    private <T> T abandonOrWait(Pending<T> p, Function<SQLException, T> onError, String why, Exception cause) {
+        if (p.abandon()) {
+            queue.remove(p);
+            return onError.apply(new SQLException(why + "; la operación no se aplicó", cause));
+        }
+        boolean interrupted = Thread.interrupted();
+        try {
+            return p.future.get(MAX_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException | TimeoutException ex) {
+            return onError.apply(new SQLException(why + "; la operación ya estaba en un grupo y su resultado es desconocido", ex));
+        } catch (Exception ex) {
+            return onError.apply(new SQLException("Error en el group commit", ex));
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Operaciones esperando a ser aplicadas
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    // Bucle del hilo escritor: arma un grupo y lo aplica en una transacción
+    private void loop() {
+        List<Pending<?>> group = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                group.add(queue.take());
+                queue.drainTo(group, maxBatch - group.size());
+                // Esperar un poco más por otras operaciones para llenar el grupo
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (group.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    Pending<?> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                    queue.drainTo(group, maxBatch - group.size());
+                }
+                // Las que su llamador abandonó no se aplican; las demás ya no se pueden abandonar
+                group.removeIf(p -> !p.claim());
+                if (!group.isEmpty()) {
+                    dao.runGroup(group);
+                }
+            } catch (InterruptedException ex) {
+                break;
+            } catch (RuntimeException ex) {
+                // Un error inesperado no debe dejar a los clientes esperando para siempre
+                ex.printStackTrace();
+                for (Pending<?> p : group) {
+                    p.fail(new SQLException("Error en el group commit", ex));
+                }
+            }
+            group.clear();
+        }
+        // Al detenerse, responder con error a lo que quedó en cola
+        for (Pending<?> p : group) {
+            p.fail(new SQLException("El escritor de group commit está detenido"));
+        }
+        for (Pending<?> p = queue.poll(); p != null; p = queue.poll()) {
+            p.fail(new SQLException("El escritor de group commit está detenido"));
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (enqueueLock) {
+            running = false;
+        }
+        writer.interrupt();
+        try {
+            writer.join(5_000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        // Si el escritor no alcanzó a vaciar la cola (o sigue trabado), responder aquí
+        for (Pending<?> p = queue.poll(); p != null; p = queue.poll()) {
+            p.fail(new SQLException("El escritor de group commit está detenido"));
+        }
+    }
+
+    // Operación encolada con el futuro donde su llamador espera la respuesta
+    static final class Pending<T> {
+        final String isbn;
+        private final BookDAO.TxWork<T> work;
+        private final Function<SQLException, T> onError;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private T result;
+
+        private static final int QUEUED = 0;
+        private static final int CLAIMED = 1;   // el escritor la va a aplicar
+        private static final int ABANDONED = 2; // el llamador se fue antes: no se aplica
+
+        Pending(String isbn, BookDAO.TxWork<T> work, Function<SQLException, T> onError) {
+            this.isbn = isbn;
+            this.work = work;
+            this.onError = onError;
+        }
+
+        // El escritor la toma para su grupo; false si el llamador ya la abandonó
+        boolean claim() {
+            return state.compareAndSet(QUEUED, CLAIMED);
+        }
+
+        // El llamador deja de esperar; false si el escritor ya la tomó
+        boolean abandon() {
+            return state.compareAndSet(QUEUED, ABANDONED);
+        }
+
+        // Aplica la operación en su propio SAVEPOINT dentro de la transacción del grupo.
+        // Solo si termina bien se suman sus cambios a los del grupo
+        void execute(PooledConnection conn, BookDAO.TxChanges changed) throws SQLException {
+            Savepoint sp = conn.connection().setSavepoint();
+            BookDAO.TxChanges mine = new BookDAO.TxChanges();
+            try {
+                result = work.run(conn, mine);
+                conn.connection().releaseSavepoint(sp);
+                changed.addAll(mine);
+            } catch (SQLException ex) {
+                conn.connection().rollback(sp);
+                conn.connection().releaseSavepoint(sp);
+                ex.printStackTrace();
+                result = onError.apply(ex);
+            }
+        }
+
+        // El grupo se confirmó: entregar la respuesta
+        void complete() {
+            future.complete(result);
+        }
+
+        // El grupo completo falló
+        void fail(SQLException ex) {
+            future.complete(onError.apply(ex));
+        }
+    }
+}
@@ -0,0 +1,15 @@
+// HoldGate.java
+package com.unal.rmilibrary;
+
+// Reservas temporales de ejemplares que los motores respetan al prestar. Lo consultan
+// con los candados del ISBN tomados, justo antes de descontar el ejemplar, así un
+// préstamo nunca se lleva un ejemplar reservado para otro usuario. Debe volver enseguida
+public interface HoldGate {
+
+    // Ejemplares del ISBN reservados para usuarios distintos de 'userId' (0 si no hay)
+    int heldForOthers(String isbn, String userId);
+
+    // Si el ISBN tiene usuarios esperando o reservas, es decir, si un cambio de inventario
+    // puede conceder una reserva nueva
+    boolean watched(String isbn);
+}
@@ -0,0 +1,174 @@
+// InventoryCache.java
+package com.unal.rmilibrary;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Caché en memoria del inventario por ISBN (título, total y disponibles).
+// Tamaño acotado con expulsión LRU, dividida en segmentos para no tener un único candado.
+//
+// Consistencia: BookDAO escribe aquí el valor ya confirmado de cada préstamo o devolución
+// (write-through) mientras tiene el candado del ISBN. Una lectura que no encontró el libro
+// en caché toma un "sello" antes de ir a la BD y solo guarda lo leído si ninguna escritura
+// tocó el segmento entretanto, así nunca queda en caché una disponibilidad vieja.
+public class InventoryCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final int capacity;
+    private final Segment[] segments;
+
+    // Contadores para dimensionar la caché
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // capacity = número máximo de libros en caché; 0 la desactiva
+    public InventoryCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("La capacidad de la caché no puede ser negativa: " + capacity);
+        }
+        this.capacity = capacity;
+        if (capacity == 0) {
+            this.segments = null;
+        } else {
+            int perSegment = (capacity + SEGMENTS - 1) / SEGMENTS;
+            this.segments = new Segment[SEGMENTS];
+            for (int i = 0; i < SEGMENTS; i++) {
+                segments[i] = new Segment(perSegment);
+            }
+        }
+    }
+
+    private Segment segmentFor(String isbn) {
+        return segments[Math.floorMod(isbn.hashCode(), SEGMENTS)];
+    }
+
+    public boolean isEnabled() {
+        return segments != null;
+    }
+
+    // Retorna el libro en caché o null si no está
+    public QueryResponse get(String isbn) {
+        if (segments == null) {
+            return null;
+        }
+        Segment seg = segmentFor(isbn);
+        QueryResponse r;
+        synchronized (seg) {
+            r = seg.map.get(isbn);
+        }
+        if (r != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return r;
+    }
+
+    // Sello a tomar antes de leer de la BD tras un fallo de caché
+    public long stamp(String isbn) {
+        if (segments == null) {
+            return 0;
+        }
+        Segment seg = segmentFor(isbn);
+        synchronized (seg) {
+            return seg.generation;
+        }
+    }
+
+    // Guarda lo leído de la BD solo si no hubo escrituras en el segmento desde el sello
+    public void putIfUnchanged(String isbn, QueryResponse value, long stamp) {
+        if (segments == null) {
+            return;
+        }
+        Segment seg = segmentFor(isbn);
+        synchronized (seg) {
+            if (seg.generation == stamp) {
+                seg.map.put(isbn, value);
+            }
+        }
+    }
+
+    // Escritura desde BookDAO: guarda el valor ya confirmado en la BD
+    public void put(String isbn, QueryResponse value) {
+        if (segments == null) {
+            return;
+        }
+        Segment seg = segmentFor(isbn);
+        synchronized (seg) {
+            seg.generation++;
+            seg.map.put(isbn, value);
+        }
+    }
+
+    // Quita un libro de la caché (p. ej. si la escritura falló a mitad de camino)
+    public void invalidate(String isbn) {
+        if (segments == null) {
+            return;
+        }
+        Segment seg = segmentFor(isbn);
+        synchronized (seg) {
+            seg.generation++;
+            seg.map.remove(isbn);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getSize() {
+        if (segments == null) {
+            return 0;
+        }
+        int size = 0;
+        for (Segment seg : segments) {
+            synchronized (seg) {
+                size += seg.map.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    // Resumen de una línea con los contadores de la caché
+    public String describeStats() {
+        long h = getHits();
+        long m = getMisses();
+        double ratio = (h + m) == 0 ? 0.0 : (100.0 * h) / (h + m);
+        return String.format("cache[capacidad=%d, tamaño=%d, aciertos=%d, fallos=%d, tasaAciertos=%.1f%%, expulsiones=%d]",
+                capacity, getSize(), h, m, ratio, getEvictions());
+    }
+
+    // Segmento LRU: LinkedHashMap en orden de acceso que expulsa el más antiguo al llenarse
+    private final class Segment {
+        private final LinkedHashMap<String, QueryResponse> map;
+        private long generation; // aumenta con cada escritura en el segmento
+
+        Segment(int maxEntries) {
+            this.map = new LinkedHashMap<String, QueryResponse>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, QueryResponse> eldest) {
+                    if (size() > maxEntries) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+}
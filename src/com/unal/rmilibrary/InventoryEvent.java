@@ -0,0 +1,25 @@
+// InventoryEvent.java
+package com.unal.rmilibrary;
+
+import java.io.Serializable;
+
+// Estado de un libro después de un cambio confirmado en el servidor principal.
+// Lleva valores absolutos (no diferencias): aplicar el más reciente de cada ISBN basta
+public class InventoryEvent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public final long seq;              // número de cambio en el principal (crece de a uno)
+    public final String isbn;
+    public final String title;
+    public final int totalCopies;
+    public final int availableCopies;
+
+    public InventoryEvent(long seq, String isbn, String title, int totalCopies, int availableCopies) {
+        this.seq = seq;
+        this.isbn = isbn;
+        this.title = title;
+        this.totalCopies = totalCopies;
+        this.availableCopies = availableCopies;
+    }
+}
@@ -0,0 +1,11 @@
+// InventoryListener.java
+package com.unal.rmilibrary;
+
+// Recibe el estado nuevo de cada libro cuyo inventario cambió, después de confirmarse.
+// Los motores lo llaman en orden por ISBN (con los candados del libro tomados), así el
+// último aviso de cada ISBN siempre lleva su estado más reciente. Debe volver enseguida:
+// lo usa ReplicationPublisher para encolar los cambios que se envían a las réplicas
+public interface InventoryListener {
+
+    void changed(String isbn, QueryResponse state);
+}
@@ -0,0 +1,254 @@
+// InventoryLog.java
+package com.unal.rmilibrary;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Log de escritura anticipada (write-ahead log) del motor en memoria.
+//
+// Es una serie de segmentos "log-<primer seq>.wal" de tamaño fijo, mapeados en memoria.
+// Cada registro es [largo int][seq long][datos][crc int]; escribirlo es copiar bytes al
+// mapa, así lo escrito sobrevive a una caída del proceso (queda en la caché de páginas
+// del sistema operativo) y force() lo lleva al disco para sobrevivir a un corte de luz.
+// Al recuperar, un largo 0 marca el final de lo escrito en un segmento; un largo imposible
+// o un crc inválido es un registro cortado por una caída, que también termina el segmento
+// (con un aviso). El segmento siguiente, abierto por el arranque posterior, debe continuar
+// justo después del último registro válido: si falta alguno, la recuperación falla.
+//
+// Cuando un segmento se llena se abre otro. Después de un snapshot, los segmentos
+// anteriores a él se pueden borrar.
+public class InventoryLog implements AutoCloseable {
+
+    // Bytes de cada registro además de sus datos: largo, seq y crc
+    private static final int OVERHEAD = 4 + 8 + 4;
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final boolean forceEachAppend;
+    private final CRC32 crc = new CRC32();
+
+    private RandomAccessFile file;
+    private MappedByteBuffer buf;
+    private long lastSeq;
+    private long appended;
+
+    // Procesa un registro recuperado
+    interface Handler {
+        void apply(long seq, DataInputStream in) throws IOException;
+    }
+
+    // Abre un segmento nuevo para escribir a partir de lastSeq + 1.
+    // Los segmentos existentes no se reabren (pueden terminar en un registro cortado)
+    public InventoryLog(Path dir, int segmentBytes, long lastSeq, boolean forceEachAppend) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.forceEachAppend = forceEachAppend;
+        this.lastSeq = lastSeq;
+        Files.createDirectories(dir);
+        openSegment();
+    }
+
+    // Recorre todos los segmentos en orden y entrega los registros con seq > afterSeq.
+    // Retorna el último seq válido encontrado (o afterSeq si no hay ninguno posterior).
+    // Falla si entre afterSeq y el último registro válido falta algún seq
+    public static long replay(Path dir, long afterSeq, Handler handler) throws IOException {
+        long last = afterSeq;
+        CRC32 crc = new CRC32();
+        for (Path segment : segments(dir)) {
+            long first = firstSeqOf(segment);
+            if (first > last + 1 && hasRecords(segment)) {
+                throw new IOException("Faltan los registros " + (last + 1) + ".." + (first - 1)
+                        + " del log antes de " + segment.getFileName());
+            }
+            try (RandomAccessFile f = new RandomAccessFile(segment.toFile(), "r")) {
+                MappedByteBuffer in = f.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, f.length());
+                while (in.remaining() >= OVERHEAD) {
+                    int len = in.getInt();
+                    if (len == 0) {
+                        break; // fin de lo escrito en este segmento
+                    }
+                    if (len < 0 || len > in.remaining() - 12) {
+                        System.err.println("Log: largo inválido en " + segment.getFileName() + " después del seq "
+                                + last + "; se ignora el resto del segmento");
+                        break;
+                    }
+                    long seq = in.getLong();
+                    byte[] data = new byte[len];
+                    in.get(data);
+                    int stored = in.getInt();
+                    crc.reset();
+                    updateLong(crc, seq);
+                    crc.update(data);
+                    if ((int) crc.getValue() != stored) {
+                        // Registro a medio escribir: lo que sigue en este segmento no es confiable
+                        System.err.println("Log: registro cortado en " + segment.getFileName() + " después del seq "
+                                + last + "; se ignora el resto del segmento");
+                        break;
+                    }
+                    if (seq > last) {
+                        handler.apply(seq, new DataInputStream(new ByteArrayInputStream(data)));
+                        last = seq;
+                    }
+                }
+            }
+        }
+        return last;
+    }
+
+    // Si el segmento tiene al menos un registro válido (un segmento abierto justo antes de
+    // una caída puede estar vacío o tener solo un registro cortado)
+    private static boolean hasRecords(Path segment) throws IOException {
+        try (RandomAccessFile f = new RandomAccessFile(segment.toFile(), "r")) {
+            if (f.length() < OVERHEAD) {
+                return false;
+            }
+            int len = f.readInt();
+            if (len <= 0 || len > f.length() - OVERHEAD) {
+                return false;
+            }
+            long seq = f.readLong();
+            byte[] data = new byte[len];
+            f.readFully(data);
+            CRC32 crc = new CRC32();
+            updateLong(crc, seq);
+            crc.update(data);
+            return (int) crc.getValue() == f.readInt();
+        }
+    }
+
+    // Segmentos de la carpeta, ordenados por su primer seq
+    private static List<Path> segments(Path dir) throws IOException {
+        List<Path> out = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return out;
+        }
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "log-*.wal")) {
+            for (Path p : ds) {
+                out.add(p);
+            }
+        }
+        out.sort(null); // el nombre lleva el seq con ceros a la izquierda
+        return out;
+    }
+
+    private static long firstSeqOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(4, name.length() - 4));
+    }
+
+    private static void updateLong(CRC32 crc, long v) {
+        for (int i = 56; i >= 0; i -= 8) {
+            crc.update((int) (v >>> i));
+        }
+    }
+
+    // Escribe los registros de forma contigua (todos en el mismo segmento) y retorna el
+    // seq del último. Las escrituras se serializan: cada una es una copia de pocos bytes
+    public synchronized long append(List<byte[]> records) throws IOException {
+        if (buf == null) {
+            throw new IOException("El log está cerrado");
+        }
+        int needed = 0;
+        for (byte[] r : records) {
+            needed += OVERHEAD + r.length;
+        }
+        if (needed > segmentBytes - 4) {
+            throw new IOException("Registros más grandes que un segmento del log: " + needed + " bytes");
+        }
+        if (needed > buf.remaining() - 4) { // siempre queda lugar para un largo 0 final
+            rotate();
+        }
+        for (byte[] r : records) {
+            long seq = ++lastSeq;
+            crc.reset();
+            updateLong(crc, seq);
+            crc.update(r);
+            buf.putInt(r.length);
+            buf.putLong(seq);
+            buf.put(r);
+            buf.putInt((int) crc.getValue());
+        }
+        appended += records.size();
+        if (forceEachAppend) {
+            buf.force();
+        }
+        return lastSeq;
+    }
+
+    // Lleva a disco lo escrito en el segmento actual
+    public synchronized void force() {
+        if (buf != null) {
+            buf.force();
+        }
+    }
+
+    // Cierra el segmento actual y abre otro. Retorna el último seq escrito: todo lo
+    // anterior queda en segmentos que se pueden borrar cuando un snapshot lo cubra
+    public synchronized long checkpoint() throws IOException {
+        rotate();
+        return lastSeq;
+    }
+
+    // Borra los segmentos cerrados cuyo contenido ya está en el snapshot, es decir, los
+    // que empiezan antes del segmento abierto por el checkpoint que retornó seqInSnapshot
+    public void deleteSegmentsBefore(long seqInSnapshot) throws IOException {
+        for (Path segment : segments(dir)) {
+            if (firstSeqOf(segment) <= seqInSnapshot) {
+                try {
+                    Files.deleteIfExists(segment);
+                } catch (IOException ex) {
+                    // En Windows un archivo aún mapeado no se puede borrar: queda para el próximo
+                    // snapshot (sus registros se saltan al recuperar por tener seq menor)
+                }
+            }
+        }
+    }
+
+    public synchronized long getLastSeq() {
+        return lastSeq;
+    }
+
+    // Registros escritos desde que se abrió el log
+    public synchronized long getAppended() {
+        return appended;
+    }
+
+    private void rotate() throws IOException {
+        buf.force();
+        file.close();
+        openSegment();
+    }
+
+    private void openSegment() throws IOException {
+        Path path = dir.resolve(String.format("log-%020d.wal", lastSeq + 1));
+        file = new RandomAccessFile(path.toFile(), "rw");
+        // Si ya existía (sin registros válidos, p. ej. cortado en el primero) se vacía
+        file.setLength(0);
+        file.setLength(segmentBytes);
+        buf = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (buf == null) {
+            return;
+        }
+        try {
+            buf.force();
+            file.close();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+        buf = null;
+    }
+}
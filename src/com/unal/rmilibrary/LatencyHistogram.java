@@ -0,0 +1,109 @@
+// LatencyHistogram.java
+package com.unal.rmilibrary;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Histograma de latencias en nanosegundos, al estilo HdrHistogram pero mínimo.
+// Buckets log-lineales: cada potencia de 2 se divide en 128 sub-buckets, así el error
+// relativo de cualquier percentil es menor al 1% con un arreglo fijo de ~7000 contadores.
+// record() no toma candados y se puede llamar desde muchos hilos a la vez.
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 7;
+    private static final int SUB_COUNT = 1 << SUB_BITS; // 128
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    // Registra una muestra (valores negativos cuentan como 0)
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(v));
+        count.incrementAndGet();
+        sum.addAndGet(v);
+        max.accumulateAndGet(v, Math::max);
+    }
+
+    // Bucket de un valor: los menores a 128 van directo; el resto según su bit más alto
+    private static int indexOf(long v) {
+        if (v < SUB_COUNT) {
+            return (int) v;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(v)) - SUB_BITS;
+        int sub = (int) (v >>> shift) - SUB_COUNT;
+        return (shift + 1) * SUB_COUNT + sub;
+    }
+
+    // Valor representativo (punto medio) de un bucket
+    private static long valueOf(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_COUNT - 1;
+        long low = (long) (index % SUB_COUNT + SUB_COUNT) << shift;
+        return low + ((1L << shift) >>> 1);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0.0 : (double) sum.get() / n;
+    }
+
+    // Percentil (0-100) en nanosegundos; 0 si no hay muestras
+    public long percentile(double p) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(n * p / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(valueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // Suma las muestras de otro histograma a este
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = other.counts.get(i);
+            if (c != 0) {
+                counts.addAndGet(i, c);
+            }
+        }
+        count.addAndGet(other.count.get());
+        sum.addAndGet(other.sum.get());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    // Vacía el histograma (para métricas por intervalo)
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    // Resumen en microsegundos: n, p50, p99, p99.9 y máximo
+    public String describe() {
+        return String.format("n=%d p50=%dus p99=%dus p999=%dus max=%dus",
+                getCount(), percentile(50) / 1000, percentile(99) / 1000, percentile(99.9) / 1000, getMax() / 1000);
+    }
+}
@@ -1,6 +1,14 @@
 package com.unal.rmilibrary;
 
-import java.rmi.Naming;        // API RMI: Naming.lookup() para obtener el "stub" remoto
+import java.io.UncheckedIOException;
+import java.rmi.server.UnicastRemoteObject;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Scanner;     // Para leer entrada por consola
 
 public class LibraryClient {
@@ -9,19 +17,24 @@ public class LibraryClient {
         try {
             Scanner sc = new Scanner(System.in); // Scanner para leer del STDIN
 
-            // Pide la IP del servidor; si el usuario presiona ENTER se usa "localhost"
-            System.out.print("Ingrese la IP del servidor (enter para localhost): ");
-            String servidor = sc.nextLine().trim();
-            if (servidor.isEmpty()) {
-                servidor = "localhost";
+            // Pide la IP del servidor; si el usuario presiona ENTER se usa "localhost".
+            // Con fragmentos se dan todos los servidores en orden: "host:puerto, host:puerto, ..."
+            System.out.print("Ingrese la IP del servidor (enter para localhost; varios separados por coma): ");
+            List<String> servidores = splitList(sc.nextLine());
+            if (servidores.isEmpty()) {
+                servidores.add("localhost");
             }
 
-            // Construye la URL RMI usando puerto fijo 1099 y nombre "LibraryService"
-            String url = "rmi://" + servidor + ":1099/LibraryService";
+            // Construye las URL RMI (puerto 1099 y nombre "LibraryService" si no se indican)
+            List<String> urls = new ArrayList<>();
+            for (String servidor : servidores) {
+                urls.add(ShardedLibraryClient.url(servidor));
+            }
 
-            // Busca/obtiene el stub remoto que implementa LibraryService en el registry
-            LibraryService service = (LibraryService) Naming.lookup(url);
-            System.out.println("Conectado a " + url);
+            // Cliente sobre los stubs remotos: envía cada ISBN a su fragmento, vuelve a conectar
+            // y reintenta si un servidor se reinicia, y guarda unos segundos las consultas
+            ShardedLibraryClient service = new ShardedLibraryClient(urls).connect();
+            System.out.println("Conectado a " + String.join(", ", urls));
 
             // Solicita al usuario su id (se usa para asociar préstamos/devoluciones)
             System.out.print("Ingrese su ID de usuario: ");
@@ -31,6 +44,10 @@ public class LibraryClient {
                 userId = "usuario_" + System.currentTimeMillis();
             }
 
+            // Objeto remoto de este cliente para los avisos de disponibilidad (opción 9);
+            // se exporta la primera vez que se usa
+            AvisoDisponibilidad aviso = null;
+
             // Bucle principal del cliente: muestra menú y realiza llamadas remotas
             while (true) {
                 System.out.println("\n=== MENÚ BIBLIOTECA ===");
@@ -39,6 +56,11 @@ public class LibraryClient {
                 System.out.println("2. Préstamo por ISBN");
                 System.out.println("3. Préstamo por Título");
                 System.out.println("4. Devolver libro");
+                System.out.println("5. Préstamo de varios libros (ISBN separados por coma)");
+                System.out.println("6. Devolver varios libros (ISBN separados por coma)");
+                System.out.println("7. Buscar por título o autor");
+                System.out.println("8. Mis préstamos activos");
+                System.out.println("9. Avisarme cuando haya un ejemplar (ISBN)");
                 System.out.println("0. Salir");
                 System.out.print("Seleccione opción: ");
 
@@ -77,8 +99,101 @@ public class LibraryClient {
                         ReturnResponse rr = service.returnBook(isbn, userId); // llamada RMI
                         System.out.println(rr.message);
                         break;
+                    case "5":
+                        // Opción 5: varios préstamos en una sola llamada RMI
+                        System.out.print("ISBNs: ");
+                        List<String> isbns = splitList(sc.nextLine());
+                        List<LoanResponse> loans = service.loanMany(isbns, userId); // llamada RMI
+                        for (int i = 0; i < isbns.size(); i++) {
+                            System.out.println(isbns.get(i) + ": " + loans.get(i).message);
+                        }
+                        break;
+                    case "6":
+                        // Opción 6: varias devoluciones en una sola llamada RMI
+                        System.out.print("ISBNs: ");
+                        isbns = splitList(sc.nextLine());
+                        List<ReturnResponse> returns = service.returnMany(isbns, userId); // llamada RMI
+                        for (int i = 0; i < isbns.size(); i++) {
+                            System.out.println(isbns.get(i) + ": " + returns.get(i).message);
+                        }
+                        break;
+                    case "7":
+                        // Opción 7: búsqueda paginada (de a 10 resultados)
+                        System.out.print("Buscar: ");
+                        String text = sc.nextLine().trim();
+                        System.out.print("Modo (1 prefijo, 2 palabra exacta, 3 con errores de tipeo; enter = 1): ");
+                        String modo = sc.nextLine().trim();
+                        int mode = modo.equals("2") ? SearchQuery.KEYWORD
+                                : modo.equals("3") ? SearchQuery.FUZZY : SearchQuery.PREFIX;
+                        int offset = 0;
+                        while (true) {
+                            SearchResponse sr = service.searchBooks(
+                                    new SearchQuery(text, SearchQuery.ANY, mode, offset, 10)); // llamada RMI
+                            if (sr.status == ResponseStatus.BUSY) {
+                                System.out.println(ResponseStatus.message(sr.status, null));
+                                break;
+                            }
+                            for (BookSummary b : sr.books) {
+                                System.out.printf("%s | %s | %s | disponibles: %d/%d%n",
+                                        b.isbn, b.title, b.author, b.availableCopies, b.totalCopies);
+                            }
+                            System.out.printf("Resultados %d-%d de %d%n",
+                                    sr.books.isEmpty() ? 0 : offset + 1, offset + sr.books.size(), sr.total);
+                            if (!sr.hasMore()) {
+                                break;
+                            }
+                            System.out.print("Enter para ver más, cualquier otra tecla para terminar: ");
+                            if (!sc.nextLine().trim().isEmpty()) {
+                                break;
+                            }
+                            offset += sr.books.size();
+                        }
+                        break;
+                    case "8":
+                        // Opción 8: préstamos sin devolver del usuario, con los vencidos marcados
+                        Iterator<LoanRecord> active = LibraryPages.activeLoans(service, userId, 100);
+                        LocalDate today = LocalDate.now();
+                        int count = 0;
+                        try {
+                            while (active.hasNext()) {
+                                LoanRecord l = active.next();
+                                System.out.printf("%s | prestado %s | devolver antes del %s%s%n", l.isbn, l.loanDate,
+                                        l.dueDate, l.dueDate.isBefore(today) ? " | VENCIDO" : "");
+                                count++;
+                            }
+                        } catch (UncheckedIOException ex) {
+                            // p. ej. conectado a una réplica: los préstamos se consultan en el principal
+                            System.out.println(ex.getCause().getMessage());
+                            break;
+                        }
+                        System.out.println(count == 0 ? "No tiene préstamos activos." : count + " préstamos activos");
+                        break;
+                    case "9":
+                        // Opción 9: el servidor avisa (llamando a este cliente) cuando hay un
+                        // ejemplar reservado para el usuario, en vez de consultar una y otra vez
+                        System.out.print("ISBN: ");
+                        isbn = sc.nextLine().trim();
+                        if (aviso == null) {
+                            aviso = new AvisoDisponibilidad();
+                            UnicastRemoteObject.exportObject(aviso, 0);
+                        }
+                        QueryResponse estado = service.subscribeAvailability(isbn, userId, aviso); // llamada RMI
+                        if (estado.status == ResponseStatus.BOOK_NOT_FOUND) {
+                            System.out.println("No encontrado.");
+                        } else if (!estado.found) {
+                            System.out.println(ResponseStatus.message(estado.status, null));
+                        } else {
+                            System.out.printf("Suscrito a \"%s\" (disponibles ahora: %d). Se le avisará cuando "
+                                    + "haya un ejemplar reservado para usted.%n", estado.title, estado.availableCopies);
+                        }
+                        break;
                     case "0":
                         // Salir del programa
+                        if (aviso != null) {
+                            UnicastRemoteObject.unexportObject(aviso, true);
+                        }
+                        System.out.println(service.describeStats());
+                        service.close();
                         System.out.println("Saliendo...");
                         return; // termina la ejecución del main (no cierra explicitamente el Scanner)
                     default:
@@ -92,4 +207,26 @@ public class LibraryClient {
             e.printStackTrace();
         }
     }
+
+    // Recibe los avisos de disponibilidad del servidor. Llegan en un hilo de RMI mientras el
+    // menú espera una opción, por eso se imprimen en una línea aparte
+    private static final class AvisoDisponibilidad implements AvailabilityCallback {
+        @Override
+        public void available(String isbn, String userId, QueryResponse book, long holdUntil) {
+            LocalTime hasta = LocalTime.ofInstant(Instant.ofEpochMilli(holdUntil), ZoneId.systemDefault()).withNano(0);
+            System.out.printf("%n[aviso] Hay un ejemplar de \"%s\" (%s) reservado para %s hasta las %s. "
+                    + "Use la opción 2 para prestarlo.%n", book.title, isbn, userId, hasta);
+        }
+    }
+
+    // Separa una línea "a, b, c" en la lista [a, b, c] (ignora entradas vacías)
+    private static List<String> splitList(String line) {
+        List<String> items = new ArrayList<>();
+        for (String part : line.split(",")) {
+            if (!part.trim().isEmpty()) {
+                items.add(part.trim());
+            }
+        }
+        return items;
+    }
 }
@@ -0,0 +1,88 @@
+// LibraryDAO.java
+package com.unal.rmilibrary;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+// Operaciones de datos que usa LibraryServiceImpl. Hay dos motores:
+// BookDAO (SQLite, por defecto) y MemoryBookDAO (en memoria con log y snapshots),
+// elegidos con -Dlibrary.engine al arrancar. Una réplica (-Dlibrary.replicaOf) usa
+// ReplicaDAO, que guarda en memoria el inventario que le envía el principal.
+public interface LibraryDAO extends AutoCloseable {
+
+    // Máximo de ISBN por operación en lote (acota el tiempo con candados tomados)
+    int MAX_BATCH = 200;
+
+    // Máximo de elementos por página de listBooks y listLoans
+    int MAX_PAGE = 1000;
+
+    // Crea el motor indicado en la configuración
+    static LibraryDAO open(String jdbcUrl, ServerConfig config, LibraryMetrics metrics) throws SQLException {
+        if (config.isReplica()) {
+            return new ReplicaDAO(config, metrics);
+        }
+        if (ServerConfig.ENGINE_MEMORY.equals(config.engine)) {
+            return new MemoryBookDAO(jdbcUrl, config, metrics);
+        }
+        return new BookDAO(jdbcUrl, config, metrics);
+    }
+
+    // Consulta un libro por su ISBN; vacío si no existe
+    Optional<QueryResponse> queryByISBN(String isbn) throws SQLException;
+
+    // Consulta varios libros; el resultado va en el mismo orden
+    List<Optional<QueryResponse>> queryMany(List<String> isbns) throws SQLException;
+
+    LoanResponse loanByISBN(String isbn, String userId);
+
+    // Préstamos de varios ISBN: cada uno con su resultado, todos confirmados juntos
+    List<LoanResponse> loanMany(List<String> isbns, String userId);
+
+    LoanResponse loanByTitle(String title, String userId);
+
+    ReturnResponse returnBook(String isbn, String userId);
+
+    // Devoluciones de varios ISBN: cada uno con su resultado, todos confirmados juntos
+    List<ReturnResponse> returnMany(List<String> isbns, String userId);
+
+    // Búsqueda en el índice de títulos y autores, con el inventario actual de cada libro
+    SearchResponse search(SearchQuery q) throws SQLException;
+
+    // Página del catálogo ordenado por ISBN, empezando después de afterIsbn (null = desde el inicio)
+    BookPage listBooks(String afterIsbn, int limit) throws SQLException;
+
+    // Página de los préstamos de un usuario ordenados por id, empezando después de afterId
+    LoanPage listLoans(String userId, long afterId, int limit) throws SQLException;
+
+    // Recorre todos los préstamos sin devolver (para cargar OverdueTracker al arrancar)
+    void forEachActiveLoan(Consumer<LoanRecord> action) throws SQLException;
+
+    // Carga libros en bloque: agrega los nuevos y actualiza título, autor y total de los
+    // existentes (los disponibles cambian en la misma diferencia que el total). Retorna
+    // cuántos libros se procesaron
+    long importBooks(Iterator<BookSummary> books) throws SQLException;
+
+    // Índice de búsqueda del catálogo
+    CatalogIndex getCatalogIndex();
+
+    // Recibe el estado nuevo de cada libro que cambie por un préstamo o una devolución
+    // (null deja de avisar). Lo usa la replicación hacia réplicas de solo lectura
+    void setInventoryListener(InventoryListener listener);
+
+    // Recibe cada préstamo y devolución confirmados (null deja de avisar)
+    void setLoanListener(LoanListener listener);
+
+    // Reservas que los préstamos deben respetar (null = ninguna). Lo usan los avisos de
+    // disponibilidad para guardar el ejemplar liberado al usuario avisado
+    void setHoldGate(HoldGate gate);
+
+    // Contadores del motor para imprimir al apagar el servidor
+    String describeStats();
+
+    // Libera los recursos del motor
+    @Override
+    void close();
+}
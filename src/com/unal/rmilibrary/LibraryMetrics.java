@@ -0,0 +1,306 @@
+// LibraryMetrics.java
+package com.unal.rmilibrary;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Métricas del servidor: una OperationMetrics por método de LibraryService y los
+// indicadores del pool, la caché y el group commit. Se publican como MBeans JMX
+// (dominio com.unal.rmilibrary, visibles con jconsole o VisualVM) y en una línea de
+// log periódica con lo ocurrido en el último intervalo.
+public class LibraryMetrics implements LibraryMetricsMBean {
+
+    public final OperationMetrics queryByISBN = new OperationMetrics("queryByISBN");
+    public final OperationMetrics loanByISBN = new OperationMetrics("loanByISBN");
+    public final OperationMetrics loanByTitle = new OperationMetrics("loanByTitle");
+    public final OperationMetrics returnBook = new OperationMetrics("returnBook");
+    public final OperationMetrics queryMany = new OperationMetrics("queryMany");
+    public final OperationMetrics loanMany = new OperationMetrics("loanMany");
+    public final OperationMetrics returnMany = new OperationMetrics("returnMany");
+    public final OperationMetrics searchBooks = new OperationMetrics("searchBooks");
+    public final OperationMetrics listBooks = new OperationMetrics("listBooks");
+    public final OperationMetrics listLoans = new OperationMetrics("listLoans");
+    public final OperationMetrics listActiveLoans = new OperationMetrics("listActiveLoans");
+    public final OperationMetrics getOverdueLoans = new OperationMetrics("getOverdueLoans");
+    public final OperationMetrics subscribeAvailability = new OperationMetrics("subscribeAvailability");
+    // Transacciones de la carga en bloque (importBooks)
+    public final OperationMetrics importBooks = new OperationMetrics("importBooks");
+    // Transacciones del group commit (tiempo de BD y de candados del hilo escritor)
+    public final OperationMetrics groupCommit = new OperationMetrics("groupCommit");
+
+    private final List<OperationMetrics> all = List.of(
+            queryByISBN, loanByISBN, loanByTitle, returnBook, queryMany, loanMany, returnMany, searchBooks,
+            listBooks, listLoans, listActiveLoans, getOverdueLoans, subscribeAvailability, importBooks, groupCommit);
+
+    // Componentes observados (pueden ser null si no existen en esta configuración)
+    private volatile ConnectionPool pool;
+    private volatile InventoryCache cache;
+    private volatile GroupCommitWriter groupWriter;
+    private volatile DispatchExecutor dispatcher;
+    private volatile Supplier<ReplicationStatus> replication;
+    private volatile OverdueTracker overdue;
+    private volatile AvailabilityNotifier availability;
+
+    private ScheduledExecutorService logger;
+
+    // Conecta los componentes cuyos indicadores se publican
+    public void attach(ConnectionPool pool, InventoryCache cache, GroupCommitWriter groupWriter) {
+        this.pool = pool;
+        this.cache = cache;
+        this.groupWriter = groupWriter;
+    }
+
+    // Conecta el ejecutor de llamadas (cola y rechazos por saturación)
+    public void attach(DispatchExecutor dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    // Conecta el índice de préstamos activos y vencidos
+    public void attach(OverdueTracker overdue) {
+        this.overdue = overdue;
+    }
+
+    // Conecta los avisos de disponibilidad
+    public void attach(AvailabilityNotifier availability) {
+        this.availability = availability;
+    }
+
+    // Conecta el estado de la replicación (réplicas del principal, o atraso de una réplica)
+    public void attach(Supplier<ReplicationStatus> replication) {
+        this.replication = replication;
+    }
+
+    public List<OperationMetrics> operations() {
+        return all;
+    }
+
+    // Registra los MBeans en el servidor JMX de la plataforma
+    public void registerMBeans() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(this, new ObjectName("com.unal.rmilibrary:type=Server"));
+        for (OperationMetrics op : all) {
+            server.registerMBean(op, new ObjectName("com.unal.rmilibrary:type=Operation,name=" + op.getName()));
+        }
+    }
+
+    // Imprime una línea de métricas cada 'seconds' segundos en un hilo daemon
+    public synchronized void startLogging(int seconds) {
+        if (seconds <= 0 || logger != null) {
+            return;
+        }
+        logger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-log");
+            t.setDaemon(true);
+            return t;
+        });
+        logger.scheduleAtFixedRate(() -> System.out.println("[métricas] " + intervalLine()),
+                seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopLogging() {
+        if (logger != null) {
+            logger.shutdownNow();
+            logger = null;
+        }
+    }
+
+    // Línea con las operaciones que tuvieron llamadas desde el log anterior. Latencias y
+    // errores son solo de ese intervalo (los acumulados siguen en los MBeans)
+    private String intervalLine() {
+        StringBuilder sb = new StringBuilder();
+        for (OperationMetrics op : all) {
+            long calls = op.getCalls();
+            long delta = calls - op.lastLoggedCalls;
+            op.lastLoggedCalls = calls;
+            LatencyHistogram h = op.takeIntervalLatency();
+            long errors = op.takeIntervalErrors();
+            if (delta > 0 || h.getCount() > 0 || errors > 0) {
+                sb.append(String.format(Locale.ROOT, "%s +%d p50=%dus p99=%dus err=%d enCurso=%d | ",
+                        op.getName(), delta, h.percentile(50) / 1000, h.percentile(99) / 1000,
+                        errors, op.getInFlight()));
+            }
+        }
+        if (sb.length() == 0) {
+            sb.append("sin llamadas | ");
+        }
+        return sb.append(componentsLine()).toString();
+    }
+
+    private String componentsLine() {
+        StringBuilder sb = new StringBuilder();
+        DispatchExecutor d = dispatcher;
+        if (d != null) {
+            sb.append(String.format("llamadas activas=%d cola=%d rechazadas=%d | ",
+                    d.getActive(), d.getQueueDepth(), d.getRejected()));
+        }
+        ConnectionPool p = pool;
+        if (p != null) {
+            sb.append(String.format("pool enUso=%d/%d esperas=%d esperaMax=%dms",
+                    p.getInUse(), p.getSize(), p.getWaits(), p.getMaxWaitMillis()));
+        }
+        InventoryCache c = cache;
+        if (c != null && c.isEnabled()) {
+            long h = c.getHits();
+            long total = h + c.getMisses();
+            sb.append(String.format(Locale.ROOT, " | cache aciertos=%.1f%% expulsiones=%d",
+                    total == 0 ? 0.0 : 100.0 * h / total, c.getEvictions()));
+        }
+        GroupCommitWriter g = groupWriter;
+        if (g != null) {
+            sb.append(" | groupCommit cola=").append(g.getQueueDepth());
+        }
+        OverdueTracker o = overdue;
+        if (o != null) {
+            sb.append(" | préstamos activos=").append(o.getActiveCount()).append(" vencidos=").append(o.getOverdueCount());
+        }
+        AvailabilityNotifier a = availability;
+        if (a != null && (a.getSent() > 0 || a.getHolds() > 0 || a.getWaiting() > 0)) {
+            sb.append(" | avisos esperando=").append(a.getWaiting()).append(" reservas=").append(a.getHolds())
+                    .append(" enviados=").append(a.getSent());
+        }
+        ReplicationStatus r = replicationStatus();
+        if (r != null) {
+            sb.append(" | ").append(r);
+        }
+        return sb.toString();
+    }
+
+    private ReplicationStatus replicationStatus() {
+        Supplier<ReplicationStatus> s = replication;
+        return s == null ? null : s.get();
+    }
+
+    @Override
+    public long getActiveLoans() {
+        OverdueTracker o = overdue;
+        return o == null ? 0 : o.getActiveCount();
+    }
+
+    @Override
+    public long getOverdueLoans() {
+        OverdueTracker o = overdue;
+        return o == null ? 0 : o.getOverdueCount();
+    }
+
+    @Override
+    public long getAvailabilityWaiting() {
+        AvailabilityNotifier a = availability;
+        return a == null ? 0 : a.getWaiting();
+    }
+
+    @Override
+    public long getAvailabilityHolds() {
+        AvailabilityNotifier a = availability;
+        return a == null ? 0 : a.getHolds();
+    }
+
+    @Override
+    public long getAvailabilityNoticesSent() {
+        AvailabilityNotifier a = availability;
+        return a == null ? 0 : a.getSent();
+    }
+
+    @Override
+    public int getReplicaCount() {
+        ReplicationStatus r = replicationStatus();
+        return r == null ? 0 : r.replicas;
+    }
+
+    @Override
+    public long getReplicationLagEvents() {
+        ReplicationStatus r = replicationStatus();
+        return r == null ? 0 : r.lagEvents();
+    }
+
+    @Override
+    public long getReplicationLagMillis() {
+        ReplicationStatus r = replicationStatus();
+        return r == null ? 0 : r.lagMillis;
+    }
+
+    @Override
+    public int getPoolSize() {
+        ConnectionPool p = pool;
+        return p == null ? 0 : p.getSize();
+    }
+
+    @Override
+    public int getPoolInUse() {
+        ConnectionPool p = pool;
+        return p == null ? 0 : p.getInUse();
+    }
+
+    @Override
+    public long getPoolWaits() {
+        ConnectionPool p = pool;
+        return p == null ? 0 : p.getWaits();
+    }
+
+    @Override
+    public long getPoolMaxWaitMillis() {
+        ConnectionPool p = pool;
+        return p == null ? 0 : p.getMaxWaitMillis();
+    }
+
+    @Override
+    public long getCacheHits() {
+        InventoryCache c = cache;
+        return c == null ? 0 : c.getHits();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        InventoryCache c = cache;
+        return c == null ? 0 : c.getMisses();
+    }
+
+    @Override
+    public long getCacheEvictions() {
+        InventoryCache c = cache;
+        return c == null ? 0 : c.getEvictions();
+    }
+
+    @Override
+    public int getGroupCommitQueueDepth() {
+        GroupCommitWriter g = groupWriter;
+        return g == null ? 0 : g.getQueueDepth();
+    }
+
+    @Override
+    public int getDispatchActive() {
+        DispatchExecutor d = dispatcher;
+        return d == null ? 0 : d.getActive();
+    }
+
+    @Override
+    public int getDispatchQueueDepth() {
+        DispatchExecutor d = dispatcher;
+        return d == null ? 0 : d.getQueueDepth();
+    }
+
+    @Override
+    public long getDispatchRejected() {
+        DispatchExecutor d = dispatcher;
+        return d == null ? 0 : d.getRejected();
+    }
+
+    @Override
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        for (OperationMetrics op : all) {
+            if (op.getCalls() > 0) {
+                sb.append(op.getName()).append(' ').append(op.latency().describe())
+                        .append(" err=").append(op.getErrors()).append(" | ");
+            }
+        }
+        return sb.append(componentsLine()).toString();
+    }
+}
@@ -0,0 +1,53 @@
+// LibraryMetricsMBean.java
+package com.unal.rmilibrary;
+
+// Interfaz JMX con los indicadores generales del servidor (ver LibraryMetrics)
+public interface LibraryMetricsMBean {
+
+    int getPoolSize();
+
+    int getPoolInUse();
+
+    long getPoolWaits();
+
+    long getPoolMaxWaitMillis();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    long getCacheEvictions();
+
+    int getGroupCommitQueueDepth();
+
+    // Ejecutor de llamadas: en ejecución, admitidas esperando hilo y rechazadas con BUSY
+    int getDispatchActive();
+
+    int getDispatchQueueDepth();
+
+    long getDispatchRejected();
+
+    // Préstamos sin devolver y, de ellos, los vencidos (ver OverdueTracker)
+    long getActiveLoans();
+
+    long getOverdueLoans();
+
+    // Avisos de disponibilidad: usuarios esperando, reservas vigentes y avisos enviados
+    // (ver AvailabilityNotifier)
+    long getAvailabilityWaiting();
+
+    long getAvailabilityHolds();
+
+    long getAvailabilityNoticesSent();
+
+    // Replicación: réplicas conectadas (en el principal) y atraso en cambios y en milisegundos
+    // (de la réplica más lenta en el principal, o de esta réplica)
+    int getReplicaCount();
+
+    long getReplicationLagEvents();
+
+    long getReplicationLagMillis();
+
+    // Resumen de una línea como el del log periódico
+    String getSummary();
+}
@@ -0,0 +1,150 @@
+// LibraryPages.java
+package com.unal.rmilibrary;
+
+import java.io.UncheckedIOException;
+import java.rmi.RemoteException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// Recorridos del lado del cliente sobre listBooks y los listados de préstamos.
+//
+// Cada iterador pide una página a la vez (con el cursor de la anterior) y solo la pide
+// cuando se terminó de consumir la actual: el cliente tiene en memoria una página, el
+// servidor no arma nunca la lista completa. Si el servidor responde BUSY se espera un
+// poco y se repite la misma página. Un error RMI, o cualquier otra respuesta que no sea
+// OK (p. ej. READ_ONLY de una réplica), sale como UncheckedIOException.
+public final class LibraryPages {
+
+    // Espera ante BUSY: empieza en este valor y se duplica hasta el máximo
+    private static final long BUSY_WAIT_MS = 50;
+    private static final long BUSY_WAIT_MAX_MS = 2_000;
+
+    private LibraryPages() {
+    }
+
+    // Todo el catálogo ordenado por ISBN
+    public static Iterator<BookSummary> books(LibraryService service, int pageSize) {
+        checkPageSize(pageSize);
+        return new Paged<BookSummary>() {
+            private String after;      // cursor (null = desde el inicio)
+            private boolean last;
+
+            @Override
+            List<BookSummary> fetch() throws RemoteException, InterruptedException {
+                if (last) {
+                    return null;
+                }
+                BookPage page = service.listBooks(after, pageSize);
+                for (long wait = BUSY_WAIT_MS; page.status == ResponseStatus.BUSY; wait = nextWait(wait)) {
+                    Thread.sleep(wait);
+                    page = service.listBooks(after, pageSize);
+                }
+                checkStatus(page.status);
+                after = page.nextAfterIsbn;
+                last = after == null;
+                return page.books;
+            }
+        };
+    }
+
+    // Los préstamos de un usuario ordenados por id
+    public static Iterator<LoanRecord> loans(LibraryService service, String userId, int pageSize) {
+        return loanPages(pageSize, after -> service.listLoans(userId, after, pageSize));
+    }
+
+    // Los préstamos sin devolver de un usuario
+    public static Iterator<LoanRecord> activeLoans(LibraryService service, String userId, int pageSize) {
+        return loanPages(pageSize, after -> service.listActiveLoans(userId, after, pageSize));
+    }
+
+    // Los préstamos vencidos de todos los usuarios
+    public static Iterator<LoanRecord> overdueLoans(LibraryService service, int pageSize) {
+        return loanPages(pageSize, after -> service.getOverdueLoans(after, pageSize));
+    }
+
+    // Una página de préstamos después del cursor indicado
+    private interface LoanPageCall {
+        LoanPage fetch(long afterId) throws RemoteException;
+    }
+
+    private static Iterator<LoanRecord> loanPages(int pageSize, LoanPageCall call) {
+        checkPageSize(pageSize);
+        return new Paged<LoanRecord>() {
+            private long after = 0;
+            private boolean last;
+
+            @Override
+            List<LoanRecord> fetch() throws RemoteException, InterruptedException {
+                if (last) {
+                    return null;
+                }
+                LoanPage page = call.fetch(after);
+                for (long wait = BUSY_WAIT_MS; page.status == ResponseStatus.BUSY; wait = nextWait(wait)) {
+                    Thread.sleep(wait);
+                    page = call.fetch(after);
+                }
+                checkStatus(page.status);
+                after = page.nextAfterId;
+                last = after == LoanPage.END;
+                return page.loans;
+            }
+        };
+    }
+
+    // Una página que no es OK no trae cursor confiable: seguir pidiendo no terminaría nunca
+    private static void checkStatus(int status) throws RemoteException {
+        if (status != ResponseStatus.OK) {
+            throw new RemoteException("El servidor no entregó la página: " + ResponseStatus.message(status, null));
+        }
+    }
+
+    private static long nextWait(long wait) {
+        return Math.min(wait * 2, BUSY_WAIT_MAX_MS);
+    }
+
+    private static void checkPageSize(int pageSize) {
+        if (pageSize < 1 || pageSize > LibraryDAO.MAX_PAGE) {
+            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y " + LibraryDAO.MAX_PAGE);
+        }
+    }
+
+    // Iterador que recorre páginas; fetch() retorna null cuando no hay más
+    private abstract static class Paged<T> implements Iterator<T> {
+        private List<T> page = List.of();
+        private int pos;
+        private boolean done;
+
+        abstract List<T> fetch() throws RemoteException, InterruptedException;
+
+        @Override
+        public boolean hasNext() {
+            // Una página vacía en medio (p. ej. préstamos devueltos entre llamadas) no corta el recorrido
+            while (!done && pos == page.size()) {
+                try {
+                    List<T> next = fetch();
+                    if (next == null) {
+                        done = true;
+                    } else {
+                        page = next;
+                        pos = 0;
+                    }
+                } catch (RemoteException ex) {
+                    throw new UncheckedIOException(ex);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrumpido esperando una página", ex);
+                }
+            }
+            return !done;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.get(pos++);
+        }
+    }
+}
@@ -13,6 +13,8 @@ public class LibraryServer {
             if (args.length >= 1) {
                 jdbcUrl = args[0]; // Permitir pasar otra BD como argumento
             }
+            // Ajustes del pool y de SQLite (-Dlibrary.pool.size=N, -Dlibrary.sqlite.synchronous=..., etc.)
+            ServerConfig config = ServerConfig.fromSystemProperties();
             // Detectar automáticamente la IP local de la máquina (ej. 192.168.1.10)
             String hostAddress = InetAddress.getLocalHost().getHostAddress();
 
@@ -20,30 +22,69 @@ public class LibraryServer {
             // indica qué dirección IP deben usar los clientes al conectarse a este servidor
             System.setProperty("java.rmi.server.hostname", hostAddress);
 
-            // Iniciar registro RMI en puerto 1099 (estándar)
+            // Tiempo máximo de respuesta de cada llamada RMI que sale de este proceso: es una
+            // propiedad global de la JVM, no solo de los avisos. En el principal las llamadas
+            // salientes son los avisos de disponibilidad y los envíos a las réplicas, y se acotan
+            // con notifyTimeoutMs: un cliente colgado termina en RemoteException y se descarta en
+            // vez de ocupar un hilo para siempre. Una réplica no envía avisos (responde
+            // READ_ONLY); sus llamadas salientes son al principal (suscripción y cada página de
+            // la copia) y se acotan con su propio replicaTimeoutMs. RMI la lee una sola vez,
+            // antes de la primera llamada saliente; si se pasó con -D se respeta
+            if (System.getProperty("sun.rmi.transport.tcp.responseTimeout") == null) {
+                int responseTimeoutMs = config.isReplica() ? config.replicaTimeoutMs : config.notifyTimeoutMs;
+                System.setProperty("sun.rmi.transport.tcp.responseTimeout", String.valueOf(responseTimeoutMs));
+            }
+
+            // Iniciar registro RMI en el puerto configurado (1099 por defecto, -Dlibrary.port=N)
+            int port = config.port;
             try {
-                LocateRegistry.createRegistry(1099); // crea un nuevo registry si no existe
-                System.out.println("Registro RMI creado en puerto 1099");
+                LocateRegistry.createRegistry(port); // crea un nuevo registry si no existe
+                System.out.println("Registro RMI creado en puerto " + port);
             } catch (Exception e) {
                 // Si ya había un registro levantado, simplemente usar ese
-                System.out.println("Usando registro RMI existente en puerto 1099");
+                System.out.println("Usando registro RMI existente en puerto " + port);
             }
 
             // Crear la implementación del servicio de biblioteca con acceso a la BD
-            LibraryServiceImpl servicio = new LibraryServiceImpl(jdbcUrl);
+            LibraryServiceImpl servicio = new LibraryServiceImpl(jdbcUrl, config);
+
+            // Métricas por operación: MBeans JMX y una línea de log periódica
+            LibraryMetrics metrics = servicio.getMetrics();
+            metrics.registerMBeans();
+            metrics.startLogging(config.metricsLogIntervalSec);
 
-            // Nombre con el que se publicará el servicio en el registro
-            String serviceName = "LibraryService";
+            // Al apagar el servidor, mostrar los contadores del motor de datos y el resumen,
+            // y cerrarlo (el motor en memoria guarda un último snapshot)
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                System.out.println("Estadísticas " + servicio.describeStats());
+                System.out.println("Estadísticas " + metrics.getSummary());
+                servicio.close();
+            }));
+
+            // Nombre con el que se publicará el servicio en el registro (-Dlibrary.name=...)
+            String serviceName = config.serviceName;
 
             // Asociar el objeto remoto con un nombre RMI dentro del registro
             // IMPORTANTE: aquí usa "localhost", pero los clientes remotos deberían usar la IP detectada
-            Naming.rebind("rmi://localhost:1099/" + serviceName, servicio);
+            Naming.rebind("rmi://localhost:" + port + "/" + serviceName, servicio);
 
             // Mostrar información útil al usuario/admin
             System.out.println("=== SERVIDOR DE BIBLIOTECA ===");
             System.out.println("Servicio registrado como: " + serviceName);
             System.out.println("Servidor en IP: " + hostAddress);
-            System.out.println("URL de acceso: rmi://" + hostAddress + ":1099/" + serviceName);
+            System.out.println("URL de acceso: rmi://" + hostAddress + ":" + port + "/" + serviceName);
+            if (config.shardCount > 1) {
+                System.out.println("Fragmento " + config.shardIndex + " de " + config.shardCount
+                        + ": atiende los ISBN con Shards.of(isbn, " + config.shardCount + ") = " + config.shardIndex);
+            }
+            if (config.isReplica()) {
+                System.out.println("Réplica de solo lectura de " + config.replicaOf
+                        + ": consultas desde memoria; préstamos y devoluciones responden READ_ONLY");
+            }
+            System.out.println("Configuración: " + config);
+            System.out.println("Ejecutor de llamadas: " + servicio.getDispatcher().getMode()
+                    + " (máximo " + servicio.getDispatcher().getCapacity() + " llamadas admitidas)");
+            System.out.println("Índice de búsqueda: " + servicio.getCatalogIndex().size() + " libros");
             System.out.println("Esperando conexiones de clientes...");
 
             // Bloquear el hilo principal para mantener el servidor activo
@@ -3,8 +3,12 @@ package com.unal.rmilibrary;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 //Interfaz con cada uno de los métodos a implementar que extiende a Remote.
+// Con fragmentación (library.shard.count > 1) cada servidor responde solo por sus ISBN
+// (los demás reciben WRONG_SHARD) y loanByTitle, searchBooks, listBooks y los listados de
+// préstamos ven solo sus libros; ShardedLibraryClient reparte las llamadas entre los fragmentos.
 public interface LibraryService extends Remote {
 
     LoanResponse loanByISBN(String isbn, String userId) throws RemoteException;
@@ -14,4 +18,50 @@ public interface LibraryService extends Remote {
     QueryResponse queryByISBN(String isbn) throws RemoteException;
 
     ReturnResponse returnBook(String isbn, String userId) throws RemoteException;
+
+    // Operaciones en lote: una sola llamada RMI y una sola transacción para varios ISBN
+    // (hasta LibraryDAO.MAX_BATCH). El resultado i corresponde al ISBN i de la lista.
+
+    List<LoanResponse> loanMany(List<String> isbns, String userId) throws RemoteException;
+
+    List<ReturnResponse> returnMany(List<String> isbns, String userId) throws RemoteException;
+
+    List<QueryResponse> queryMany(List<String> isbns) throws RemoteException;
+
+    // Búsqueda por título y/o autor: por prefijo, palabra exacta o tolerante a errores
+    // de tipeo (ver SearchQuery). Devuelve una página de hasta SearchQuery.MAX_LIMIT libros
+    SearchResponse searchBooks(SearchQuery query) throws RemoteException;
+
+    // Exportación por páginas con cursor: se pide la página siguiente pasando el último
+    // ISBN (o id de préstamo) recibido, así ninguna llamada carga todo el catálogo y cada
+    // página cuesta lo mismo. Hasta LibraryDAO.MAX_PAGE elementos por página.
+
+    // Catálogo ordenado por ISBN, después de afterIsbn (null = desde el inicio)
+    BookPage listBooks(String afterIsbn, int limit) throws RemoteException;
+
+    // Préstamos del usuario ordenados por id, después de afterId (0 = desde el inicio)
+    LoanPage listLoans(String userId, long afterId, int limit) throws RemoteException;
+
+    // Préstamos sin devolver, desde la memoria del servidor (OverdueTracker): no dependen
+    // del tamaño del historial. Ordenados por id, con el mismo cursor que listLoans
+
+    // Préstamos activos del usuario
+    LoanPage listActiveLoans(String userId, long afterId, int limit) throws RemoteException;
+
+    // Préstamos vencidos: su fecha de devolución ya pasó y siguen sin devolver
+    LoanPage getOverdueLoans(long afterId, int limit) throws RemoteException;
+
+    // Avisos de disponibilidad: en vez de consultar una y otra vez un libro sin ejemplares,
+    // el cliente exporta un AvailabilityCallback y se pone en la fila del ISBN. Cuando se
+    // libera un ejemplar (o si ya hay uno libre), el primero de la fila recibe el aviso y el
+    // ejemplar queda reservado para él durante library.hold.windowSec segundos: en ese
+    // tiempo los préstamos de otros usuarios responden RESERVED. Cada suscripción sirve
+    // para un aviso; un callback que no responde se descarta.
+
+    // Retorna el estado actual del libro; found indica que quedó suscrito
+    QueryResponse subscribeAvailability(String isbn, String userId, AvailabilityCallback callback)
+            throws RemoteException;
+
+    // Sale de la fila del ISBN y suelta la reserva, si la tiene
+    void unsubscribeAvailability(String isbn, String userId) throws RemoteException;
 }
@@ -0,0 +1,495 @@
+// LibraryServiceClient.java
+package com.unal.rmilibrary;
+
+import java.net.MalformedURLException;
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
+import java.rmi.Naming;
+import java.rmi.NoSuchObjectException;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.ServerError;
+import java.rmi.ServerException;
+import java.rmi.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Cliente reutilizable de LibraryService (un "stub inteligente" sobre el stub RMI).
+//
+// * Conexión: el stub se busca en el registro la primera vez y se reutiliza. Si el
+//   servidor se reinicia o la red falla, se vuelve a buscar y se reintenta con espera
+//   exponencial. Las consultas se reintentan ante cualquier fallo de transporte; los
+//   préstamos y devoluciones solo cuando la llamada seguro no llegó al servidor
+//   (conexión rechazada, objeto no exportado), para no prestar dos veces.
+// * Caché: los resultados de queryByISBN/queryMany se guardan library.client.cacheTtlMs
+//   milisegundos. Los préstamos y devoluciones hechos por este cliente borran los ISBN
+//   que tocan; los cambios de otros clientes se ven al vencer la entrada.
+// * Asíncrono: cada operación tiene una variante ...Async que devuelve un CompletableFuture,
+//   para que una interfaz gráfica o un kiosco encadenen pedidos sin bloquear su hilo.
+//
+// Es seguro usarlo desde varios hilos a la vez.
+public class LibraryServiceClient implements LibraryService, AutoCloseable {
+
+    // Espera entre reintentos: empieza en este valor y se duplica hasta el máximo (con azar)
+    private static final long RETRY_WAIT_MS = 100;
+    private static final long RETRY_WAIT_MAX_MS = 2_000;
+
+    private final String url;
+    private final long cacheTtlNanos;
+    private final int cacheMaxEntries;
+    private final int maxAttempts;
+    private final ExecutorService async;
+
+    private volatile LibraryService stub;
+
+    // ISBN → consulta guardada
+    private final Map<String, CachedQuery> cache = new ConcurrentHashMap<>();
+    // Cambia con cada escritura propia: una consulta que empezó antes no se guarda
+    // (podría traer el valor previo al préstamo)
+    private final AtomicLong writes = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong lookups = new AtomicLong();
+
+    private static final class CachedQuery {
+        final QueryResponse response;
+        final long expiresAt;
+
+        CachedQuery(QueryResponse response, long expiresAt) {
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    // Llamada sobre el stub actual
+    private interface Call<T> {
+        T run(LibraryService s) throws RemoteException;
+    }
+
+    // Trabajo de una variante asíncrona
+    private interface Task<T> {
+        T run() throws RemoteException;
+    }
+
+    // Configuración por propiedades del sistema:
+    //   -Dlibrary.client.cacheTtlMs=2000        vigencia de una consulta guardada (0 = sin caché)
+    //   -Dlibrary.client.cacheMaxEntries=10000  máximo de ISBN guardados
+    //   -Dlibrary.client.maxAttempts=4          intentos por llamada ante fallos de transporte
+    //   -Dlibrary.client.asyncThreads=4         hilos de las variantes asíncronas
+    public LibraryServiceClient(String url) {
+        this(url, Long.getLong("library.client.cacheTtlMs", 2_000),
+                Integer.getInteger("library.client.cacheMaxEntries", 10_000),
+                Integer.getInteger("library.client.maxAttempts", 4),
+                Integer.getInteger("library.client.asyncThreads", 4));
+    }
+
+    public LibraryServiceClient(String url, long cacheTtlMs, int cacheMaxEntries, int maxAttempts, int asyncThreads) {
+        if (cacheTtlMs < 0 || cacheMaxEntries < 1 || maxAttempts < 1 || asyncThreads < 1) {
+            throw new IllegalArgumentException("Configuración inválida del cliente: ttl=" + cacheTtlMs
+                    + " entradas=" + cacheMaxEntries + " intentos=" + maxAttempts + " hilos=" + asyncThreads);
+        }
+        this.url = url;
+        this.cacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(cacheTtlMs);
+        this.cacheMaxEntries = cacheMaxEntries;
+        this.maxAttempts = maxAttempts;
+        AtomicInteger n = new AtomicInteger();
+        this.async = new ThreadPoolExecutor(asyncThreads, asyncThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "library-client-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    // Busca el servicio ya (en vez de en la primera llamada) para avisar pronto si no está
+    public LibraryServiceClient connect() throws RemoteException {
+        call(s -> null, true);
+        return this;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    // ---- Conexión y reintentos ----
+
+    private LibraryService stub() throws RemoteException {
+        LibraryService s = stub;
+        if (s != null) {
+            return s;
+        }
+        synchronized (this) {
+            if (stub == null) {
+                lookups.incrementAndGet();
+                try {
+                    stub = (LibraryService) Naming.lookup(url);
+                } catch (NotBoundException ex) {
+                    // Registro arriba pero servicio aún no publicado (servidor arrancando)
+                    throw new ConnectException("Servicio no registrado en " + url, ex);
+                } catch (MalformedURLException ex) {
+                    throw new IllegalArgumentException("URL RMI inválida: " + url, ex);
+                }
+            }
+            return stub;
+        }
+    }
+
+    // Descarta el stub que falló (si nadie lo reemplazó ya) para buscarlo de nuevo
+    private synchronized void forget(LibraryService failed) {
+        if (stub == failed) {
+            stub = null;
+        }
+    }
+
+    // Ejecuta la llamada reintentando los fallos de transporte. idempotent = se puede
+    // repetir aunque el servidor quizá ya la ejecutó
+    private <T> T call(Call<T> call, boolean idempotent) throws RemoteException {
+        long wait = RETRY_WAIT_MS;
+        for (int attempt = 1; ; attempt++) {
+            LibraryService s = null;
+            try {
+                s = stub();
+                return call.run(s);
+            } catch (RemoteException ex) {
+                // Sin stub (falló la búsqueda) la llamada no salió: siempre se puede repetir
+                if (attempt >= maxAttempts || (s != null && !retryable(ex, idempotent))) {
+                    throw ex;
+                }
+                if (s != null) {
+                    forget(s);
+                }
+                retries.incrementAndGet();
+                try {
+                    Thread.sleep(wait / 2 + ThreadLocalRandom.current().nextLong(wait / 2 + 1));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
+                wait = Math.min(wait * 2, RETRY_WAIT_MAX_MS);
+            }
+        }
+    }
+
+    private static boolean retryable(RemoteException ex, boolean idempotent) {
+        if (ex instanceof ServerException || ex instanceof ServerError) {
+            return false; // el servidor ejecutó la llamada y falló: repetirla no ayuda
+        }
+        if (idempotent) {
+            return true;
+        }
+        // La conexión no llegó a establecerse, o el objeto ya no existe en el servidor
+        // (reiniciado): la llamada no se ejecutó
+        return ex instanceof ConnectException || ex instanceof ConnectIOException
+                || ex instanceof NoSuchObjectException || ex instanceof UnknownHostException;
+    }
+
+    // ---- Caché de consultas ----
+
+    private QueryResponse cached(String isbn) {
+        CachedQuery c = cache.get(isbn);
+        if (c == null) {
+            return null;
+        }
+        if (System.nanoTime() - c.expiresAt >= 0) {
+            cache.remove(isbn, c);
+            return null;
+        }
+        return c.response;
+    }
+
+    // Guarda la respuesta si ninguna escritura propia ocurrió desde 'stamp'. Una escritura
+    // puede colarse entre la revisión y el put (invalidate cuenta antes de borrar): por eso
+    // se revisa de nuevo después y, si cambió, se quita lo que se acaba de guardar
+    private void remember(String isbn, QueryResponse r, long stamp) {
+        if (cacheTtlNanos == 0 || isbn == null
+                || (r.status != ResponseStatus.OK && r.status != ResponseStatus.BOOK_NOT_FOUND)) {
+            return; // BUSY y errores no se guardan
+        }
+        if (cache.size() >= cacheMaxEntries) {
+            evictExpired();
+        }
+        if (writes.get() == stamp && cache.size() < cacheMaxEntries) {
+            CachedQuery c = new CachedQuery(r, System.nanoTime() + cacheTtlNanos);
+            cache.put(isbn, c);
+            if (writes.get() != stamp) {
+                cache.remove(isbn, c);
+            }
+        }
+    }
+
+    private void evictExpired() {
+        long now = System.nanoTime();
+        cache.values().removeIf(c -> now - c.expiresAt >= 0);
+        if (cache.size() >= cacheMaxEntries) {
+            cache.clear(); // todas vigentes: se empieza de nuevo antes que recorrer por antigüedad
+        }
+    }
+
+    // Borra de la caché lo que cambió (también lo usa ReplicatedLibraryClient al escribir
+    // en el principal, para las cachés de sus réplicas)
+    void invalidate(String isbn) {
+        writes.incrementAndGet();
+        if (isbn != null) {
+            cache.remove(isbn);
+        }
+    }
+
+    void invalidate(List<String> isbns) {
+        writes.incrementAndGet();
+        if (isbns != null) {
+            for (String isbn : isbns) {
+                if (isbn != null) {
+                    cache.remove(isbn);
+                }
+            }
+        }
+    }
+
+    // loanByTitle no dice qué ISBN prestó: se borran los guardados con ese título
+    void invalidateTitle(String title) {
+        writes.incrementAndGet();
+        cache.values().removeIf(c -> c.response.title != null && c.response.title.equals(title));
+    }
+
+    // Vacía la caché (p. ej. antes de mostrar un inventario que debe estar al día)
+    public void clearCache() {
+        writes.incrementAndGet();
+        cache.clear();
+    }
+
+    // ---- LibraryService ----
+
+    @Override
+    public QueryResponse queryByISBN(String isbn) throws RemoteException {
+        QueryResponse r = cached(isbn);
+        if (r != null) {
+            hits.incrementAndGet();
+            return r;
+        }
+        misses.incrementAndGet();
+        long stamp = writes.get();
+        r = call(s -> s.queryByISBN(isbn), true);
+        remember(isbn, r, stamp);
+        return r;
+    }
+
+    // Pide al servidor, en una sola llamada, solo los ISBN que no están en la caché
+    @Override
+    public List<QueryResponse> queryMany(List<String> isbns) throws RemoteException {
+        if (isbns == null) {
+            return call(s -> s.queryMany(null), true); // el servidor informa el error
+        }
+        List<QueryResponse> results = new ArrayList<>(isbns.size());
+        List<String> missing = new ArrayList<>();
+        for (String isbn : isbns) {
+            QueryResponse r = cached(isbn);
+            results.add(r);
+            if (r == null) {
+                missing.add(isbn);
+            }
+        }
+        hits.addAndGet(isbns.size() - missing.size());
+        if (missing.isEmpty()) {
+            return results;
+        }
+        misses.addAndGet(missing.size());
+        long stamp = writes.get();
+        List<QueryResponse> fetched = call(s -> s.queryMany(missing), true);
+        Iterator<QueryResponse> it = fetched.iterator();
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i) == null) {
+                QueryResponse r = it.next();
+                results.set(i, r);
+                remember(isbns.get(i), r, stamp);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public LoanResponse loanByISBN(String isbn, String userId) throws RemoteException {
+        try {
+            return call(s -> s.loanByISBN(isbn, userId), false);
+        } finally {
+            invalidate(isbn); // también si falló: no se sabe si el préstamo quedó hecho
+        }
+    }
+
+    @Override
+    public LoanResponse loanByTitle(String title, String userId) throws RemoteException {
+        try {
+            return call(s -> s.loanByTitle(title, userId), false);
+        } finally {
+            invalidateTitle(title);
+        }
+    }
+
+    @Override
+    public ReturnResponse returnBook(String isbn, String userId) throws RemoteException {
+        try {
+            return call(s -> s.returnBook(isbn, userId), false);
+        } finally {
+            invalidate(isbn);
+        }
+    }
+
+    @Override
+    public List<LoanResponse> loanMany(List<String> isbns, String userId) throws RemoteException {
+        try {
+            return call(s -> s.loanMany(isbns, userId), false);
+        } finally {
+            invalidate(isbns);
+        }
+    }
+
+    @Override
+    public List<ReturnResponse> returnMany(List<String> isbns, String userId) throws RemoteException {
+        try {
+            return call(s -> s.returnMany(isbns, userId), false);
+        } finally {
+            invalidate(isbns);
+        }
+    }
+
+    @Override
+    public SearchResponse searchBooks(SearchQuery query) throws RemoteException {
+        return call(s -> s.searchBooks(query), true);
+    }
+
+    @Override
+    public BookPage listBooks(String afterIsbn, int limit) throws RemoteException {
+        return call(s -> s.listBooks(afterIsbn, limit), true);
+    }
+
+    @Override
+    public LoanPage listLoans(String userId, long afterId, int limit) throws RemoteException {
+        return call(s -> s.listLoans(userId, afterId, limit), true);
+    }
+
+    @Override
+    public LoanPage listActiveLoans(String userId, long afterId, int limit) throws RemoteException {
+        return call(s -> s.listActiveLoans(userId, afterId, limit), true);
+    }
+
+    @Override
+    public LoanPage getOverdueLoans(long afterId, int limit) throws RemoteException {
+        return call(s -> s.getOverdueLoans(afterId, limit), true);
+    }
+
+    // Suscribirse de nuevo solo actualiza el callback (conserva el turno): se puede repetir
+    @Override
+    public QueryResponse subscribeAvailability(String isbn, String userId, AvailabilityCallback callback)
+            throws RemoteException {
+        return call(s -> s.subscribeAvailability(isbn, userId, callback), true);
+    }
+
+    @Override
+    public void unsubscribeAvailability(String isbn, String userId) throws RemoteException {
+        call(s -> {
+            s.unsubscribeAvailability(isbn, userId);
+            return null;
+        }, true);
+    }
+
+    // ---- Variantes asíncronas ----
+
+    private <T> CompletableFuture<T> async(Task<T> task) {
+        CompletableFuture<T> f = new CompletableFuture<>();
+        async.execute(() -> {
+            try {
+                f.complete(task.run());
+            } catch (Throwable t) {
+                f.completeExceptionally(t);
+            }
+        });
+        return f;
+    }
+
+    public CompletableFuture<QueryResponse> queryByISBNAsync(String isbn) {
+        QueryResponse r = cached(isbn);
+        if (r != null) {
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(r); // sin pasar por otro hilo
+        }
+        return async(() -> queryByISBN(isbn));
+    }
+
+    public CompletableFuture<List<QueryResponse>> queryManyAsync(List<String> isbns) {
+        return async(() -> queryMany(isbns));
+    }
+
+    public CompletableFuture<LoanResponse> loanByISBNAsync(String isbn, String userId) {
+        return async(() -> loanByISBN(isbn, userId));
+    }
+
+    public CompletableFuture<LoanResponse> loanByTitleAsync(String title, String userId) {
+        return async(() -> loanByTitle(title, userId));
+    }
+
+    public CompletableFuture<ReturnResponse> returnBookAsync(String isbn, String userId) {
+        return async(() -> returnBook(isbn, userId));
+    }
+
+    public CompletableFuture<List<LoanResponse>> loanManyAsync(List<String> isbns, String userId) {
+        return async(() -> loanMany(isbns, userId));
+    }
+
+    public CompletableFuture<List<ReturnResponse>> returnManyAsync(List<String> isbns, String userId) {
+        return async(() -> returnMany(isbns, userId));
+    }
+
+    public CompletableFuture<SearchResponse> searchBooksAsync(SearchQuery query) {
+        return async(() -> searchBooks(query));
+    }
+
+    public CompletableFuture<BookPage> listBooksAsync(String afterIsbn, int limit) {
+        return async(() -> listBooks(afterIsbn, limit));
+    }
+
+    public CompletableFuture<LoanPage> listLoansAsync(String userId, long afterId, int limit) {
+        return async(() -> listLoans(userId, afterId, limit));
+    }
+
+    public CompletableFuture<LoanPage> listActiveLoansAsync(String userId, long afterId, int limit) {
+        return async(() -> listActiveLoans(userId, afterId, limit));
+    }
+
+    public CompletableFuture<LoanPage> getOverdueLoansAsync(long afterId, int limit) {
+        return async(() -> getOverdueLoans(afterId, limit));
+    }
+
+    public CompletableFuture<QueryResponse> subscribeAvailabilityAsync(String isbn, String userId,
+                                                                      AvailabilityCallback callback) {
+        return async(() -> subscribeAvailability(isbn, userId, callback));
+    }
+
+    // ---- Estado ----
+
+    // Contadores de la caché y de la conexión
+    public String describeStats() {
+        long h = hits.get();
+        long m = misses.get();
+        return String.format("cliente: caché aciertos=%d, fallos=%d (%.0f%% aciertos), entradas=%d, "
+                        + "reintentos=%d, búsquedas del servicio=%d",
+                h, m, h + m == 0 ? 0.0 : 100.0 * h / (h + m), cache.size(), retries.get(), lookups.get());
+    }
+
+    // Detiene los hilos de las variantes asíncronas (las pendientes terminan igual)
+    @Override
+    public void close() {
+        async.shutdown();
+    }
+}
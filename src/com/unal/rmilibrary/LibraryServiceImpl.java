@@ -4,40 +4,413 @@ package com.unal.rmilibrary;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
-// Implementación del servicio de biblioteca extiende a UnicastRemoteObject que permite el uso de RMI
-public class LibraryServiceImpl extends UnicastRemoteObject implements LibraryService {
+// Implementación del servicio de biblioteca extiende a UnicastRemoteObject que permite el uso de RMI.
+// También es el origen de la replicación: en el principal publica los cambios a las réplicas
+// suscritas; en una réplica (ReplicaDAO) solo informa su atraso
+public class LibraryServiceImpl extends UnicastRemoteObject implements LibraryService, ReplicationSource {
 
-    private final BookDAO dao;
+    private final LibraryDAO dao;
+    private final LibraryMetrics metrics = new LibraryMetrics();
+    private final DispatchExecutor dispatcher;
+    private final ReplicationPublisher publisher; // null en una réplica
+    private final ReplicaDAO replica;             // null en el principal
+    private final OverdueTracker overdue;         // null en una réplica (no tiene préstamos)
+    private final AvailabilityNotifier availability; // null en una réplica
+    private final InventoryListener changes;      // reparte los cambios del motor; null en una réplica
+    private final int shardIndex;
+    private final int shardCount;
 
     protected LibraryServiceImpl(String jdbcUrl) throws RemoteException, SQLException {
+        this(jdbcUrl, new ServerConfig());
+    }
+
+    // Permite elegir el motor de datos y ajustar el pool de conexiones y los PRAGMAs de SQLite
+    protected LibraryServiceImpl(String jdbcUrl, ServerConfig config) throws RemoteException, SQLException {
         super();
-        this.dao = new BookDAO(jdbcUrl);
+        this.dao = LibraryDAO.open(jdbcUrl, config, metrics);
+        this.dispatcher = new DispatchExecutor(config);
+        this.shardIndex = config.shardIndex;
+        this.shardCount = config.shardCount;
+        this.replica = dao instanceof ReplicaDAO ? (ReplicaDAO) dao : null;
+        this.publisher = replica == null ? new ReplicationPublisher(config.replicationHeartbeatMs) : null;
+        metrics.attach(dispatcher);
+        metrics.attach(this::replicationStatus);
+        if (replica == null) {
+            // Se carga antes de publicar el servicio y desde ahí el motor le avisa cada cambio
+            this.overdue = new OverdueTracker();
+            overdue.load(dao);
+            this.availability = new AvailabilityNotifier(config.holdWindowSec, config.notifyThreads,
+                    config.subscriptionTtlSec);
+            this.changes = (isbn, state) -> {
+                publisher.changed(isbn, state);
+                availability.changed(isbn, state);
+            };
+            dao.setLoanListener(new LoanListener() {
+                @Override
+                public void loaned(LoanRecord loan) {
+                    overdue.loaned(loan);
+                    availability.loaned(loan);
+                }
+
+                @Override
+                public void returned(String isbn, String userId) {
+                    overdue.returned(isbn, userId);
+                }
+            });
+            dao.setHoldGate(availability);
+            overdue.start(config.overdueScanIntervalSec);
+            metrics.attach(overdue);
+            metrics.attach(availability);
+        } else {
+            this.overdue = null;
+            this.availability = null;
+            this.changes = null;
+        }
+    }
+
+    // Contadores del motor de datos (pool y caché de SQLite, o log del motor en memoria)
+    // y de los préstamos activos y los avisos de disponibilidad
+    String describeStats() {
+        return overdue == null ? dao.describeStats()
+                : dao.describeStats() + "\n" + overdue.describeStats() + "\n" + availability.describeStats();
+    }
+
+    // Préstamos activos y vencidos en memoria; null en una réplica
+    OverdueTracker getOverdueTracker() {
+        return overdue;
+    }
+
+    // Índice de búsqueda por título y autor
+    CatalogIndex getCatalogIndex() {
+        return dao.getCatalogIndex();
+    }
+
+    // Métricas por operación (JMX y log periódico)
+    LibraryMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Ejecutor de las llamadas (modo, cola y rechazos)
+    DispatchExecutor getDispatcher() {
+        return dispatcher;
+    }
+
+    // Libera los recursos del DAO (escritor de group commit y conexiones, o log del motor en memoria)
+    void close() {
+        if (publisher != null) {
+            publisher.close();
+        }
+        if (overdue != null) {
+            overdue.close();
+            availability.close();
+        }
+        dispatcher.close();
+        dao.close();
+    }
+
+    // ---- Replicación ----
+
+    @Override
+    public long subscribe(ReplicaCallback replicaCallback) throws RemoteException {
+        if (publisher == null) {
+            throw new RemoteException("Este servidor es una réplica: suscribirse al principal");
+        }
+        dao.setInventoryListener(changes); // desde la primera réplica o suscripción
+        try {
+            return publisher.subscribe(replicaCallback);
+        } catch (IllegalStateException ex) {
+            throw new RemoteException(ex.getMessage());
+        }
+    }
+
+    @Override
+    public void unsubscribe(ReplicaCallback replicaCallback) {
+        if (publisher != null) {
+            publisher.unsubscribe(replicaCallback);
+        }
+    }
+
+    @Override
+    public ReplicationStatus getReplicationStatus() {
+        return replica != null ? replica.status() : publisher.status();
+    }
+
+    // Estado de la replicación; null en un principal sin réplicas (nada que mostrar)
+    ReplicationStatus replicationStatus() {
+        if (replica != null) {
+            return replica.status();
+        }
+        return publisher.getReplicaCount() == 0 ? null : publisher.status();
+    }
+
+    // Llamada al DAO que puede fallar con RemoteException
+    private interface Call<T> {
+        T run() throws RemoteException;
+    }
+
+    // Ejecuta la llamada en el DispatchExecutor registrando llamadas, llamadas en curso,
+    // latencia (con la espera en la cola del ejecutor) y errores. Si el servidor está saturado
+    // responde busy.get() al instante; ese rechazo solo se cuenta en el DispatchExecutor, no
+    // como llamada de la operación (no entra en sus llamadas ni en su latencia)
+    private <T> T timed(OperationMetrics m, Call<T> call, Supplier<T> busy) throws RemoteException {
+        if (!dispatcher.admit()) {
+            return busy.get();
+        }
+        long start = m.begin();
+        try {
+            return dispatcher.runAdmitted(call::run);
+        } catch (RemoteException | RuntimeException ex) {
+            m.error();
+            throw ex;
+        } finally {
+            m.end(start);
+        }
+    }
+
+    // Indica si el ISBN es de este fragmento (siempre, si no hay fragmentación)
+    private boolean owns(String isbn) {
+        return shardCount == 1 || isbn == null || Shards.of(isbn, shardCount) == shardIndex;
+    }
+
+    // Primer ISBN del lote que no es de este fragmento, o null si todos lo son
+    private String foreign(List<String> isbns) {
+        if (shardCount > 1 && isbns != null) {
+            for (String isbn : isbns) {
+                if (!owns(isbn)) {
+                    return isbn;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Lote con ISBN de otros fragmentos: el DAO procesa los propios (en una sola llamada)
+    // y los demás reciben WRONG_SHARD, en el orden original
+    private <T> List<T> ownedOnly(List<String> isbns, T wrongShard, BatchCall<T> call) throws RemoteException {
+        List<String> mine = new ArrayList<>(isbns.size());
+        for (String isbn : isbns) {
+            if (owns(isbn)) {
+                mine.add(isbn);
+            }
+        }
+        List<T> done = mine.isEmpty() ? List.of() : call.run(mine);
+        List<T> results = new ArrayList<>(isbns.size());
+        int k = 0;
+        for (String isbn : isbns) {
+            results.add(owns(isbn) ? done.get(k++) : wrongShard);
+        }
+        return results;
+    }
+
+    // Operación en lote sobre una parte de los ISBN
+    private interface BatchCall<T> {
+        List<T> run(List<String> isbns) throws RemoteException;
+    }
+
+    // Respuesta BUSY para cada elemento de un lote
+    private static <T> List<T> busyForEach(List<String> isbns, T busy) {
+        return isbns == null ? new ArrayList<>() : new ArrayList<>(Collections.nCopies(isbns.size(), busy));
     }
 
     @Override
     public LoanResponse loanByISBN(String isbn, String userId) throws RemoteException {
-        return dao.loanByISBN(isbn, userId);
+        return timed(metrics.loanByISBN, () -> owns(isbn) ? dao.loanByISBN(isbn, userId)
+                : new LoanResponse(ResponseStatus.WRONG_SHARD, null),
+                () -> new LoanResponse(ResponseStatus.BUSY, null));
     }
 
     @Override
     public LoanResponse loanByTitle(String title, String userId) throws RemoteException {
-        return dao.loanByTitle(title, userId);
+        return timed(metrics.loanByTitle, () -> dao.loanByTitle(title, userId),
+                () -> new LoanResponse(ResponseStatus.BUSY, null));
     }
 
     @Override
     public QueryResponse queryByISBN(String isbn) throws RemoteException {
-        try {
-            Optional<QueryResponse> r = dao.queryByISBN(isbn);
-            return r.orElse(new QueryResponse(false, "", 0, 0));
-        } catch (SQLException ex) {
-            throw new RemoteException("Error DB", ex);
-        }
+        return timed(metrics.queryByISBN, () -> {
+            if (!owns(isbn)) {
+                return new QueryResponse(ResponseStatus.WRONG_SHARD, "", 0, 0);
+            }
+            try {
+                Optional<QueryResponse> r = dao.queryByISBN(isbn);
+                return r.orElse(new QueryResponse(false, "", 0, 0));
+            } catch (SQLException ex) {
+                throw new RemoteException("Error DB", ex);
+            }
+        }, () -> new QueryResponse(ResponseStatus.BUSY, "", 0, 0));
     }
 
     @Override
     public ReturnResponse returnBook(String isbn, String userId) throws RemoteException {
-        return dao.returnBook(isbn, userId);
+        return timed(metrics.returnBook, () -> owns(isbn) ? dao.returnBook(isbn, userId)
+                : new ReturnResponse(ResponseStatus.WRONG_SHARD),
+                () -> new ReturnResponse(ResponseStatus.BUSY));
+    }
+
+    @Override
+    public List<LoanResponse> loanMany(List<String> isbns, String userId) throws RemoteException {
+        return timed(metrics.loanMany, () -> {
+            checkBatch(isbns);
+            if (foreign(isbns) != null) {
+                return ownedOnly(isbns, new LoanResponse(ResponseStatus.WRONG_SHARD, null),
+                        mine -> dao.loanMany(mine, userId));
+            }
+            return dao.loanMany(isbns, userId);
+        }, () -> busyForEach(isbns, new LoanResponse(ResponseStatus.BUSY, null)));
+    }
+
+    @Override
+    public List<ReturnResponse> returnMany(List<String> isbns, String userId) throws RemoteException {
+        return timed(metrics.returnMany, () -> {
+            checkBatch(isbns);
+            if (foreign(isbns) != null) {
+                return ownedOnly(isbns, new ReturnResponse(ResponseStatus.WRONG_SHARD),
+                        mine -> dao.returnMany(mine, userId));
+            }
+            return dao.returnMany(isbns, userId);
+        }, () -> busyForEach(isbns, new ReturnResponse(ResponseStatus.BUSY)));
+    }
+
+    @Override
+    public List<QueryResponse> queryMany(List<String> isbns) throws RemoteException {
+        return timed(metrics.queryMany, () -> {
+            checkBatch(isbns);
+            return ownedOnly(isbns, new QueryResponse(ResponseStatus.WRONG_SHARD, "", 0, 0), mine -> {
+                try {
+                    List<QueryResponse> results = new ArrayList<>(mine.size());
+                    for (Optional<QueryResponse> r : dao.queryMany(mine)) {
+                        results.add(r.orElse(new QueryResponse(false, "", 0, 0)));
+                    }
+                    return results;
+                } catch (SQLException ex) {
+                    throw new RemoteException("Error DB", ex);
+                }
+            });
+        }, () -> busyForEach(isbns, new QueryResponse(ResponseStatus.BUSY, "", 0, 0)));
+    }
+
+    @Override
+    public SearchResponse searchBooks(SearchQuery query) throws RemoteException {
+        return timed(metrics.searchBooks, () -> {
+            checkSearch(query);
+            try {
+                return dao.search(query);
+            } catch (SQLException ex) {
+                throw new RemoteException("Error DB", ex);
+            }
+        }, () -> new SearchResponse(ResponseStatus.BUSY, List.of(), 0, query == null ? 0 : query.offset));
+    }
+
+    @Override
+    public BookPage listBooks(String afterIsbn, int limit) throws RemoteException {
+        return timed(metrics.listBooks, () -> {
+            checkPage(limit);
+            try {
+                return dao.listBooks(afterIsbn, limit);
+            } catch (SQLException ex) {
+                throw new RemoteException("Error DB", ex);
+            }
+        }, () -> new BookPage(ResponseStatus.BUSY, List.of(), afterIsbn));
+    }
+
+    @Override
+    public LoanPage listLoans(String userId, long afterId, int limit) throws RemoteException {
+        return timed(metrics.listLoans, () -> {
+            checkPage(limit);
+            try {
+                return dao.listLoans(userId, afterId, limit);
+            } catch (SQLException ex) {
+                throw new RemoteException("Error DB", ex);
+            }
+        }, () -> new LoanPage(ResponseStatus.BUSY, List.of(), afterId));
+    }
+
+    @Override
+    public LoanPage listActiveLoans(String userId, long afterId, int limit) throws RemoteException {
+        return timed(metrics.listActiveLoans, () -> {
+            checkPage(limit);
+            return overdue == null ? new LoanPage(ResponseStatus.READ_ONLY, List.of(), LoanPage.END)
+                    : overdue.activeLoans(userId, afterId, limit);
+        }, () -> new LoanPage(ResponseStatus.BUSY, List.of(), afterId));
+    }
+
+    @Override
+    public LoanPage getOverdueLoans(long afterId, int limit) throws RemoteException {
+        return timed(metrics.getOverdueLoans, () -> {
+            checkPage(limit);
+            return overdue == null ? new LoanPage(ResponseStatus.READ_ONLY, List.of(), LoanPage.END)
+                    : overdue.overdue(afterId, limit);
+        }, () -> new LoanPage(ResponseStatus.BUSY, List.of(), afterId));
+    }
+
+    // ---- Avisos de disponibilidad ----
+
+    @Override
+    public QueryResponse subscribeAvailability(String isbn, String userId, AvailabilityCallback callback)
+            throws RemoteException {
+        return timed(metrics.subscribeAvailability, () -> {
+            if (isbn == null || userId == null || callback == null) {
+                throw new IllegalArgumentException("ISBN, usuario y callback son obligatorios");
+            }
+            if (!owns(isbn)) {
+                return new QueryResponse(ResponseStatus.WRONG_SHARD, "", 0, 0);
+            }
+            if (availability == null) {
+                return new QueryResponse(ResponseStatus.READ_ONLY, "", 0, 0);
+            }
+            dao.setInventoryListener(changes); // desde la primera réplica o suscripción
+            availability.subscribe(isbn, userId, callback);
+            try {
+                // Se lee después de suscribirse: un cambio posterior llega igual como aviso del motor
+                Optional<QueryResponse> state = dao.queryByISBN(isbn);
+                if (!state.isPresent()) {
+                    availability.unsubscribe(isbn, userId);
+                    return new QueryResponse(false, "", 0, 0);
+                }
+                availability.seen(isbn, state.get());
+                return state.get();
+            } catch (SQLException ex) {
+                availability.unsubscribe(isbn, userId);
+                throw new RemoteException("Error DB", ex);
+            }
+        }, () -> new QueryResponse(ResponseStatus.BUSY, "", 0, 0));
+    }
+
+    @Override
+    public void unsubscribeAvailability(String isbn, String userId) {
+        if (availability != null && isbn != null && userId != null) {
+            availability.unsubscribe(isbn, userId);
+        }
+    }
+
+    private static void checkPage(int limit) {
+        if (limit < 1 || limit > LibraryDAO.MAX_PAGE) {
+            throw new IllegalArgumentException("La página debe tener entre 1 y " + LibraryDAO.MAX_PAGE + " elementos");
+        }
+    }
+
+    // Rechaza búsquedas con campo, modo o paginación fuera de rango
+    private static void checkSearch(SearchQuery q) {
+        if (q == null || q.field < SearchQuery.ANY || q.field > SearchQuery.AUTHOR
+                || q.mode < SearchQuery.PREFIX || q.mode > SearchQuery.FUZZY) {
+            throw new IllegalArgumentException("Búsqueda inválida: campo o modo desconocido");
+        }
+        if (q.offset < 0 || q.limit < 1 || q.limit > SearchQuery.MAX_LIMIT) {
+            throw new IllegalArgumentException("La página debe tener offset >= 0 y entre 1 y "
+                    + SearchQuery.MAX_LIMIT + " resultados");
+        }
+    }
+
+    // Rechaza lotes nulos o demasiado grandes (el cliente recibe la excepción)
+    private static void checkBatch(List<String> isbns) {
+        if (isbns == null || isbns.size() > LibraryDAO.MAX_BATCH) {
+            throw new IllegalArgumentException("El lote debe tener entre 0 y " + LibraryDAO.MAX_BATCH + " ISBN");
+        }
     }
 }
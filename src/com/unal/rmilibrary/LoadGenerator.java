@@ -0,0 +1,419 @@
+// LoadGenerator.java
+package com.unal.rmilibrary;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.rmi.Naming;
+import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Generador de carga no interactivo para LibraryService.
+//
+// Lanza N usuarios virtuales concurrentes contra el servidor. Cada uno ejecuta
+// operaciones según una mezcla configurable (sintética) o reproduce un archivo de
+// trazas JSONL. Al final imprime, por operación, el throughput y los percentiles
+// de latencia p50/p99/p999 medidos en el cliente (incluyen la ida y vuelta RMI).
+//
+// Uso:
+//   java -cp out com.unal.rmilibrary.LoadGenerator [--host localhost] [--port 1099]
+//        [--users 16] [--seconds 30]
+//        [--mix query=70,loanByISBN=10,loanByTitle=5,return=15] [--skew 0.0]
+//        [--catalog db/seed.sql]
+//        [--trace trazas.jsonl] [--loop]
+//
+// Catálogo (modo sintético): db/seed.sql o un archivo con líneas "isbn,título".
+// --skew es el exponente Zipf con que se eligen los libros (0 = uniforme).
+//
+// Trazas: una operación por línea, por ejemplo
+//   {"op":"query","isbn":"978-0261103573"}
+//   {"op":"loanByISBN","isbn":"978-0261103573","user":"ana"}
+//   {"op":"loanByTitle","title":"The Hobbit","user":"ana"}
+//   {"op":"return","isbn":"978-0261103573","user":"ana"}
+// Las líneas de un mismo usuario las ejecuta siempre el mismo usuario virtual, en orden;
+// las que no traen usuario se reparten en ronda entre todos.
+public class LoadGenerator {
+
+    private static final String[] OPS = {"query", "loanByISBN", "loanByTitle", "return"};
+
+    // Consultas que hace loanByTitle para saber qué ISBN prestó: no están en la mezcla, pero
+    // son carga para el servidor y se informan en su propia fila
+    private static final String LIST_LOANS = "listActiveLoans";
+
+    // Estadísticas de una operación
+    private static final class OpStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong ok = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();  // respuesta con success/found = false
+        final AtomicLong busy = new AtomicLong();    // rechazada por saturación (BUSY)
+        final AtomicLong errors = new AtomicLong();  // excepción (RMI, red, etc.)
+    }
+
+    // Una operación a ejecutar (de la traza o generada)
+    private static final class Request {
+        final String op;
+        final String isbn;
+        final String title;
+        final String user;
+
+        Request(String op, String isbn, String title, String user) {
+            this.op = op;
+            this.isbn = isbn;
+            this.title = title;
+            this.user = user;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = parseArgs(args);
+        String host = opt.getOrDefault("host", "localhost");
+        String port = opt.getOrDefault("port", "1099");
+        int users = Integer.parseInt(opt.getOrDefault("users", "16"));
+        int seconds = Integer.parseInt(opt.getOrDefault("seconds", "30"));
+        boolean loop = opt.containsKey("loop");
+
+        String url = "rmi://" + host + ":" + port + "/LibraryService";
+        LibraryService service = (LibraryService) Naming.lookup(url);
+        System.out.println("Conectado a " + url);
+
+        Map<String, OpStats> stats = new LinkedHashMap<>();
+        for (String op : OPS) {
+            stats.put(op, new OpStats());
+        }
+        stats.put(LIST_LOANS, new OpStats());
+
+        List<Runnable> vus = new ArrayList<>();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        if (opt.containsKey("trace")) {
+            // Reparte las líneas por usuario para conservar el orden de cada uno; las que no
+            // traen usuario se reparten en ronda entre todos los usuarios virtuales
+            List<List<Request>> perVu = new ArrayList<>();
+            for (int i = 0; i < users; i++) {
+                perVu.add(new ArrayList<>());
+            }
+            int lines = 0;
+            for (Request r : readTrace(Paths.get(opt.get("trace")))) {
+                int vu = r.user == null ? lines % users : Math.floorMod(r.user.hashCode(), users);
+                perVu.get(vu).add(r.user == null ? new Request(r.op, r.isbn, r.title, TRACE_USER) : r);
+                lines++;
+            }
+            System.out.printf("Traza: %d operaciones, %d usuarios virtuales%n", lines, users);
+            for (List<Request> script : perVu) {
+                vus.add(() -> replay(service, script, loop, deadline, stats));
+            }
+        } else {
+            List<String[]> catalog = readCatalog(Paths.get(opt.getOrDefault("catalog", "db/seed.sql")));
+            if (catalog.isEmpty()) {
+                throw new IllegalArgumentException("El catálogo no tiene libros");
+            }
+            double[] mix = parseMix(opt.getOrDefault("mix", "query=70,loanByISBN=10,loanByTitle=5,return=15"));
+            double[] cdf = zipfCdf(catalog.size(), Double.parseDouble(opt.getOrDefault("skew", "0")));
+            System.out.printf("Sintético: %d libros, %d usuarios virtuales, mezcla %s%n",
+                    catalog.size(), users, opt.getOrDefault("mix", "por defecto"));
+            Map<String, List<String>> byTitle = new HashMap<>();
+            for (String[] book : catalog) {
+                byTitle.computeIfAbsent(book[1], k -> new ArrayList<>()).add(book[0]);
+            }
+            for (int i = 0; i < users; i++) {
+                String userId = "load-" + i;
+                vus.add(() -> synthetic(service, userId, catalog, byTitle, mix, cdf, deadline, stats));
+            }
+        }
+
+        // Arrancar todos a la vez y esperar a que terminen
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(vus.size());
+        for (int i = 0; i < vus.size(); i++) {
+            Runnable vu = vus.get(i);
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                    vu.run();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "vu-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+        long t0 = System.nanoTime();
+        start.countDown();
+        done.await();
+        report(stats, System.nanoTime() - t0);
+        System.exit(0);
+    }
+
+    // Usuario con el que se ejecutan las líneas de la traza que no traen "user"
+    private static final String TRACE_USER = "trace-user";
+
+    // Usuario virtual sintético: elige operación según la mezcla y libro según la distribución
+    private static void synthetic(LibraryService service, String userId, List<String[]> catalog,
+                                  Map<String, List<String>> byTitle, double[] mix, double[] cdf, long deadline,
+                                  Map<String, OpStats> stats) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        Deque<String> myLoans = new ArrayDeque<>(); // ISBN prestados por este usuario
+        while (System.nanoTime() < deadline) {
+            String op = OPS[pick(mix, rnd.nextDouble())];
+            String[] book = catalog.get(pick(cdf, rnd.nextDouble()));
+            String isbn = book[0];
+            if (op.equals("return") && !myLoans.isEmpty()) {
+                isbn = myLoans.pollFirst(); // devolver algo que de verdad tiene prestado
+            }
+            String loaned = execute(service, new Request(op, isbn, book[1], userId), stats);
+            if (loaned != null && op.equals("loanByTitle")) {
+                loaned = loanedByTitle(service, userId, byTitle.get(book[1]), myLoans, stats.get(LIST_LOANS));
+            }
+            if (loaned != null) {
+                myLoans.addLast(loaned);
+            }
+        }
+    }
+
+    // ISBN que prestó loanByTitle. Si el título es de un solo libro del catálogo es ese; si
+    // varios libros lo comparten, se busca el préstamo activo más reciente del usuario entre
+    // ellos que todavía no esté en myLoans. Cada página pedida se mide en 's'
+    private static String loanedByTitle(LibraryService service, String userId, List<String> candidates,
+                                        Deque<String> myLoans, OpStats s) {
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        long t0 = System.nanoTime();
+        try {
+            Map<String, Integer> untracked = new HashMap<>();
+            for (String isbn : myLoans) {
+                untracked.merge(isbn, -1, Integer::sum);
+            }
+            LoanRecord newest = null;
+            long after = 0;
+            do {
+                t0 = System.nanoTime();
+                LoanPage page = service.listActiveLoans(userId, after, 1_000);
+                s.latency.record(System.nanoTime() - t0);
+                if (page.status != ResponseStatus.OK) {
+                    (page.status == ResponseStatus.BUSY ? s.busy : s.failed).incrementAndGet();
+                    return null;
+                }
+                s.ok.incrementAndGet();
+                for (LoanRecord l : page.loans) {
+                    if (candidates.contains(l.isbn)) {
+                        untracked.merge(l.isbn, 1, Integer::sum);
+                        newest = l;
+                    }
+                }
+                after = page.nextAfterId;
+            } while (after != LoanPage.END);
+            return newest != null && untracked.get(newest.isbn) > 0 ? newest.isbn : null;
+        } catch (RemoteException ex) {
+            s.latency.record(System.nanoTime() - t0);
+            s.errors.incrementAndGet();
+            return null;
+        }
+    }
+
+    // Usuario virtual que reproduce su parte de la traza
+    private static void replay(LibraryService service, List<Request> script, boolean loop,
+                               long deadline, Map<String, OpStats> stats) {
+        if (script.isEmpty()) {
+            return;
+        }
+        do {
+            for (Request r : script) {
+                if (System.nanoTime() >= deadline) {
+                    return;
+                }
+                execute(service, r, stats);
+            }
+        } while (loop);
+    }
+
+    // Ejecuta y mide una operación. Retorna el ISBN de la petición si fue un préstamo exitoso
+    private static String execute(LibraryService service, Request r, Map<String, OpStats> stats) {
+        OpStats s = stats.get(r.op);
+        long t0 = System.nanoTime();
+        try {
+            int status;
+            switch (r.op) {
+                case "query":
+                    status = service.queryByISBN(r.isbn).status;
+                    break;
+                case "loanByISBN":
+                    status = service.loanByISBN(r.isbn, r.user).status;
+                    break;
+                case "loanByTitle":
+                    status = service.loanByTitle(r.title, r.user).status;
+                    break;
+                default:
+                    status = service.returnBook(r.isbn, r.user).status;
+                    break;
+            }
+            s.latency.record(System.nanoTime() - t0);
+            boolean success = ResponseStatus.isSuccess(status);
+            (success ? s.ok : status == ResponseStatus.BUSY ? s.busy : s.failed).incrementAndGet();
+            return success && r.op.startsWith("loan") ? r.isbn : null;
+        } catch (Exception ex) {
+            s.latency.record(System.nanoTime() - t0);
+            s.errors.incrementAndGet();
+            return null;
+        }
+    }
+
+    // Tabla final por operación
+    private static void report(Map<String, OpStats> stats, long elapsedNanos) {
+        double secs = elapsedNanos / 1e9;
+        System.out.printf(Locale.ROOT, "%nDuración: %.1f s%n", secs);
+        System.out.printf(Locale.ROOT, "%-15s %10s %10s %8s %8s %8s %10s %9s %9s %9s %9s%n",
+                "operación", "total", "ok", "fallos", "ocupado", "errores", "ops/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        LatencyHistogram all = new LatencyHistogram();
+        long ok = 0;
+        long failed = 0;
+        long busy = 0;
+        long errors = 0;
+        for (Map.Entry<String, OpStats> e : stats.entrySet()) {
+            OpStats s = e.getValue();
+            printRow(e.getKey(), s.latency, s.ok.get(), s.failed.get(), s.busy.get(), s.errors.get(), secs);
+            all.add(s.latency);
+            ok += s.ok.get();
+            failed += s.failed.get();
+            busy += s.busy.get();
+            errors += s.errors.get();
+        }
+        printRow("TOTAL", all, ok, failed, busy, errors, secs);
+    }
+
+    private static void printRow(String name, LatencyHistogram h, long ok, long failed, long busy, long errors,
+                                 double secs) {
+        System.out.printf(Locale.ROOT, "%-15s %10d %10d %8d %8d %8d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                name, h.getCount(), ok, failed, busy, errors, h.getCount() / secs,
+                h.percentile(50) / 1e6, h.percentile(99) / 1e6, h.percentile(99.9) / 1e6, h.getMax() / 1e6);
+    }
+
+    // Índice del primer valor de la distribución acumulada que supera u
+    private static int pick(double[] cdf, double u) {
+        int i = Arrays.binarySearch(cdf, u);
+        int idx = i >= 0 ? i : -i - 1;
+        return Math.min(idx, cdf.length - 1);
+    }
+
+    // "query=70,loanByISBN=10,..." → distribución acumulada en el orden de OPS
+    private static double[] parseMix(String spec) {
+        double[] weights = new double[OPS.length];
+        for (String part : spec.split(",")) {
+            String[] kv = part.split("=");
+            int idx = Arrays.asList(OPS).indexOf(kv[0].trim());
+            if (kv.length != 2 || idx < 0) {
+                throw new IllegalArgumentException("Mezcla inválida: " + part + " (operaciones: " + String.join(", ", OPS) + ")");
+            }
+            weights[idx] = Double.parseDouble(kv[1].trim());
+        }
+        return cumulative(weights);
+    }
+
+    // Distribución acumulada Zipf(s) sobre n elementos (s = 0 es uniforme)
+    private static double[] zipfCdf(int n, double s) {
+        double[] w = new double[n];
+        for (int k = 0; k < n; k++) {
+            w[k] = 1.0 / Math.pow(k + 1, s);
+        }
+        return cumulative(w);
+    }
+
+    private static double[] cumulative(double[] weights) {
+        double total = 0;
+        for (double w : weights) {
+            total += w;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("La suma de pesos debe ser positiva");
+        }
+        double[] cdf = new double[weights.length];
+        double acc = 0;
+        for (int i = 0; i < weights.length; i++) {
+            acc += weights[i];
+            cdf[i] = acc / total;
+        }
+        return cdf;
+    }
+
+    // Lee (isbn, título) de db/seed.sql o de un archivo "isbn,título" por línea
+    private static List<String[]> readCatalog(Path file) throws IOException {
+        List<String[]> books = new ArrayList<>();
+        Pattern seedRow = Pattern.compile("\\('([^']+)',\\s*'((?:[^']|'')*)'");
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            Matcher m = seedRow.matcher(line);
+            if (m.find()) {
+                books.add(new String[]{m.group(1), m.group(2).replace("''", "'")});
+            } else if (!line.trim().isEmpty() && !line.startsWith("--") && line.contains(",")
+                    && !line.toUpperCase(Locale.ROOT).startsWith("INSERT")) {
+                String[] parts = line.split(",", 2);
+                books.add(new String[]{parts[0].trim(), parts[1].trim()});
+            }
+        }
+        return books;
+    }
+
+    // Lee la traza JSONL (objetos planos con valores de texto)
+    private static List<Request> readTrace(Path file) throws IOException {
+        List<Request> requests = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int n = 0;
+            while ((line = in.readLine()) != null) {
+                n++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String op = jsonField(line, "op");
+                if (op == null || !Arrays.asList(OPS).contains(op)) {
+                    throw new IllegalArgumentException("Línea " + n + " de la traza: operación inválida " + op);
+                }
+                requests.add(new Request(op, jsonField(line, "isbn"), jsonField(line, "title"),
+                        jsonField(line, "user")));
+            }
+        }
+        return requests;
+    }
+
+    // Valor de texto de un campo en un objeto JSON plano, o null si no está
+    private static String jsonField(String json, String field) {
+        Matcher m = Pattern.compile("\"" + Pattern.quote(field) + "\"\\s*:\\s*\"((?:[^\"\\\\]|\\\\.)*)\"").matcher(json);
+        if (!m.find()) {
+            return null;
+        }
+        return m.group(1).replace("\\\"", "\"").replace("\\\\", "\\");
+    }
+
+    // --clave valor / --bandera
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> opt = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Argumento inesperado: " + args[i]);
+            }
+            String key = args[i].substring(2);
+            if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                opt.put(key, args[++i]);
+            } else {
+                opt.put(key, "true");
+            }
+        }
+        return opt;
+    }
+}
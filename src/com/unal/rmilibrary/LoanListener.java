@@ -0,0 +1,13 @@
+// LoanListener.java
+package com.unal.rmilibrary;
+
+// Recibe los préstamos y devoluciones después de confirmarse, en el orden de sus commits
+// para cada ISBN. Debe volver enseguida: lo usa OverdueTracker para llevar en memoria los
+// préstamos activos ordenados por fecha de devolución
+public interface LoanListener {
+
+    void loaned(LoanRecord loan);
+
+    // Se devolvió el préstamo activo más antiguo de ese usuario para ese ISBN
+    void returned(String isbn, String userId);
+}
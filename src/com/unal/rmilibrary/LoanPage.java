@@ -0,0 +1,24 @@
+// LoanPage.java
+package com.unal.rmilibrary;
+
+import java.io.Serializable;
+import java.util.List;
+
+// Una página de los préstamos de un usuario ordenados por id (ver LibraryService.listLoans)
+public class LoanPage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Valor de nextAfterId cuando no hay más páginas
+    public static final long END = -1;
+
+    public final int status;              // código de ResponseStatus (OK o BUSY)
+    public final List<LoanRecord> loans;
+    public final long nextAfterId;        // cursor para la página siguiente; END si no hay más
+
+    public LoanPage(int status, List<LoanRecord> loans, long nextAfterId) {
+        this.status = status;
+        this.loans = loans;
+        this.nextAfterId = nextAfterId;
+    }
+}
@@ -0,0 +1,27 @@
+// LoanRecord.java
+package com.unal.rmilibrary;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+// Un préstamo del historial de un usuario (ver LibraryService.listLoans)
+public class LoanRecord implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public final long id;
+    public final String isbn;
+    public final String userId;
+    public final LocalDate loanDate;
+    public final LocalDate dueDate;
+    public final boolean returned;
+
+    public LoanRecord(long id, String isbn, String userId, LocalDate loanDate, LocalDate dueDate, boolean returned) {
+        this.id = id;
+        this.isbn = isbn;
+        this.userId = userId;
+        this.loanDate = loanDate;
+        this.dueDate = dueDate;
+        this.returned = returned;
+    }
+}
@@ -4,16 +4,31 @@ package com.unal.rmilibrary;
 import java.io.Serializable;
 import java.time.LocalDate;
 
-// Respuesta de un préstamo
+// Respuesta de un préstamo. Viaja por la red en forma compacta (ver CompactResponse)
 public class LoanResponse implements Serializable {
 
+    private static final long serialVersionUID = 2L;
+
     public final boolean success;
-    public final String message;
+    public final int status;        // código de ResponseStatus
+    public final String message;    // texto armado a partir del código
     public final LocalDate dueDate; // null si success==false
+    final String detail;            // detalle de un error interno (si lo hay)
+
+    public LoanResponse(int status, LocalDate dueDate) {
+        this(status, dueDate, null);
+    }
 
-    public LoanResponse(boolean success, String message, LocalDate dueDate) {
-        this.success = success;
-        this.message = message;
+    public LoanResponse(int status, LocalDate dueDate, String detail) {
+        this.success = ResponseStatus.isSuccess(status);
+        this.status = status;
+        this.message = ResponseStatus.message(status, detail);
         this.dueDate = dueDate;
+        this.detail = detail;
+    }
+
+    // Se serializa como CompactResponse: código, fecha como día epoch y nada más
+    private Object writeReplace() {
+        return CompactResponse.of(this);
     }
 }
@@ -0,0 +1,961 @@
+// MemoryBookDAO.java
+package com.unal.rmilibrary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Motor de datos en memoria (-Dlibrary.engine=memory).
+//
+// Los libros viven en arreglos por bloques (ISBN, título, autor, total) y los ejemplares
+// disponibles en contadores AtomicIntegerArray: prestar es un compareAndSet que nunca
+// baja de 0, sin candados ni conexiones. Los préstamos activos se agrupan por usuario.
+//
+// Cada préstamo, devolución o libro cargado se escribe en el InventoryLog antes de responder. Cada
+// library.memory.snapshotIntervalSec segundos se guarda un snapshot completo y se
+// borran los segmentos del log que ya cubre. Al arrancar se carga el snapshot y se
+// reaplica el log; la primera vez (sin snapshot) los datos se copian de la BD SQLite.
+public class MemoryBookDAO implements LibraryDAO {
+
+    private static final String SNAPSHOT = "snapshot.dat";
+    private static final int SNAPSHOT_MAGIC = 0x4C494231; // "LIB1"
+
+    // Tipos de registro del log
+    private static final byte REC_LOAN = 1;
+    private static final byte REC_RETURN = 2;
+    private static final byte REC_BOOK = 3;
+
+    // Libros por registro del log en importBooks
+    private static final int IMPORT_RECORDS = 1_000;
+
+    // Libros por bloque: crecer agrega bloques, nunca copia los contadores existentes
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    // Días de préstamo (igual que BookDAO)
+    private static final int LOAN_DAYS = 7;
+
+    // Bloque de libros. Fuera de 'available', los campos de un id solo cambian en importBooks
+    private static final class Chunk {
+        final String[] isbn = new String[CHUNK_SIZE];
+        final String[] title = new String[CHUNK_SIZE];
+        final String[] author = new String[CHUNK_SIZE];
+        final int[] total = new int[CHUNK_SIZE];
+        final AtomicIntegerArray available = new AtomicIntegerArray(CHUNK_SIZE);
+    }
+
+    // Préstamos activos de un usuario, ordenados por id (del más antiguo al más nuevo).
+    // Solo se modifica dentro de compute() del mapa (o con los escritores detenidos)
+    private static final class LoanSet {
+        long[] ids = new long[1];
+        String[] isbns = new String[1];
+        int[] loanDays = new int[1];
+        int[] dueDays = new int[1];
+        int size;
+
+        void add(long id, String isbn, int loanDay, int dueDay) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                isbns = Arrays.copyOf(isbns, size * 2);
+                loanDays = Arrays.copyOf(loanDays, size * 2);
+                dueDays = Arrays.copyOf(dueDays, size * 2);
+            }
+            // Casi siempre el id es el mayor; dos préstamos simultáneos pueden llegar cruzados
+            int i = size;
+            while (i > 0 && ids[i - 1] > id) {
+                i--;
+            }
+            System.arraycopy(ids, i, ids, i + 1, size - i);
+            System.arraycopy(isbns, i, isbns, i + 1, size - i);
+            System.arraycopy(loanDays, i, loanDays, i + 1, size - i);
+            System.arraycopy(dueDays, i, dueDays, i + 1, size - i);
+            ids[i] = id;
+            isbns[i] = isbn;
+            loanDays[i] = loanDay;
+            dueDays[i] = dueDay;
+            size++;
+        }
+
+        // Posición del préstamo más antiguo de ese ISBN; -1 si no hay
+        int oldestOf(String isbn) {
+            for (int i = 0; i < size; i++) {
+                if (isbns[i].equals(isbn)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        boolean remove(long id) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i < 0) {
+                return false;
+            }
+            removeAt(i);
+            return true;
+        }
+
+        void removeAt(int i) {
+            System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+            System.arraycopy(isbns, i + 1, isbns, i, size - i - 1);
+            System.arraycopy(loanDays, i + 1, loanDays, i, size - i - 1);
+            System.arraycopy(dueDays, i + 1, dueDays, i, size - i - 1);
+            isbns[size - 1] = null;
+            size--;
+        }
+    }
+
+    // Préstamo ya descontado del inventario, pendiente de escribirse en el log
+    private static final class PendingLoan {
+        final int book;
+        final String isbn;
+        final long id;
+        final int loanDay;
+        final int dueDay;
+
+        PendingLoan(int book, String isbn, long id, int loanDay, int dueDay) {
+            this.book = book;
+            this.isbn = isbn;
+            this.id = id;
+            this.loanDay = loanDay;
+            this.dueDay = dueDay;
+        }
+    }
+
+    private final LibraryMetrics metrics;
+    private final Path dir;
+
+    private volatile Chunk[] chunks = new Chunk[0];
+    private volatile int bookCount;
+    private final Object addLock = new Object();
+    private final Map<String, Integer> idByIsbn = new ConcurrentHashMap<>();
+    // Los mismos ISBN en orden, para listBooks
+    private final ConcurrentSkipListMap<String, Integer> isbnOrder = new ConcurrentSkipListMap<>();
+    private final Map<String, int[]> idsByTitle = new ConcurrentHashMap<>();
+
+    // Usuario → préstamos activos
+    private final Map<String, LoanSet> activeLoans = new ConcurrentHashMap<>();
+    private final AtomicLong nextLoanId = new AtomicLong(1);
+
+    private final CatalogIndex index = new CatalogIndex();
+    private final InventoryLog log;
+
+    // Recibe los cambios confirmados (replicación); null si no hay réplicas
+    private volatile InventoryListener listener;
+    private final Object publishLock = new Object();
+
+    // Recibe los préstamos y devoluciones confirmados (OverdueTracker)
+    private volatile LoanListener loanListener;
+
+    // Reservas de ejemplares para usuarios avisados (AvailabilityNotifier); null si no hay
+    private volatile HoldGate holdGate;
+
+    // Los préstamos y devoluciones toman el candado de lectura (no se bloquean entre sí);
+    // el snapshot toma el de escritura un instante para copiar un estado consistente
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService background;
+    private volatile long lastSnapshotSeq;
+
+    public MemoryBookDAO(String jdbcUrl, ServerConfig config, LibraryMetrics metrics) throws SQLException {
+        this.metrics = metrics;
+        this.dir = Paths.get(config.memoryDir);
+        long started = System.nanoTime();
+        long seq;
+        try {
+            Path snapshot = dir.resolve(SNAPSHOT);
+            if (Files.exists(snapshot)) {
+                seq = readSnapshot(snapshot);
+            } else {
+                seedFromDatabase(jdbcUrl);
+                seq = 0;
+            }
+            long fromSeq = seq;
+            seq = InventoryLog.replay(dir, seq, this::applyRecord);
+            System.out.printf("Motor en memoria: %d libros y %d registros del log recuperados en %d ms%n",
+                    bookCount, seq - fromSeq, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            this.log = new InventoryLog(dir, config.memoryLogSegmentMb << 20, seq, config.memoryFlushMs == 0);
+            // Un snapshot al arrancar deja el log recién reaplicado listo para borrar
+            snapshot();
+        } catch (IOException ex) {
+            throw new SQLException("No se pudo recuperar el motor en memoria desde " + dir, ex);
+        }
+        for (int id = 0; id < bookCount; id++) {
+            Chunk c = chunks[id >>> CHUNK_BITS];
+            int i = id & (CHUNK_SIZE - 1);
+            index.put(c.isbn[i], c.title[i], c.author[i]);
+        }
+        background = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "memory-engine");
+            t.setDaemon(true);
+            return t;
+        });
+        if (config.memoryFlushMs > 0) {
+            background.scheduleWithFixedDelay(log::force,
+                    config.memoryFlushMs, config.memoryFlushMs, TimeUnit.MILLISECONDS);
+        }
+        background.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }, config.memorySnapshotIntervalSec, config.memorySnapshotIntervalSec, TimeUnit.SECONDS);
+        metrics.attach(null, null, null);
+    }
+
+    // ---- Libros ----
+
+    // Agrega un libro y retorna su id (solo durante la carga o con addLock)
+    private int addBook(String isbn, String title, String author, int total, int available) {
+        synchronized (addLock) {
+            int id = bookCount;
+            Chunk[] cs = chunks;
+            if ((id >>> CHUNK_BITS) == cs.length) {
+                cs = Arrays.copyOf(cs, cs.length + 1);
+                cs[cs.length - 1] = new Chunk();
+                chunks = cs;
+            }
+            Chunk c = cs[id >>> CHUNK_BITS];
+            int i = id & (CHUNK_SIZE - 1);
+            c.isbn[i] = isbn;
+            c.title[i] = title;
+            c.author[i] = author;
+            c.total[i] = total;
+            c.available.set(i, available);
+            bookCount = id + 1;
+            // Publicar en los mapas al final: quien obtiene el id ve el libro completo
+            idsByTitle.merge(title, new int[]{id}, MemoryBookDAO::concat);
+            idByIsbn.put(isbn, id);
+            isbnOrder.put(isbn, id);
+            return id;
+        }
+    }
+
+    // Agrega el libro o, si ya existe, actualiza título, autor y total; los disponibles se
+    // mueven lo mismo que el total, sin bajar de 0 (igual que la carga en BookDAO)
+    private void upsertBook(String isbn, String title, String author, int total, int available) {
+        synchronized (addLock) {
+            Integer existing = idByIsbn.get(isbn);
+            if (existing == null) {
+                addBook(isbn, title, author, total, available);
+                return;
+            }
+            int id = existing;
+            Chunk c = chunkOf(id);
+            int i = slot(id);
+            if (!c.title[i].equals(title)) {
+                idsByTitle.computeIfPresent(c.title[i], (t, ids) -> without(ids, id));
+                idsByTitle.merge(title, new int[]{id}, MemoryBookDAO::concat);
+                c.title[i] = title;
+            }
+            c.author[i] = author;
+            int delta = total - c.total[i];
+            c.total[i] = total;
+            c.available.getAndUpdate(i, v -> Math.max(0, v + delta));
+        }
+    }
+
+    // El arreglo sin 'id'; null (quita la entrada del mapa) si queda vacío
+    private static int[] without(int[] ids, int id) {
+        int[] out = new int[ids.length - 1];
+        int k = 0;
+        for (int v : ids) {
+            if (v != id && k < out.length) {
+                out[k++] = v;
+            }
+        }
+        return out.length == 0 ? null : out;
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        int[] out = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+
+    private Chunk chunkOf(int id) {
+        return chunks[id >>> CHUNK_BITS];
+    }
+
+    private static int slot(int id) {
+        return id & (CHUNK_SIZE - 1);
+    }
+
+    // Resta un ejemplar si hay más disponibles que los reservados para otros. Sin candados:
+    // una reserva puede concederse entre la lectura de 'held' y el descuento, por eso quien
+    // llama vuelve a revisar las reservas después (ver takeUnheldCopy)
+    private boolean takeCopy(int id, int held) {
+        AtomicIntegerArray available = chunkOf(id).available;
+        int i = slot(id);
+        for (;;) {
+            int v = available.get(i);
+            if (v <= held) {
+                return false;
+            }
+            if (available.compareAndSet(i, v, v - 1)) {
+                return true;
+            }
+        }
+    }
+
+    // Descuenta un ejemplar que no esté reservado para otros usuarios. Después del descuento
+    // se vuelven a leer las reservas: si mientras tanto se concedió una y ya no alcanzan los
+    // ejemplares para cubrirlas, se devuelve el ejemplar (la reserva tiene prioridad).
+    // Antes de releerlas se espera a que termine el aviso en curso (publishLock): una reserva
+    // concedida con un estado leído antes del descuento ya está a la vista, y un aviso que
+    // empiece después lee el contador ya descontado. Retorna OK, NO_COPIES o RESERVED
+    private int takeUnheldCopy(int id, String isbn, String userId, HoldGate gate) {
+        int held = gate == null ? 0 : gate.heldForOthers(isbn, userId);
+        if (!takeCopy(id, held)) {
+            return held > 0 ? ResponseStatus.RESERVED : ResponseStatus.NO_COPIES;
+        }
+        if (gate != null && gate.watched(isbn)) {
+            synchronized (publishLock) {
+                // solo espera a que termine un aviso en curso
+            }
+            int heldNow = gate.heldForOthers(isbn, userId);
+            if (heldNow > held && chunkOf(id).available.get(slot(id)) < heldNow) {
+                giveBackCopy(id);
+                publish(id); // otro aviso pudo leer el ejemplar ya descontado
+                return ResponseStatus.RESERVED;
+            }
+        }
+        return ResponseStatus.OK;
+    }
+
+    private void giveBackCopy(int id) {
+        chunkOf(id).available.incrementAndGet(slot(id));
+    }
+
+    private QueryResponse describe(int id) {
+        Chunk c = chunkOf(id);
+        int i = slot(id);
+        return new QueryResponse(true, c.title[i], c.total[i], c.available.get(i));
+    }
+
+    // Avisa al listener el estado actual del libro. Los contadores cambian sin candados, así
+    // que el estado se lee con publishLock tomado: el último aviso de cada ISBN se lee
+    // después de todos los cambios anteriores y lleva el valor más reciente
+    private void publish(int id) {
+        InventoryListener l = listener;
+        if (l != null) {
+            synchronized (publishLock) {
+                l.changed(chunkOf(id).isbn[slot(id)], describe(id));
+            }
+        }
+    }
+
+    @Override
+    public void setInventoryListener(InventoryListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void setLoanListener(LoanListener listener) {
+        this.loanListener = listener;
+    }
+
+    @Override
+    public void setHoldGate(HoldGate gate) {
+        this.holdGate = gate;
+    }
+
+    // ---- Consultas ----
+
+    @Override
+    public Optional<QueryResponse> queryByISBN(String isbn) {
+        Integer id = idByIsbn.get(isbn);
+        return id == null ? Optional.empty() : Optional.of(describe(id));
+    }
+
+    @Override
+    public List<Optional<QueryResponse>> queryMany(List<String> isbns) {
+        List<Optional<QueryResponse>> results = new ArrayList<>(isbns.size());
+        for (String isbn : isbns) {
+            results.add(queryByISBN(isbn));
+        }
+        return results;
+    }
+
+    @Override
+    public SearchResponse search(SearchQuery q) {
+        CatalogIndex.Page page = index.search(q.text, q.field, q.mode, q.offset, q.limit);
+        List<BookSummary> books = new ArrayList<>(page.hits.size());
+        for (CatalogIndex.Hit h : page.hits) {
+            QueryResponse r = queryByISBN(h.isbn).orElse(null);
+            books.add(new BookSummary(h.isbn, h.title, h.author,
+                    r == null ? 0 : r.totalCopies, r == null ? 0 : r.availableCopies));
+        }
+        return new SearchResponse(books, page.total, q.offset);
+    }
+
+    @Override
+    public CatalogIndex getCatalogIndex() {
+        return index;
+    }
+
+    @Override
+    public BookPage listBooks(String afterIsbn, int limit) {
+        long start = System.nanoTime();
+        Map<String, Integer> tail = afterIsbn == null ? isbnOrder : isbnOrder.tailMap(afterIsbn, false);
+        List<BookSummary> books = new ArrayList<>(Math.min(limit, 64));
+        String next = null;
+        for (Map.Entry<String, Integer> e : tail.entrySet()) {
+            if (books.size() == limit) {
+                next = books.get(limit - 1).isbn; // hay al menos uno más
+                break;
+            }
+            int id = e.getValue();
+            Chunk c = chunkOf(id);
+            int i = slot(id);
+            books.add(new BookSummary(e.getKey(), c.title[i], c.author[i], c.total[i], c.available.get(i)));
+        }
+        metrics.listBooks.recordDbTime(System.nanoTime() - start);
+        return new BookPage(ResponseStatus.OK, books, next);
+    }
+
+    // Solo hay préstamos activos en memoria: el historial de devueltos queda en la BD SQLite
+    // de la que se copió el motor (y en el log hasta el siguiente snapshot)
+    @Override
+    public LoanPage listLoans(String userId, long afterId, int limit) {
+        long start = System.nanoTime();
+        List<LoanRecord> loans = new ArrayList<>();
+        long[] next = {LoanPage.END};
+        activeLoans.computeIfPresent(userId, (k, set) -> {
+            int i = Arrays.binarySearch(set.ids, 0, set.size, afterId + 1);
+            for (i = i < 0 ? -i - 1 : i; i < set.size; i++) {
+                if (loans.size() == limit) {
+                    next[0] = set.ids[i - 1];
+                    break;
+                }
+                loans.add(new LoanRecord(set.ids[i], set.isbns[i], userId,
+                        LocalDate.ofEpochDay(set.loanDays[i]), LocalDate.ofEpochDay(set.dueDays[i]), false));
+            }
+            return set;
+        });
+        metrics.listLoans.recordDbTime(System.nanoTime() - start);
+        return new LoanPage(ResponseStatus.OK, loans, next[0]);
+    }
+
+    @Override
+    public void forEachActiveLoan(Consumer<LoanRecord> action) {
+        for (String userId : activeLoans.keySet()) {
+            List<LoanRecord> loans = new ArrayList<>();
+            activeLoans.computeIfPresent(userId, (k, set) -> {
+                for (int i = 0; i < set.size; i++) {
+                    loans.add(new LoanRecord(set.ids[i], set.isbns[i], userId, LocalDate.ofEpochDay(set.loanDays[i]),
+                            LocalDate.ofEpochDay(set.dueDays[i]), false));
+                }
+                return set;
+            });
+            loans.forEach(action);
+        }
+    }
+
+    // Cada bloque de libros se escribe en el log como un solo append y después se aplica.
+    // Pensado para correr con el servidor detenido (ver CatalogTool)
+    @Override
+    public long importBooks(Iterator<BookSummary> books) throws SQLException {
+        long count = 0;
+        List<BookSummary> block = new ArrayList<>(IMPORT_RECORDS);
+        List<byte[]> records = new ArrayList<>(IMPORT_RECORDS);
+        while (books.hasNext()) {
+            block.clear();
+            records.clear();
+            while (books.hasNext() && block.size() < IMPORT_RECORDS) {
+                BookSummary b = books.next();
+                block.add(b);
+                records.add(bookRecord(b));
+            }
+            checkpointLock.readLock().lock();
+            try {
+                log.append(records);
+                for (BookSummary b : block) {
+                    upsertBook(b.isbn, b.title, b.author, b.totalCopies, b.availableCopies);
+                }
+            } catch (IOException ex) {
+                throw new SQLException("No se pudo escribir la carga en el log después de " + count + " libros", ex);
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+            for (BookSummary b : block) {
+                index.put(b.isbn, b.title, b.author);
+            }
+            count += block.size();
+        }
+        return count;
+    }
+
+    // ---- Préstamos ----
+
+    @Override
+    public LoanResponse loanByISBN(String isbn, String userId) {
+        return loanMany(metrics.loanByISBN, List.of(isbn), userId, ResponseStatus.LOANED).get(0);
+    }
+
+    @Override
+    public List<LoanResponse> loanMany(List<String> isbns, String userId) {
+        return loanMany(metrics.loanMany, isbns, userId, ResponseStatus.LOANED);
+    }
+
+    @Override
+    public LoanResponse loanByTitle(String title, String userId) {
+        int[] ids = idsByTitle.get(title);
+        if (ids == null) {
+            return new LoanResponse(ResponseStatus.TITLE_NOT_FOUND, null);
+        }
+        // El ejemplar con más disponibles primero; si otro cliente se lo lleva, se prueba el siguiente.
+        // Se ordena sobre una copia de los disponibles: leídos en vivo podrían cambiar a mitad
+        // del sort y romper el contrato del comparador
+        int[] available = new int[ids.length];
+        Integer[] order = new Integer[ids.length];
+        for (int k = 0; k < ids.length; k++) {
+            available[k] = chunkOf(ids[k]).available.get(slot(ids[k]));
+            order[k] = k;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(available[b], available[a]));
+        for (int k : order) {
+            int id = ids[k];
+            String isbn = chunkOf(id).isbn[slot(id)];
+            LoanResponse r = loanMany(metrics.loanByTitle, List.of(isbn), userId, ResponseStatus.LOANED_BY_TITLE).get(0);
+            if (r.status != ResponseStatus.NO_COPIES && r.status != ResponseStatus.RESERVED) {
+                return r;
+            }
+        }
+        return new LoanResponse(ResponseStatus.NO_COPIES_FOR_TITLE, null);
+    }
+
+    // Descuenta un ejemplar de cada ISBN que tenga, escribe todos los préstamos en el log
+    // de una vez y recién entonces los registra. Si el log falla, se devuelve todo
+    private List<LoanResponse> loanMany(OperationMetrics m, List<String> isbns, String userId, int okStatus) {
+        List<LoanResponse> results = new ArrayList<>(isbns.size());
+        List<PendingLoan> pending = new ArrayList<>(isbns.size());
+        LocalDate today = LocalDate.now();
+        LocalDate due = today.plusDays(LOAN_DAYS);
+        HoldGate gate = holdGate;
+        checkpointLock.readLock().lock();
+        try {
+            for (String isbn : isbns) {
+                Integer id = idByIsbn.get(isbn);
+                int taken = id == null ? ResponseStatus.BOOK_NOT_FOUND : takeUnheldCopy(id, isbn, userId, gate);
+                if (taken != ResponseStatus.OK) {
+                    results.add(new LoanResponse(taken, null));
+                } else {
+                    pending.add(new PendingLoan(id, isbn, nextLoanId.getAndIncrement(),
+                            (int) today.toEpochDay(), (int) due.toEpochDay()));
+                    results.add(new LoanResponse(okStatus, due));
+                }
+            }
+            if (pending.isEmpty()) {
+                return results;
+            }
+            List<byte[]> records = new ArrayList<>(pending.size());
+            for (PendingLoan p : pending) {
+                records.add(loanRecord(p.id, p.isbn, userId, p.loanDay, p.dueDay));
+            }
+            long logStart = System.nanoTime();
+            try {
+                log.append(records);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+                m.error();
+                for (PendingLoan p : pending) {
+                    giveBackCopy(p.book);
+                    publish(p.book); // otro aviso pudo leer el ejemplar ya descontado
+                }
+                return new ArrayList<>(Collections.nCopies(isbns.size(),
+                        new LoanResponse(ResponseStatus.INTERNAL_ERROR, null, ex.getMessage())));
+            } finally {
+                m.recordDbTime(System.nanoTime() - logStart);
+            }
+            for (PendingLoan p : pending) {
+                restoreLoan(userId, p, true);
+                publish(p.book);
+            }
+            return results;
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+    }
+
+    // Registra (o vuelve a registrar) un préstamo activo del usuario. Un préstamo nuevo se
+    // avisa dentro del compute: una devolución del mismo usuario no puede avisarse antes
+    private void restoreLoan(String userId, PendingLoan p, boolean announce) {
+        LoanListener l = announce ? loanListener : null;
+        activeLoans.compute(userId, (k, set) -> {
+            LoanSet s = set == null ? new LoanSet() : set;
+            s.add(p.id, p.isbn, p.loanDay, p.dueDay);
+            if (l != null) {
+                l.loaned(new LoanRecord(p.id, p.isbn, userId, LocalDate.ofEpochDay(p.loanDay),
+                        LocalDate.ofEpochDay(p.dueDay), false));
+            }
+            return s;
+        });
+    }
+
+    // ---- Devoluciones ----
+
+    @Override
+    public ReturnResponse returnBook(String isbn, String userId) {
+        return returnMany(metrics.returnBook, List.of(isbn), userId).get(0);
+    }
+
+    @Override
+    public List<ReturnResponse> returnMany(List<String> isbns, String userId) {
+        return returnMany(metrics.returnMany, isbns, userId);
+    }
+
+    // Saca el préstamo activo más antiguo de cada ISBN, escribe las devoluciones en el log
+    // y recién entonces devuelve los ejemplares. Si el log falla, los préstamos se restauran
+    private List<ReturnResponse> returnMany(OperationMetrics m, List<String> isbns, String userId) {
+        List<ReturnResponse> results = new ArrayList<>(isbns.size());
+        List<PendingLoan> removed = new ArrayList<>(isbns.size());
+        checkpointLock.readLock().lock();
+        try {
+            for (String isbn : isbns) {
+                PendingLoan[] taken = new PendingLoan[1];
+                Integer id = idByIsbn.get(isbn);
+                if (id != null) {
+                    activeLoans.computeIfPresent(userId, (k, set) -> {
+                        int i = set.oldestOf(isbn);
+                        if (i < 0) {
+                            return set;
+                        }
+                        taken[0] = new PendingLoan(id, isbn, set.ids[i], set.loanDays[i], set.dueDays[i]);
+                        set.removeAt(i);
+                        return set.size == 0 ? null : set;
+                    });
+                }
+                if (taken[0] == null) {
+                    results.add(new ReturnResponse(ResponseStatus.NO_ACTIVE_LOAN));
+                } else {
+                    removed.add(taken[0]);
+                    results.add(new ReturnResponse(ResponseStatus.RETURNED));
+                }
+            }
+            if (removed.isEmpty()) {
+                return results;
+            }
+            List<byte[]> records = new ArrayList<>(removed.size());
+            for (PendingLoan p : removed) {
+                records.add(returnRecord(p.id, p.isbn, userId));
+            }
+            long logStart = System.nanoTime();
+            try {
+                log.append(records);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+                m.error();
+                for (PendingLoan p : removed) {
+                    restoreLoan(userId, p, false);
+                }
+                return new ArrayList<>(Collections.nCopies(isbns.size(),
+                        new ReturnResponse(ResponseStatus.INTERNAL_ERROR, ex.getMessage())));
+            } finally {
+                m.recordDbTime(System.nanoTime() - logStart);
+            }
+            LoanListener l = loanListener;
+            for (PendingLoan p : removed) {
+                giveBackCopy(p.book);
+                publish(p.book);
+                if (l != null) {
+                    l.returned(p.isbn, userId);
+                }
+            }
+            return results;
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+    }
+
+    // ---- Log ----
+
+    private static byte[] loanRecord(long loanId, String isbn, String userId, int loanDay, int dueDay) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(REC_LOAN);
+            out.writeLong(loanId);
+            out.writeUTF(isbn);
+            out.writeUTF(userId);
+            out.writeInt(loanDay);
+            out.writeInt(dueDay);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex); // no ocurre en memoria
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] returnRecord(long loanId, String isbn, String userId) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(48);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(REC_RETURN);
+            out.writeLong(loanId);
+            out.writeUTF(isbn);
+            out.writeUTF(userId);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] bookRecord(BookSummary b) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(REC_BOOK);
+            out.writeUTF(b.isbn);
+            out.writeUTF(b.title);
+            out.writeUTF(b.author == null ? "" : b.author);
+            out.writeInt(b.totalCopies);
+            out.writeInt(b.availableCopies);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    // Reaplica un registro del log durante la recuperación
+    private void applyRecord(long seq, DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        if (type == REC_BOOK) {
+            String isbn = in.readUTF();
+            String title = in.readUTF();
+            String author = in.readUTF();
+            int total = in.readInt();
+            upsertBook(isbn, title, author.isEmpty() ? null : author, total, in.readInt());
+            return;
+        }
+        long loanId = in.readLong();
+        String isbn = in.readUTF();
+        String userId = in.readUTF();
+        Integer id = idByIsbn.get(isbn);
+        if (id == null) {
+            throw new IOException("Registro " + seq + " de un ISBN desconocido: " + isbn);
+        }
+        switch (type) {
+            case REC_LOAN: {
+                int loanDay = in.readInt();
+                int dueDay = in.readInt();
+                chunkOf(id).available.decrementAndGet(slot(id));
+                activeLoans.computeIfAbsent(userId, k -> new LoanSet()).add(loanId, isbn, loanDay, dueDay);
+                nextLoanId.accumulateAndGet(loanId + 1, Math::max);
+                break;
+            }
+            case REC_RETURN: {
+                LoanSet set = activeLoans.get(userId);
+                if (set != null && set.remove(loanId)) {
+                    giveBackCopy(id);
+                    if (set.size == 0) {
+                        activeLoans.remove(userId);
+                    }
+                }
+                break;
+            }
+            default:
+                throw new IOException("Tipo de registro desconocido en " + seq + ": " + type);
+        }
+    }
+
+    // ---- Snapshots ----
+
+    // Guarda el estado completo y borra los segmentos del log que ya contiene.
+    // Los escritores se detienen solo mientras se copia el estado en memoria
+    public synchronized void snapshot() throws IOException {
+        long seq;
+        int n;
+        int[] totals;
+        int[] available;
+        List<Object[]> loans = new ArrayList<>();
+        checkpointLock.writeLock().lock();
+        try {
+            seq = log.checkpoint();
+            n = bookCount;
+            // El total también: importBooks lo cambia junto con los disponibles
+            totals = new int[n];
+            available = new int[n];
+            for (int id = 0; id < n; id++) {
+                totals[id] = chunkOf(id).total[slot(id)];
+                available[id] = chunkOf(id).available.get(slot(id));
+            }
+            for (Map.Entry<String, LoanSet> e : activeLoans.entrySet()) {
+                LoanSet s = e.getValue();
+                loans.add(new Object[]{e.getKey(), Arrays.copyOf(s.ids, s.size), Arrays.copyOf(s.isbns, s.size),
+                        Arrays.copyOf(s.loanDays, s.size), Arrays.copyOf(s.dueDays, s.size)});
+            }
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+        if (seq == lastSnapshotSeq && Files.exists(dir.resolve(SNAPSHOT))) {
+            log.deleteSegmentsBefore(seq); // nada nuevo desde el último snapshot
+            return;
+        }
+        Path tmp = dir.resolve(SNAPSHOT + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(seq);
+            out.writeLong(nextLoanId.get());
+            out.writeInt(n);
+            for (int id = 0; id < n; id++) {
+                Chunk c = chunkOf(id);
+                int i = slot(id);
+                out.writeUTF(c.isbn[i]);
+                out.writeUTF(c.title[i]);
+                out.writeUTF(c.author[i] == null ? "" : c.author[i]);
+                out.writeInt(totals[id]);
+                out.writeInt(available[id]);
+            }
+            int count = 0;
+            for (Object[] l : loans) {
+                count += ((long[]) l[1]).length;
+            }
+            out.writeInt(count);
+            for (Object[] l : loans) {
+                String userId = (String) l[0];
+                long[] ids = (long[]) l[1];
+                String[] isbns = (String[]) l[2];
+                int[] loanDays = (int[]) l[3];
+                int[] dueDays = (int[]) l[4];
+                for (int k = 0; k < ids.length; k++) {
+                    out.writeLong(ids[k]);
+                    out.writeUTF(isbns[k]);
+                    out.writeUTF(userId);
+                    out.writeInt(loanDays[k]);
+                    out.writeInt(dueDays[k]);
+                }
+            }
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(tmp, dir.resolve(SNAPSHOT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lastSnapshotSeq = seq;
+        log.deleteSegmentsBefore(seq);
+    }
+
+    // Carga un snapshot y retorna el último seq del log que incluye
+    private long readSnapshot(Path path) throws IOException {
+        try (InputStream file = Files.newInputStream(path)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(file, 1 << 16), new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("No es un snapshot de la biblioteca: " + path);
+            }
+            long seq = in.readLong();
+            nextLoanId.set(in.readLong());
+            int n = in.readInt();
+            for (int k = 0; k < n; k++) {
+                String isbn = in.readUTF();
+                String title = in.readUTF();
+                String author = in.readUTF();
+                int total = in.readInt();
+                addBook(isbn, title, author.isEmpty() ? null : author, total, in.readInt());
+            }
+            int count = in.readInt();
+            for (int k = 0; k < count; k++) {
+                long loanId = in.readLong();
+                String isbn = in.readUTF();
+                String userId = in.readUTF();
+                int loanDay = in.readInt();
+                int dueDay = in.readInt();
+                activeLoans.computeIfAbsent(userId, key -> new LoanSet()).add(loanId, isbn, loanDay, dueDay);
+            }
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("Snapshot dañado (crc inválido): " + path);
+            }
+            lastSnapshotSeq = seq;
+            return seq;
+        }
+    }
+
+    // Primera ejecución: copia libros y préstamos activos de la BD SQLite
+    private void seedFromDatabase(String jdbcUrl) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(jdbcUrl);
+             Statement st = conn.createStatement()) {
+            try (ResultSet rs = st.executeQuery(
+                    "SELECT name FROM sqlite_master WHERE type = 'table' AND name = 'books'")) {
+                if (!rs.next()) {
+                    return; // BD vacía: se arranca sin libros
+                }
+            }
+            try (ResultSet rs = st.executeQuery(
+                    "SELECT isbn, title, author, total_copies, available_copies FROM books ORDER BY title, isbn")) {
+                while (rs.next()) {
+                    addBook(rs.getString("isbn"), rs.getString("title"), rs.getString("author"),
+                            rs.getInt("total_copies"), rs.getInt("available_copies"));
+                }
+            }
+            try (ResultSet rs = st.executeQuery(
+                    "SELECT id, isbn, user_id, loan_date, due_date FROM loans WHERE returned = 0 ORDER BY id")) {
+                while (rs.next()) {
+                    long loanId = rs.getLong("id");
+                    activeLoans.computeIfAbsent(rs.getString("user_id"), k -> new LoanSet()).add(loanId,
+                            rs.getString("isbn"),
+                            (int) LocalDate.parse(rs.getString("loan_date")).toEpochDay(),
+                            (int) LocalDate.parse(rs.getString("due_date")).toEpochDay());
+                    nextLoanId.accumulateAndGet(loanId + 1, Math::max);
+                }
+            } catch (SQLException ex) {
+                // Sin tabla de préstamos: no hay préstamos activos que copiar
+            }
+        }
+    }
+
+    @Override
+    public String describeStats() {
+        int loans = 0;
+        for (LoanSet s : activeLoans.values()) {
+            loans += s.size;
+        }
+        return String.format("motor memoria: libros=%d, préstamos activos=%d, registros del log=%d, último seq=%d",
+                bookCount, loans, log.getAppended(), log.getLastSeq());
+    }
+
+    // Detiene las tareas de fondo, toma un último snapshot y cierra el log
+    @Override
+    public void close() {
+        background.shutdownNow();
+        try {
+            snapshot();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+        log.close();
+    }
+}
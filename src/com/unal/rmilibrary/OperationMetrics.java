@@ -0,0 +1,152 @@
+// OperationMetrics.java
+package com.unal.rmilibrary;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Métricas de una operación del servicio: llamadas, errores, llamadas en curso y
+// tres histogramas de latencia: total de la llamada, tiempo en la BD y tiempo
+// esperando candados. Registrar cuesta unos pocos incrementos atómicos.
+// Aparte de los acumulados desde el arranque lleva la latencia y los errores del
+// intervalo en curso, que la línea periódica de LibraryMetrics toma y reinicia.
+public class OperationMetrics implements OperationMetricsMBean {
+
+    private final String name;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram dbTime = new LatencyHistogram();
+    private final LatencyHistogram lockWait = new LatencyHistogram();
+
+    // Intervalo en curso de la línea periódica; takeInterval() lo cambia por uno vacío
+    private volatile LatencyHistogram intervalLatency = new LatencyHistogram();
+    private final LongAdder intervalErrors = new LongAdder();
+
+    // Llamadas ya mostradas en el último log periódico (solo lo usa el reportero)
+    long lastLoggedCalls;
+
+    public OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Marca el inicio de una llamada; retorna el instante para pasarlo a end()
+    public long begin() {
+        calls.increment();
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    // Marca el fin de una llamada iniciada con begin()
+    public void end(long start) {
+        long nanos = System.nanoTime() - start;
+        latency.record(nanos);
+        intervalLatency.record(nanos);
+        inFlight.decrementAndGet();
+    }
+
+    public void error() {
+        errors.increment();
+        intervalErrors.increment();
+    }
+
+    // Latencias del intervalo que termina; empieza uno nuevo
+    LatencyHistogram takeIntervalLatency() {
+        LatencyHistogram h = intervalLatency;
+        intervalLatency = new LatencyHistogram();
+        return h;
+    }
+
+    // Errores del intervalo que termina; empieza uno nuevo
+    long takeIntervalErrors() {
+        return intervalErrors.sumThenReset();
+    }
+
+    public void recordDbTime(long nanos) {
+        dbTime.record(nanos);
+    }
+
+    public void recordLockWait(long nanos) {
+        lockWait.record(nanos);
+    }
+
+    LatencyHistogram latency() {
+        return latency;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public double getLatencyMeanMicros() {
+        return latency.getMean() / 1000.0;
+    }
+
+    @Override
+    public long getLatencyP50Micros() {
+        return latency.percentile(50) / 1000;
+    }
+
+    @Override
+    public long getLatencyP99Micros() {
+        return latency.percentile(99) / 1000;
+    }
+
+    @Override
+    public long getLatencyP999Micros() {
+        return latency.percentile(99.9) / 1000;
+    }
+
+    @Override
+    public long getLatencyMaxMicros() {
+        return latency.getMax() / 1000;
+    }
+
+    @Override
+    public long getDbTimeP50Micros() {
+        return dbTime.percentile(50) / 1000;
+    }
+
+    @Override
+    public long getDbTimeP99Micros() {
+        return dbTime.percentile(99) / 1000;
+    }
+
+    @Override
+    public long getLockWaitP50Micros() {
+        return lockWait.percentile(50) / 1000;
+    }
+
+    @Override
+    public long getLockWaitP99Micros() {
+        return lockWait.percentile(99) / 1000;
+    }
+
+    @Override
+    public void reset() {
+        calls.reset();
+        errors.reset();
+        latency.reset();
+        dbTime.reset();
+        lockWait.reset();
+        intervalLatency = new LatencyHistogram();
+        intervalErrors.reset();
+        lastLoggedCalls = 0;
+    }
+}
@@ -0,0 +1,34 @@
+// OperationMetricsMBean.java
+package com.unal.rmilibrary;
+
+// Interfaz JMX de las métricas de una operación (ver OperationMetrics).
+// Latencias en microsegundos.
+public interface OperationMetricsMBean {
+
+    long getCalls();
+
+    long getErrors();
+
+    int getInFlight();
+
+    double getLatencyMeanMicros();
+
+    long getLatencyP50Micros();
+
+    long getLatencyP99Micros();
+
+    long getLatencyP999Micros();
+
+    long getLatencyMaxMicros();
+
+    long getDbTimeP50Micros();
+
+    long getDbTimeP99Micros();
+
+    long getLockWaitP50Micros();
+
+    long getLockWaitP99Micros();
+
+    // Pone en cero contadores e histogramas
+    void reset();
+}
@@ -0,0 +1,202 @@
+// OverdueTracker.java
+package com.unal.rmilibrary;
+
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Préstamos activos en memoria, ordenados por fecha de devolución, para responder
+// getOverdueLoans y listActiveLoans sin recorrer la tabla de préstamos.
+//
+// Se carga una vez al arrancar (forEachActiveLoan) y después el motor le avisa cada
+// préstamo y devolución (LoanListener). Un hilo revisa cada scanIntervalSec segundos
+// los préstamos por vencer en orden de fecha y pasa a vencidos solo los que vencieron
+// desde la revisión anterior: el costo es proporcional a los que vencen, no al total.
+//
+// No hay un candado global: los mapas son concurrentes y lo que mueve un préstamo entre
+// por vencer y vencidos (alta, revisión, devolución) se hace con el monitor de ese
+// LoanRecord, así la revisión nunca frena los préstamos y devoluciones de otros libros.
+public class OverdueTracker implements LoanListener, AutoCloseable {
+
+    // Bits del id en la clave por fecha: (díaDeVencimiento << ID_BITS) | id
+    private static final int ID_BITS = 40;
+
+    private final Clock clock;
+
+    // Préstamos aún no vencidos por (fecha de devolución, id): la cabeza es el próximo a vencer
+    private final ConcurrentSkipListMap<Long, LoanRecord> upcoming = new ConcurrentSkipListMap<>();
+
+    // Préstamos vencidos sin devolver, por id
+    private final ConcurrentSkipListMap<Long, LoanRecord> overdue = new ConcurrentSkipListMap<>();
+
+    // Préstamos activos de cada usuario, por id
+    private final Map<String, ConcurrentSkipListMap<Long, LoanRecord>> byUser = new ConcurrentHashMap<>();
+
+    private final AtomicLong active = new AtomicLong();
+    private final AtomicLong overdueCount = new AtomicLong();
+    private final AtomicLong flagged = new AtomicLong();
+    private ScheduledExecutorService scanner;
+
+    public OverdueTracker() {
+        this(Clock.systemDefaultZone());
+    }
+
+    OverdueTracker(Clock clock) {
+        this.clock = clock;
+    }
+
+    private static long dueKey(LoanRecord loan) {
+        return (loan.dueDate.toEpochDay() << ID_BITS) | loan.id;
+    }
+
+    // Carga los préstamos activos del motor. Se llama antes de publicar el servicio,
+    // cuando todavía no hay préstamos ni devoluciones en curso
+    public void load(LibraryDAO dao) throws SQLException {
+        dao.forEachActiveLoan(this::loaned);
+        scan();
+    }
+
+    // Revisa periódicamente los vencimientos en un hilo daemon
+    public synchronized void start(int scanIntervalSec) {
+        if (scanner != null) {
+            return;
+        }
+        scanner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "overdue-scan");
+            t.setDaemon(true);
+            return t;
+        });
+        scanner.scheduleWithFixedDelay(this::scan, scanIntervalSec, scanIntervalSec, TimeUnit.SECONDS);
+    }
+
+    // Pasa a vencidos los préstamos cuya fecha de devolución ya pasó. Retorna cuántos.
+    // Toma el monitor de un préstamo a la vez: una devolución solo espera si es justo el
+    // préstamo que se está moviendo
+    public int scan() {
+        long limit = LocalDate.now(clock).toEpochDay() << ID_BITS;
+        int n = 0;
+        for (Map.Entry<Long, LoanRecord> e = upcoming.firstEntry(); e != null && e.getKey() < limit;
+             e = upcoming.firstEntry()) {
+            LoanRecord loan = e.getValue();
+            synchronized (loan) {
+                // Si no está, una devolución (u otra revisión) se lo llevó primero
+                if (upcoming.remove(e.getKey(), loan)) {
+                    overdue.put(loan.id, loan);
+                    overdueCount.incrementAndGet();
+                    flagged.incrementAndGet();
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    // ---- LoanListener ----
+
+    @Override
+    public void loaned(LoanRecord loan) {
+        synchronized (loan) {
+            LoanRecord[] old = new LoanRecord[1];
+            // compute es atómico por usuario: no se cruza con el borrado del mapa vacío en returned
+            byUser.compute(loan.userId, (k, loans) -> {
+                if (loans == null) {
+                    loans = new ConcurrentSkipListMap<>();
+                }
+                old[0] = loans.putIfAbsent(loan.id, loan);
+                return loans;
+            });
+            if (old[0] != null) {
+                return; // ya registrado
+            }
+            active.incrementAndGet();
+            if (loan.dueDate.isBefore(LocalDate.now(clock))) {
+                overdue.put(loan.id, loan);
+                overdueCount.incrementAndGet();
+            } else {
+                upcoming.put(dueKey(loan), loan);
+            }
+        }
+    }
+
+    @Override
+    public void returned(String isbn, String userId) {
+        ConcurrentSkipListMap<Long, LoanRecord> loans = byUser.get(userId);
+        if (loans == null) {
+            return;
+        }
+        for (LoanRecord loan : loans.values()) {
+            // remove(id, loan) decide quién se lo lleva si dos devoluciones llegan a la vez
+            if (loan.isbn.equals(isbn) && loans.remove(loan.id, loan)) {
+                byUser.computeIfPresent(userId, (k, m) -> m.isEmpty() ? null : m);
+                synchronized (loan) {
+                    if (upcoming.remove(dueKey(loan)) == null && overdue.remove(loan.id) != null) {
+                        overdueCount.decrementAndGet();
+                    }
+                }
+                active.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    // ---- Consultas ----
+
+    // Préstamos vencidos ordenados por id, después de afterId
+    public LoanPage overdue(long afterId, int limit) {
+        return page(overdue, afterId, limit);
+    }
+
+    // Préstamos activos del usuario ordenados por id, después de afterId
+    public LoanPage activeLoans(String userId, long afterId, int limit) {
+        ConcurrentSkipListMap<Long, LoanRecord> loans = byUser.get(userId);
+        return loans == null ? new LoanPage(ResponseStatus.OK, List.of(), LoanPage.END) : page(loans, afterId, limit);
+    }
+
+    private static LoanPage page(ConcurrentSkipListMap<Long, LoanRecord> loans, long afterId, int limit) {
+        List<LoanRecord> out = new ArrayList<>(Math.min(limit, 64));
+        long next = LoanPage.END;
+        for (LoanRecord loan : loans.tailMap(afterId, false).values()) {
+            if (out.size() == limit) {
+                next = out.get(limit - 1).id; // hay al menos uno más
+                break;
+            }
+            out.add(loan);
+        }
+        return new LoanPage(ResponseStatus.OK, out, next);
+    }
+
+    public long getActiveCount() {
+        return active.get();
+    }
+
+    public long getOverdueCount() {
+        return overdueCount.get();
+    }
+
+    // Préstamos que pasaron a vencidos en las revisiones desde el arranque
+    public long getFlagged() {
+        return flagged.get();
+    }
+
+    public String describeStats() {
+        return String.format("préstamos: activos=%d, vencidos=%d, marcados como vencidos desde el arranque=%d",
+                getActiveCount(), getOverdueCount(), getFlagged());
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scanner != null) {
+            scanner.shutdownNow();
+            scanner = null;
+        }
+    }
+}
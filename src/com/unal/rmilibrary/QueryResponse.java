@@ -3,18 +3,31 @@ package com.unal.rmilibrary;
 
 import java.io.Serializable;
 
-// Respuesta de una consulta que es serializable para la BD
+// Respuesta de una consulta. Viaja por la red en forma compacta (ver CompactResponse)
 public class QueryResponse implements Serializable {
 
+    private static final long serialVersionUID = 2L;
+
     public final boolean found;
+    public final int status;        // código de ResponseStatus
     public final String title;
     public final int totalCopies;
     public final int availableCopies;
 
     public QueryResponse(boolean found, String title, int totalCopies, int availableCopies) {
-        this.found = found;
+        this(found ? ResponseStatus.OK : ResponseStatus.BOOK_NOT_FOUND, title, totalCopies, availableCopies);
+    }
+
+    public QueryResponse(int status, String title, int totalCopies, int availableCopies) {
+        this.found = status == ResponseStatus.OK;
+        this.status = status;
         this.title = title;
         this.totalCopies = totalCopies;
         this.availableCopies = availableCopies;
     }
+
+    // Se serializa como CompactResponse
+    private Object writeReplace() {
+        return CompactResponse.of(this);
+    }
 }
@@ -0,0 +1,16 @@
+// ReplicaCallback.java
+package com.unal.rmilibrary;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+// Objeto remoto que exporta cada réplica y que el principal llama para enviarle los cambios
+// (ver ReplicationSource.subscribe). No se publica en el registro RMI
+public interface ReplicaCallback extends Remote {
+
+    // Aplica un lote de cambios. 'coveredSeq' indica que con este lote la réplica tiene
+    // todos los cambios hasta ese número (o -1 si quedan pendientes en el principal);
+    // 'primarySeq' es el último cambio del principal. Un lote vacío sirve de latido
+    void apply(List<InventoryEvent> events, long coveredSeq, long primarySeq) throws RemoteException;
+}
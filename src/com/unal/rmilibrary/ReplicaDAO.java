@@ -0,0 +1,351 @@
+// ReplicaDAO.java
+package com.unal.rmilibrary;
+
+import java.io.UncheckedIOException;
+import java.rmi.Naming;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Motor de una réplica de solo lectura (-Dlibrary.replicaOf=host:puerto/nombre).
+// Se suscribe al principal (ReplicationSource), copia el catálogo con listBooks y desde
+// ahí aplica en memoria los cambios que el principal le envía. Atiende consultas,
+// búsquedas y listBooks; préstamos, devoluciones y listLoans responden READ_ONLY.
+// Si pasa replicaTimeoutMs sin noticias del principal (ni cambios ni latidos) se vuelve a
+// suscribir y copia el catálogo otra vez; mientras tanto sigue respondiendo lo que tiene
+public class ReplicaDAO implements LibraryDAO {
+
+    // Libro y la suscripción cuyo cambio lo escribió por última vez (0 = copia inicial).
+    // Durante la copia no se pisa lo que ya llegó como cambio de la misma suscripción
+    private static final class Entry {
+        final BookSummary book;
+        final long generation;
+
+        Entry(BookSummary book, long generation) {
+            this.book = book;
+            this.generation = generation;
+        }
+    }
+
+    // Objeto remoto que recibe los cambios; uno nuevo por suscripción
+    private final class Receiver extends UnicastRemoteObject implements ReplicaCallback {
+
+        private static final long serialVersionUID = 1L;
+
+        final long generation;
+
+        Receiver(long generation) throws RemoteException {
+            super();
+            this.generation = generation;
+        }
+
+        @Override
+        public void apply(List<InventoryEvent> events, long coveredSeq, long primarySeq) {
+            ReplicaDAO.this.apply(generation, events, coveredSeq, primarySeq);
+        }
+    }
+
+    private final String primaryUrl;
+    private final long timeoutMs;
+    private final ConcurrentSkipListMap<String, Entry> books = new ConcurrentSkipListMap<>();
+    private final CatalogIndex index = new CatalogIndex();
+    private final Thread syncThread;
+
+    private volatile Receiver receiver;
+    private volatile ReplicationSource source;
+    private volatile boolean synced;
+    private volatile boolean closed;
+
+    // Posición respecto del principal
+    private volatile long appliedSeq;
+    private volatile long primarySeq;
+    private volatile long lastContactAt;
+    private volatile long upToDateAt;
+
+    private final AtomicLong eventsApplied = new AtomicLong();
+    private long generation;
+    private int resyncs;
+
+    public ReplicaDAO(ServerConfig config, LibraryMetrics metrics) {
+        this.primaryUrl = ShardedLibraryClient.url(config.replicaOf);
+        this.timeoutMs = config.replicaTimeoutMs;
+        this.syncThread = new Thread(this::syncLoop, "replica-sync");
+        this.syncThread.setDaemon(true);
+        this.syncThread.start();
+        metrics.attach(null, null, null);
+    }
+
+    // ---- Sincronización ----
+
+    // Se suscribe (y copia el catálogo) al arrancar y cada vez que se pierde el contacto
+    private void syncLoop() {
+        long wait = 100;
+        while (!closed) {
+            try {
+                if (!synced || System.currentTimeMillis() - lastContactAt > timeoutMs) {
+                    resync();
+                    wait = 100;
+                }
+                Thread.sleep(Math.max(10, timeoutMs / 4));
+            } catch (InterruptedException ex) {
+                return;
+            } catch (Exception ex) {
+                if (closed) {
+                    return;
+                }
+                synced = false;
+                System.err.println("Réplica: no se pudo sincronizar con " + primaryUrl + ": " + ex);
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                wait = Math.min(wait * 2, timeoutMs);
+            }
+        }
+    }
+
+    private void resync() throws Exception {
+        synced = false;
+        dropReceiver();
+        ReplicationSource s = (ReplicationSource) Naming.lookup(primaryUrl);
+        Receiver r;
+        synchronized (this) {
+            resyncs++;
+            r = new Receiver(++generation);
+        }
+        receiver = r;
+        source = s;
+        long from = s.subscribe(r);
+        long now = System.currentTimeMillis();
+        appliedSeq = from;
+        primarySeq = from;
+        lastContactAt = now;
+        upToDateAt = now;
+        try {
+            Iterator<BookSummary> it = LibraryPages.books((LibraryService) s, MAX_PAGE);
+            while (it.hasNext()) {
+                copy(it.next(), r.generation);
+            }
+        } catch (UncheckedIOException ex) {
+            throw (Exception) ex.getCause();
+        }
+        synced = true;
+        System.out.println("Réplica sincronizada con " + primaryUrl + ": " + books.size() + " libros, desde el cambio " + from);
+    }
+
+    // Cancela la suscripción actual; los envíos pendientes del principal fallan y los descarta
+    private void dropReceiver() {
+        Receiver r = receiver;
+        ReplicationSource s = source;
+        receiver = null;
+        if (r == null) {
+            return;
+        }
+        try {
+            UnicastRemoteObject.unexportObject(r, true);
+        } catch (NoSuchObjectException ignored) {
+        }
+        if (s != null) {
+            try {
+                s.unsubscribe(r);
+            } catch (RemoteException ignored) {
+                // el principal lo descarta solo al fallar el siguiente envío
+            }
+        }
+    }
+
+    // Un libro de la copia inicial. Si ya llegó un cambio suyo en esta suscripción se
+    // conserva el inventario del cambio (es más nuevo) y solo se completa el autor
+    private void copy(BookSummary b, long gen) {
+        Entry e = books.compute(b.isbn, (k, old) -> old != null && old.generation == gen
+                ? new Entry(new BookSummary(k, old.book.title, b.author, old.book.totalCopies,
+                        old.book.availableCopies), gen)
+                : new Entry(b, 0));
+        index.put(b.isbn, e.book.title, b.author);
+    }
+
+    // Aplica un lote del principal (hilo RMI)
+    private void apply(long gen, List<InventoryEvent> events, long coveredSeq, long knownSeq) {
+        if (gen != generation() || closed) {
+            return;
+        }
+        for (InventoryEvent ev : events) {
+            BookSummary[] before = new BookSummary[1];
+            books.compute(ev.isbn, (k, old) -> {
+                before[0] = old == null ? null : old.book;
+                String author = old == null ? null : old.book.author;
+                return new Entry(new BookSummary(k, ev.title, author, ev.totalCopies, ev.availableCopies), gen);
+            });
+            if (before[0] == null || !ev.title.equals(before[0].title)) {
+                index.put(ev.isbn, ev.title, before[0] == null ? null : before[0].author);
+            }
+        }
+        eventsApplied.addAndGet(events.size());
+        long now = System.currentTimeMillis();
+        lastContactAt = now;
+        primarySeq = knownSeq;
+        if (coveredSeq >= 0) {
+            appliedSeq = coveredSeq;
+            if (coveredSeq == knownSeq) {
+                upToDateAt = now;
+            }
+        }
+    }
+
+    private synchronized long generation() {
+        return generation;
+    }
+
+    // Atraso respecto del principal: sincronizada y en contacto, cambios sin aplicar y
+    // tiempo desde que la réplica estuvo al día por última vez (a lo sumo un latido en reposo)
+    public ReplicationStatus status() {
+        long now = System.currentTimeMillis();
+        boolean inContact = now - lastContactAt <= timeoutMs;
+        return new ReplicationStatus(ReplicationStatus.REPLICA, appliedSeq, primarySeq,
+                now - upToDateAt, 0, synced && inContact);
+    }
+
+    // ---- Consultas ----
+
+    @Override
+    public Optional<QueryResponse> queryByISBN(String isbn) {
+        if (!synced) {
+            return Optional.of(new QueryResponse(ResponseStatus.BUSY, "", 0, 0));
+        }
+        Entry e = books.get(isbn);
+        return e == null ? Optional.empty()
+                : Optional.of(new QueryResponse(true, e.book.title, e.book.totalCopies, e.book.availableCopies));
+    }
+
+    @Override
+    public List<Optional<QueryResponse>> queryMany(List<String> isbns) {
+        List<Optional<QueryResponse>> results = new ArrayList<>(isbns.size());
+        for (String isbn : isbns) {
+            results.add(queryByISBN(isbn));
+        }
+        return results;
+    }
+
+    @Override
+    public SearchResponse search(SearchQuery q) {
+        if (!synced) {
+            return new SearchResponse(ResponseStatus.BUSY, List.of(), 0, q.offset);
+        }
+        CatalogIndex.Page page = index.search(q.text, q.field, q.mode, q.offset, q.limit);
+        List<BookSummary> found = new ArrayList<>(page.hits.size());
+        for (CatalogIndex.Hit h : page.hits) {
+            Entry e = books.get(h.isbn);
+            found.add(new BookSummary(h.isbn, h.title, h.author,
+                    e == null ? 0 : e.book.totalCopies, e == null ? 0 : e.book.availableCopies));
+        }
+        return new SearchResponse(found, page.total, q.offset);
+    }
+
+    @Override
+    public BookPage listBooks(String afterIsbn, int limit) {
+        if (!synced) {
+            return new BookPage(ResponseStatus.BUSY, List.of(), afterIsbn);
+        }
+        Map<String, Entry> tail = afterIsbn == null ? books : books.tailMap(afterIsbn, false);
+        List<BookSummary> page = new ArrayList<>(Math.min(limit, 64));
+        String next = null;
+        for (Entry e : tail.values()) {
+            if (page.size() == limit) {
+                next = page.get(limit - 1).isbn; // hay al menos uno más
+                break;
+            }
+            page.add(e.book);
+        }
+        return new BookPage(ResponseStatus.OK, page, next);
+    }
+
+    // Los préstamos no se replican: se consultan en el principal
+    @Override
+    public LoanPage listLoans(String userId, long afterId, int limit) {
+        return new LoanPage(ResponseStatus.READ_ONLY, List.of(), LoanPage.END);
+    }
+
+    @Override
+    public CatalogIndex getCatalogIndex() {
+        return index;
+    }
+
+    // ---- Escrituras: solo en el principal ----
+
+    @Override
+    public LoanResponse loanByISBN(String isbn, String userId) {
+        return new LoanResponse(ResponseStatus.READ_ONLY, null);
+    }
+
+    @Override
+    public List<LoanResponse> loanMany(List<String> isbns, String userId) {
+        return new ArrayList<>(Collections.nCopies(isbns.size(), new LoanResponse(ResponseStatus.READ_ONLY, null)));
+    }
+
+    @Override
+    public LoanResponse loanByTitle(String title, String userId) {
+        return new LoanResponse(ResponseStatus.READ_ONLY, null);
+    }
+
+    @Override
+    public ReturnResponse returnBook(String isbn, String userId) {
+        return new ReturnResponse(ResponseStatus.READ_ONLY);
+    }
+
+    @Override
+    public List<ReturnResponse> returnMany(List<String> isbns, String userId) {
+        return new ArrayList<>(Collections.nCopies(isbns.size(), new ReturnResponse(ResponseStatus.READ_ONLY)));
+    }
+
+    @Override
+    public long importBooks(Iterator<BookSummary> books) throws SQLException {
+        throw new SQLException("Una réplica no admite cargas: el catálogo se carga en el principal");
+    }
+
+    // Una réplica no tiene réplicas propias
+    @Override
+    public void setInventoryListener(InventoryListener listener) {
+    }
+
+    // Los préstamos no se replican
+    @Override
+    public void setLoanListener(LoanListener listener) {
+    }
+
+    // Sin préstamos no hay reservas
+    @Override
+    public void setHoldGate(HoldGate gate) {
+    }
+
+    @Override
+    public void forEachActiveLoan(Consumer<LoanRecord> action) {
+    }
+
+    @Override
+    public String describeStats() {
+        int n;
+        synchronized (this) {
+            n = resyncs;
+        }
+        return String.format("réplica de %s: libros=%d, cambios aplicados=%d, suscripciones=%d, %s",
+                primaryUrl, books.size(), eventsApplied.get(), n, status());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        syncThread.interrupt();
+        dropReceiver();
+    }
+}
@@ -0,0 +1,317 @@
+// ReplicatedLibraryClient.java
+package com.unal.rmilibrary;
+
+import java.rmi.Naming;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Cliente para un principal con réplicas de solo lectura (ver ReplicaDAO).
+//
+// Las consultas, búsquedas y listBooks van a las réplicas (por turnos); préstamos,
+// devoluciones y los listados de préstamos van al principal. Solo se usa una réplica sincronizada y con
+// atraso de a lo sumo maxLagMs, según su getReplicationStatus (consultado como mucho cada
+// STATUS_INTERVAL_MS). Si la réplica falla o responde BUSY la lectura va al principal.
+//
+// Lo escrito por este cliente se lee en el principal durante maxLagMs, para que un
+// préstamo recién hecho no parezca perdido en una réplica que aún no lo recibió.
+public class ReplicatedLibraryClient implements LibraryService, AutoCloseable {
+
+    // Cada cuánto se vuelve a pedir el estado de una réplica
+    static final long STATUS_INTERVAL_MS = 500;
+
+    // Cuánto se deja de usar una réplica que falló
+    private static final long DOWN_MS = 2_000;
+
+    // Una réplica, su último estado conocido y su conexión
+    private static final class Replica {
+        final LibraryServiceClient client;
+        final AtomicLong checkedAt = new AtomicLong(Long.MIN_VALUE / 2);
+        volatile ReplicationStatus status;
+        volatile long downUntil = Long.MIN_VALUE / 2;
+        volatile ReplicationSource source;
+
+        Replica(String url) {
+            this.client = new LibraryServiceClient(url);
+        }
+    }
+
+    private final LibraryServiceClient primary;
+    private final List<Replica> replicas;
+    private final long maxLagNanos;
+    private final AtomicInteger next = new AtomicInteger();
+
+    // Lecturas que van al principal: ISBN escritos hace poco (hasta cuándo, en nanoTime)
+    // y todas después de un loanByTitle (no se sabe qué ISBN prestó)
+    private final Map<String, Long> recentWrites = new ConcurrentHashMap<>();
+    private volatile long primaryOnlyUntil = System.nanoTime();
+
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong primaryReads = new AtomicLong();
+
+    // Configuración por propiedades del sistema:
+    //   -Dlibrary.client.maxReplicaLagMs=3000   atraso máximo para leer de una réplica
+    public ReplicatedLibraryClient(String primaryUrl, List<String> replicaUrls) {
+        this(primaryUrl, replicaUrls, Long.getLong("library.client.maxReplicaLagMs", 3_000));
+    }
+
+    public ReplicatedLibraryClient(String primaryUrl, List<String> replicaUrls, long maxLagMs) {
+        if (maxLagMs < 0) {
+            throw new IllegalArgumentException("Atraso máximo inválido: " + maxLagMs);
+        }
+        this.primary = new LibraryServiceClient(primaryUrl);
+        List<Replica> rs = new ArrayList<>(replicaUrls.size());
+        for (String url : replicaUrls) {
+            rs.add(new Replica(url));
+        }
+        this.replicas = Collections.unmodifiableList(rs);
+        this.maxLagNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMs);
+    }
+
+    // Conecta con el principal ya, para avisar pronto si no está (las réplicas son opcionales)
+    public ReplicatedLibraryClient connect() throws RemoteException {
+        primary.connect();
+        return this;
+    }
+
+    // ---- Elección de réplica ----
+
+    // Indica si la réplica puede atender lecturas; pide su estado si el conocido es viejo
+    private boolean usable(Replica r, long now) {
+        if (now - r.downUntil < 0) {
+            return false;
+        }
+        long checked = r.checkedAt.get();
+        if (now - checked >= TimeUnit.MILLISECONDS.toNanos(STATUS_INTERVAL_MS)
+                && r.checkedAt.compareAndSet(checked, now)) {
+            try {
+                ReplicationSource s = r.source;
+                if (s == null) {
+                    s = (ReplicationSource) Naming.lookup(r.client.getUrl());
+                    r.source = s;
+                }
+                r.status = s.getReplicationStatus();
+            } catch (Exception ex) {
+                down(r);
+                return false;
+            }
+        }
+        ReplicationStatus st = r.status;
+        return st != null && st.role == ReplicationStatus.REPLICA && st.synced
+                && TimeUnit.MILLISECONDS.toNanos(st.lagMillis) <= maxLagNanos;
+    }
+
+    private static void down(Replica r) {
+        r.source = null;
+        r.status = null;
+        r.downUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DOWN_MS);
+    }
+
+    // Réplica para leer los ISBN indicados (null = todo el catálogo), o null si la lectura
+    // debe ir al principal
+    private Replica pick(List<String> isbns) {
+        long now = System.nanoTime();
+        if (replicas.isEmpty() || now - primaryOnlyUntil < 0) {
+            return null;
+        }
+        if (isbns != null) {
+            for (String isbn : isbns) {
+                Long until = isbn == null ? null : recentWrites.get(isbn);
+                if (until != null) {
+                    if (now - until < 0) {
+                        return null;
+                    }
+                    recentWrites.remove(isbn, until);
+                }
+            }
+        }
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int k = 0; k < replicas.size(); k++) {
+            Replica r = replicas.get((start + k) % replicas.size());
+            if (usable(r, now)) {
+                return r;
+            }
+        }
+        return null;
+    }
+
+    // Lectura en una réplica (si hay una apta) o en el principal
+    private interface ReadCall<T> {
+        T run(LibraryService service) throws RemoteException;
+    }
+
+    // Indica si la respuesta de la réplica sirve o hay que preguntar al principal
+    private interface Usable<T> {
+        boolean test(T result);
+    }
+
+    private <T> T read(List<String> isbns, ReadCall<T> call, Usable<T> usable) throws RemoteException {
+        Replica r = pick(isbns);
+        if (r != null) {
+            try {
+                T result = call.run(r.client);
+                if (usable.test(result)) {
+                    replicaReads.incrementAndGet();
+                    return result;
+                }
+            } catch (RemoteException ex) {
+                down(r);
+            }
+        }
+        primaryReads.incrementAndGet();
+        return call.run(primary);
+    }
+
+    // Anota los ISBN escritos y los borra de las cachés de las réplicas
+    private void written(List<String> isbns) {
+        long until = System.nanoTime() + maxLagNanos;
+        for (String isbn : isbns) {
+            if (isbn != null) {
+                recentWrites.put(isbn, until);
+            }
+        }
+        for (Replica r : replicas) {
+            r.client.invalidate(isbns);
+        }
+    }
+
+    // ---- Lecturas ----
+
+    @Override
+    public QueryResponse queryByISBN(String isbn) throws RemoteException {
+        return read(Collections.singletonList(isbn), s -> s.queryByISBN(isbn),
+                q -> q.status != ResponseStatus.BUSY);
+    }
+
+    @Override
+    public List<QueryResponse> queryMany(List<String> isbns) throws RemoteException {
+        return read(isbns, s -> s.queryMany(isbns), list -> {
+            for (QueryResponse q : list) {
+                if (q.status == ResponseStatus.BUSY) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    @Override
+    public SearchResponse searchBooks(SearchQuery query) throws RemoteException {
+        return read(null, s -> s.searchBooks(query), r -> r.status != ResponseStatus.BUSY);
+    }
+
+    @Override
+    public BookPage listBooks(String afterIsbn, int limit) throws RemoteException {
+        return read(null, s -> s.listBooks(afterIsbn, limit), p -> p.status != ResponseStatus.BUSY);
+    }
+
+    // Los préstamos solo están en el principal
+    @Override
+    public LoanPage listLoans(String userId, long afterId, int limit) throws RemoteException {
+        return primary.listLoans(userId, afterId, limit);
+    }
+
+    @Override
+    public LoanPage listActiveLoans(String userId, long afterId, int limit) throws RemoteException {
+        return primary.listActiveLoans(userId, afterId, limit);
+    }
+
+    @Override
+    public LoanPage getOverdueLoans(long afterId, int limit) throws RemoteException {
+        return primary.getOverdueLoans(afterId, limit);
+    }
+
+    // Las filas de espera y las reservas están en el principal
+    @Override
+    public QueryResponse subscribeAvailability(String isbn, String userId, AvailabilityCallback callback)
+            throws RemoteException {
+        return primary.subscribeAvailability(isbn, userId, callback);
+    }
+
+    @Override
+    public void unsubscribeAvailability(String isbn, String userId) throws RemoteException {
+        primary.unsubscribeAvailability(isbn, userId);
+    }
+
+    // ---- Escrituras: siempre en el principal ----
+
+    @Override
+    public LoanResponse loanByISBN(String isbn, String userId) throws RemoteException {
+        try {
+            return primary.loanByISBN(isbn, userId);
+        } finally {
+            written(Collections.singletonList(isbn)); // también si falló: pudo quedar hecho
+        }
+    }
+
+    @Override
+    public LoanResponse loanByTitle(String title, String userId) throws RemoteException {
+        try {
+            return primary.loanByTitle(title, userId);
+        } finally {
+            primaryOnlyUntil = System.nanoTime() + maxLagNanos;
+            for (Replica r : replicas) {
+                r.client.invalidateTitle(title);
+            }
+        }
+    }
+
+    @Override
+    public ReturnResponse returnBook(String isbn, String userId) throws RemoteException {
+        try {
+            return primary.returnBook(isbn, userId);
+        } finally {
+            written(Collections.singletonList(isbn));
+        }
+    }
+
+    @Override
+    public List<LoanResponse> loanMany(List<String> isbns, String userId) throws RemoteException {
+        try {
+            return primary.loanMany(isbns, userId);
+        } finally {
+            if (isbns != null) {
+                written(isbns);
+            }
+        }
+    }
+
+    @Override
+    public List<ReturnResponse> returnMany(List<String> isbns, String userId) throws RemoteException {
+        try {
+            return primary.returnMany(isbns, userId);
+        } finally {
+            if (isbns != null) {
+                written(isbns);
+            }
+        }
+    }
+
+    // ---- Estado ----
+
+    // Lecturas atendidas por réplicas y por el principal, y el último estado de cada réplica
+    public String describeStats() {
+        StringBuilder sb = new StringBuilder(String.format("lecturas en réplicas=%d, en el principal=%d",
+                replicaReads.get(), primaryReads.get()));
+        for (Replica r : replicas) {
+            ReplicationStatus st = r.status;
+            sb.append("\n  ").append(r.client.getUrl()).append(": ")
+                    .append(st == null ? "sin contacto" : st.toString());
+        }
+        return sb.append("\n  principal ").append(primary.describeStats()).toString();
+    }
+
+    @Override
+    public void close() {
+        primary.close();
+        for (Replica r : replicas) {
+            r.client.close();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+// ReplicationPublisher.java
+package com.unal.rmilibrary;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Envía los cambios de inventario confirmados en el principal a las réplicas suscritas.
+// Cada réplica tiene sus cambios pendientes (solo el último de cada ISBN, así una ráfaga
+// sobre el mismo libro viaja una vez) y un hilo que los manda en lotes por RMI; si no hay
+// cambios manda un latido cada heartbeatMillis. Una réplica que deja de responder se
+// descarta: al notar la falta de latidos vuelve a suscribirse y copia el catálogo de nuevo
+public class ReplicationPublisher implements InventoryListener, AutoCloseable {
+
+    // Cambios por llamada a la réplica
+    static final int MAX_EVENTS = 500;
+
+    // Envíos fallidos seguidos antes de descartar una réplica
+    private static final int MAX_FAILURES = 3;
+
+    private final long heartbeatMillis;
+    private final List<Replica> replicas = new CopyOnWriteArrayList<>();
+    private volatile long seq;          // último cambio publicado (se escribe con el monitor tomado)
+    private volatile boolean closed;
+    private int started;
+
+    // Una réplica suscrita y su hilo de envío
+    private final class Replica implements Runnable {
+        final ReplicaCallback callback;
+        final Thread sender;
+
+        // Protegidos por el monitor de la réplica
+        final Map<String, InventoryEvent> pending = new LinkedHashMap<>();
+        long lastOffered;               // último cambio puesto en 'pending'
+        int failures;
+
+        volatile long ackedSeq;         // la réplica tiene todos los cambios hasta este
+        volatile long upToDateAt;       // cuándo se armó el último lote que la dejó al día
+        volatile boolean stopped;
+
+        Replica(ReplicaCallback callback, long fromSeq, int n) {
+            this.callback = callback;
+            this.lastOffered = fromSeq;
+            this.ackedSeq = fromSeq;
+            this.upToDateAt = System.currentTimeMillis();
+            this.sender = new Thread(this, "replica-sender-" + n);
+            this.sender.setDaemon(true);
+        }
+
+        synchronized void offer(InventoryEvent e) {
+            pending.remove(e.isbn); // el cambio nuevo va al final
+            pending.put(e.isbn, e);
+            lastOffered = e.seq;
+            if (pending.size() == 1) {
+                notifyAll();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!closed && !stopped) {
+                List<InventoryEvent> batch = new ArrayList<>();
+                long covered;
+                long known;
+                long drainedAt;
+                synchronized (this) {
+                    try {
+                        if (pending.isEmpty()) {
+                            wait(heartbeatMillis);
+                        }
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    Iterator<InventoryEvent> it = pending.values().iterator();
+                    while (it.hasNext() && batch.size() < MAX_EVENTS) {
+                        batch.add(it.next());
+                        it.remove();
+                    }
+                    known = lastOffered;
+                    covered = pending.isEmpty() ? known : -1;
+                    drainedAt = System.currentTimeMillis();
+                }
+                if (closed || stopped) {
+                    return;
+                }
+                try {
+                    callback.apply(batch, covered, known);
+                    synchronized (this) {
+                        failures = 0;
+                    }
+                    if (covered >= 0) {
+                        ackedSeq = covered;
+                        upToDateAt = drainedAt;
+                    }
+                } catch (RemoteException ex) {
+                    if (!failed(batch, ex)) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        // Devuelve el lote a pendientes (sin pisar cambios más nuevos) y decide si seguir
+        private boolean failed(List<InventoryEvent> batch, RemoteException ex) {
+            int n;
+            synchronized (this) {
+                for (InventoryEvent e : batch) {
+                    pending.putIfAbsent(e.isbn, e);
+                }
+                n = ++failures;
+            }
+            if (ex instanceof NoSuchObjectException || n >= MAX_FAILURES) {
+                System.err.println("Réplica descartada después de " + n + " envíos fallidos: " + ex.getMessage());
+                remove(this);
+                return false;
+            }
+            try {
+                Thread.sleep(heartbeatMillis);
+            } catch (InterruptedException ie) {
+                return false;
+            }
+            return true;
+        }
+
+        void stop() {
+            stopped = true;
+            sender.interrupt();
+        }
+    }
+
+    public ReplicationPublisher(long heartbeatMillis) {
+        this.heartbeatMillis = heartbeatMillis;
+    }
+
+    // Encola el cambio para cada réplica. Lo llaman los motores en orden por ISBN
+    @Override
+    public void changed(String isbn, QueryResponse state) {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            long s = seq + 1;
+            seq = s;
+            InventoryEvent e = new InventoryEvent(s, isbn, state.title, state.totalCopies, state.availableCopies);
+            for (Replica r : replicas) {
+                r.offer(e);
+            }
+        }
+    }
+
+    // Suscribe una réplica; recibirá los cambios con número mayor al retornado
+    public synchronized long subscribe(ReplicaCallback callback) {
+        if (closed) {
+            throw new IllegalStateException("El servidor se está deteniendo");
+        }
+        for (Replica r : replicas) {
+            if (r.callback.equals(callback)) {
+                remove(r); // la misma réplica que se vuelve a suscribir empieza de cero
+            }
+        }
+        Replica r = new Replica(callback, seq, ++started);
+        replicas.add(r);
+        r.sender.start();
+        return seq;
+    }
+
+    public void unsubscribe(ReplicaCallback callback) {
+        for (Replica r : replicas) {
+            if (r.callback.equals(callback)) {
+                remove(r);
+            }
+        }
+    }
+
+    private void remove(Replica r) {
+        replicas.remove(r);
+        r.stop();
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    // Último cambio publicado y atraso de la réplica más lenta
+    public ReplicationStatus status() {
+        long s = seq;
+        long acked = s;
+        long lag = 0;
+        long now = System.currentTimeMillis();
+        for (Replica r : replicas) {
+            acked = Math.min(acked, r.ackedSeq);
+            lag = Math.max(lag, now - r.upToDateAt);
+        }
+        return new ReplicationStatus(ReplicationStatus.PRIMARY, acked, s, lag, replicas.size(), true);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Replica r : replicas) {
+            remove(r);
+        }
+    }
+}
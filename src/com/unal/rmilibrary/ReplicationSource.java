@@ -0,0 +1,19 @@
+// ReplicationSource.java
+package com.unal.rmilibrary;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+// Replicación del inventario hacia réplicas de solo lectura. La implementa
+// LibraryServiceImpl, así el mismo objeto publicado como LibraryService sirve de origen
+// (en el principal) y de consulta del atraso (en el principal y en las réplicas)
+public interface ReplicationSource extends Remote {
+
+    // Registra una réplica: desde ahora recibe cada cambio con número mayor al retornado.
+    // La réplica copia el catálogo con listBooks después de suscribirse
+    long subscribe(ReplicaCallback replica) throws RemoteException;
+
+    void unsubscribe(ReplicaCallback replica) throws RemoteException;
+
+    ReplicationStatus getReplicationStatus() throws RemoteException;
+}
@@ -0,0 +1,47 @@
+// ReplicationStatus.java
+package com.unal.rmilibrary;
+
+import java.io.Serializable;
+
+// Estado de la replicación de un servidor (ver ReplicationSource.getReplicationStatus).
+// En el principal: último cambio publicado, réplicas conectadas y el atraso de la más lenta.
+// En una réplica: último cambio aplicado, último conocido del principal y su atraso
+public class ReplicationStatus implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int PRIMARY = 0;
+    public static final int REPLICA = 1;
+
+    public final int role;              // PRIMARY o REPLICA
+    public final long appliedSeq;       // último cambio aplicado (en el principal, por la réplica más atrasada)
+    public final long primarySeq;       // último cambio conocido del principal
+    public final long lagMillis;        // tiempo desde que la réplica (o la más lenta) estuvo al día
+    public final int replicas;          // réplicas conectadas (solo en el principal)
+    public final boolean synced;        // réplica con la copia inicial completa y en contacto
+
+    public ReplicationStatus(int role, long appliedSeq, long primarySeq, long lagMillis,
+                             int replicas, boolean synced) {
+        this.role = role;
+        this.appliedSeq = appliedSeq;
+        this.primarySeq = primarySeq;
+        this.lagMillis = lagMillis;
+        this.replicas = replicas;
+        this.synced = synced;
+    }
+
+    // Cambios del principal que aún no se aplicaron (en el principal, los de la réplica más lenta)
+    public long lagEvents() {
+        return Math.max(0, primarySeq - appliedSeq);
+    }
+
+    @Override
+    public String toString() {
+        if (role == PRIMARY) {
+            return String.format("principal: seq=%d, réplicas=%d, atraso máx=%d cambios/%dms",
+                    primarySeq, replicas, lagEvents(), lagMillis);
+        }
+        return String.format("réplica: aplicado=%d de %d, atraso=%d cambios/%dms%s",
+                appliedSeq, primarySeq, lagEvents(), lagMillis, synced ? "" : " (sin sincronizar)");
+    }
+}
@@ -0,0 +1,70 @@
+// ResponseStatus.java
+package com.unal.rmilibrary;
+
+// Códigos de resultado de las respuestas RMI.
+// Por la red viaja solo el código (un byte); el texto en español se arma en el
+// cliente al deserializar, así no se repiten los mismos mensajes en cada respuesta.
+public final class ResponseStatus {
+
+    // Éxitos
+    public static final int OK = 0;                  // consulta con resultado
+    public static final int LOANED = 1;
+    public static final int LOANED_BY_TITLE = 2;
+    public static final int RETURNED = 3;
+
+    // Fallos
+    public static final int BOOK_NOT_FOUND = 10;
+    public static final int TITLE_NOT_FOUND = 11;
+    public static final int NO_COPIES = 12;
+    public static final int NO_COPIES_FOR_TITLE = 13;
+    public static final int NO_ACTIVE_LOAN = 14;
+    public static final int BUSY = 15;               // servidor saturado: reintentar más tarde
+    public static final int WRONG_SHARD = 16;        // el ISBN pertenece a otro fragmento
+    public static final int READ_ONLY = 17;          // réplica: préstamos y devoluciones van al principal
+    public static final int RESERVED = 18;           // los disponibles están reservados para otros usuarios
+    public static final int INTERNAL_ERROR = 99;     // lleva un detalle (mensaje de la excepción)
+
+    private ResponseStatus() {
+    }
+
+    // Indica si el código corresponde a una operación exitosa
+    public static boolean isSuccess(int status) {
+        return status < 10;
+    }
+
+    // Mensaje para mostrar al usuario; 'detail' solo se usa en errores internos
+    public static String message(int status, String detail) {
+        switch (status) {
+            case OK:
+                return "";
+            case LOANED:
+                return "Préstamo confirmado.";
+            case LOANED_BY_TITLE:
+                return "Préstamo confirmado (por título).";
+            case RETURNED:
+                return "Devolución registrada correctamente.";
+            case BOOK_NOT_FOUND:
+                return "Libro no encontrado (ISBN).";
+            case TITLE_NOT_FOUND:
+                return "Libro no encontrado por título.";
+            case NO_COPIES:
+                return "No hay ejemplares disponibles.";
+            case NO_COPIES_FOR_TITLE:
+                return "No hay ejemplares disponibles para ese título.";
+            case NO_ACTIVE_LOAN:
+                return "No se encontró préstamo activo para ese usuario y ISBN.";
+            case BUSY:
+                return "Servidor ocupado, intente de nuevo en unos momentos.";
+            case WRONG_SHARD:
+                return "Este servidor no atiende ese ISBN (pertenece a otro fragmento).";
+            case READ_ONLY:
+                return "Réplica de solo lectura: los préstamos y devoluciones se hacen en el servidor principal.";
+            case RESERVED:
+                return "Los ejemplares disponibles están reservados para usuarios que los esperaban.";
+            case INTERNAL_ERROR:
+                return "Error interno: " + detail;
+            default:
+                return "Respuesta desconocida (código " + status + ").";
+        }
+    }
+}
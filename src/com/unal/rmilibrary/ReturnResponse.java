@@ -3,14 +3,29 @@ package com.unal.rmilibrary;
 
 import java.io.Serializable;
 
-// Respuesta de la devolución de un libro que es serializable para la BD
+// Respuesta de la devolución de un libro. Viaja por la red en forma compacta (ver CompactResponse)
 public class ReturnResponse implements Serializable {
 
+    private static final long serialVersionUID = 2L;
+
     public final boolean success;
-    public final String message;
+    public final int status;        // código de ResponseStatus
+    public final String message;    // texto armado a partir del código
+    final String detail;            // detalle de un error interno (si lo hay)
+
+    public ReturnResponse(int status) {
+        this(status, null);
+    }
+
+    public ReturnResponse(int status, String detail) {
+        this.success = ResponseStatus.isSuccess(status);
+        this.status = status;
+        this.message = ResponseStatus.message(status, detail);
+        this.detail = detail;
+    }
 
-    public ReturnResponse(boolean success, String message) {
-        this.success = success;
-        this.message = message;
+    // Se serializa como CompactResponse
+    private Object writeReplace() {
+        return CompactResponse.of(this);
     }
 }
@@ -0,0 +1,37 @@
+// SearchQuery.java
+package com.unal.rmilibrary;
+
+import java.io.Serializable;
+
+// Parámetros de una búsqueda en el catálogo (ver LibraryService.searchBooks)
+public class SearchQuery implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Campo donde buscar
+    public static final int ANY = 0;
+    public static final int TITLE = 1;
+    public static final int AUTHOR = 2;
+
+    // Cómo se comparan las palabras de la consulta
+    public static final int PREFIX = 0;   // cada palabra es prefijo de alguna palabra del campo ("hob" → Hobbit)
+    public static final int KEYWORD = 1;  // cada palabra aparece exacta
+    public static final int FUZZY = 2;    // cada palabra aparece con hasta 1-2 errores de tipeo
+
+    // Máximo de resultados por página
+    public static final int MAX_LIMIT = 100;
+
+    public final String text;
+    public final int field;
+    public final int mode;
+    public final int offset;  // resultados a saltar (paginación)
+    public final int limit;   // tamaño de la página
+
+    public SearchQuery(String text, int field, int mode, int offset, int limit) {
+        this.text = text;
+        this.field = field;
+        this.mode = mode;
+        this.offset = offset;
+        this.limit = limit;
+    }
+}
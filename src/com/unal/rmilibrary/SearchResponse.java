@@ -0,0 +1,32 @@
+// SearchResponse.java
+package com.unal.rmilibrary;
+
+import java.io.Serializable;
+import java.util.List;
+
+// Una página de resultados de búsqueda
+public class SearchResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public final int status;              // código de ResponseStatus (OK o BUSY)
+    public final List<BookSummary> books; // la página pedida
+    public final int total;               // cantidad total de coincidencias
+    public final int offset;
+
+    public SearchResponse(List<BookSummary> books, int total, int offset) {
+        this(ResponseStatus.OK, books, total, offset);
+    }
+
+    public SearchResponse(int status, List<BookSummary> books, int total, int offset) {
+        this.status = status;
+        this.books = books;
+        this.total = total;
+        this.offset = offset;
+    }
+
+    // Indica si hay más resultados después de esta página
+    public boolean hasMore() {
+        return offset + books.size() < total;
+    }
+}
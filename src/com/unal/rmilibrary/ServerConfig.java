@@ -0,0 +1,234 @@
+// ServerConfig.java
+package com.unal.rmilibrary;
+
+import java.util.Locale;
+
+// Parámetros de ajuste del servidor y de la capa de datos.
+// Se leen de propiedades del sistema (-Dlibrary.xxx=valor) al arrancar LibraryServer;
+// los valores por defecto sirven para una instalación pequeña.
+public class ServerConfig {
+
+    // Motores de datos disponibles (library.engine)
+    public static final String ENGINE_SQLITE = "sqlite";
+    public static final String ENGINE_MEMORY = "memory";
+
+    // Puerto del registro RMI y nombre con que se publica el servicio. Para varios
+    // servidores en la misma máquina basta con cambiar el puerto (o el nombre)
+    public int port = 1099;
+    public String serviceName = "LibraryService";
+
+    // Fragmentación por ISBN: este servidor atiende los ISBN con
+    // Shards.of(isbn, shardCount) == shardIndex (ver ShardedLibraryClient)
+    public int shardIndex = 0;
+    public int shardCount = 1;
+
+    // Réplica de solo lectura: URL del principal (host[:puerto][/nombre]); vacío en el
+    // principal. La réplica no usa BD: copia el catálogo y recibe los cambios por RMI
+    public String replicaOf = "";
+
+    // El principal manda un latido a cada réplica si pasan replicationHeartbeatMs sin cambios;
+    // una réplica que no sabe del principal en replicaTimeoutMs se vuelve a suscribir
+    public int replicationHeartbeatMs = 1000;
+    public int replicaTimeoutMs = 5000;
+
+    // Motor de datos: "sqlite" (BookDAO) o "memory" (MemoryBookDAO)
+    public String engine = ENGINE_SQLITE;
+
+    // Conexiones JDBC del pool de BookDAO
+    public int poolSize = 4;
+
+    // Nivel PRAGMA synchronous de SQLite (OFF, NORMAL, FULL, EXTRA).
+    // NORMAL es seguro ante caídas del proceso en modo WAL
+    public String synchronous = "NORMAL";
+
+    // Milisegundos que SQLite reintenta antes de fallar con "database is locked"
+    public int busyTimeoutMs = 5000;
+
+    // Libros que guarda la caché de inventario (LRU); 0 la desactiva
+    public int cacheSize = 10_000;
+
+    // Group commit: préstamos y devoluciones se encolan y un solo hilo los confirma en grupos
+    // de hasta groupCommitMaxBatch operaciones, esperando como mucho groupCommitMaxDelayMs
+    public boolean groupCommit = false;
+    public int groupCommitMaxBatch = 64;
+    public int groupCommitMaxDelayMs = 2;
+
+    // Cada cuántos segundos se revisan los préstamos que vencieron (OverdueTracker)
+    public int overdueScanIntervalSec = 60;
+
+    // Avisos de disponibilidad: un ejemplar que se libera queda reservado holdWindowSec
+    // segundos para el primer usuario suscrito; notifyThreads hilos envían los avisos, y
+    // un cliente que no responde en notifyTimeoutMs se descarta (en el principal acota todas
+    // las llamadas RMI salientes, ver LibraryServer). Una suscripción sin aviso vence a los
+    // subscriptionTtlSec segundos (el cliente la renueva suscribiéndose de nuevo)
+    public int holdWindowSec = 120;
+    public int notifyThreads = 2;
+    public int notifyTimeoutMs = 5000;
+    public int subscriptionTtlSec = 86_400;
+
+    // Cada cuántos segundos se imprime la línea de métricas; 0 la desactiva
+    public int metricsLogIntervalSec = 60;
+
+    // Ejecutor de las llamadas RMI (auto, virtual, pool o none): a lo sumo dispatchThreads
+    // en paralelo (con pool) y dispatchMaxQueued esperando; el resto recibe BUSY
+    public String dispatch = DispatchExecutor.AUTO;
+    public int dispatchThreads = 16;
+    public int dispatchMaxQueued = 256;
+
+    // Motor en memoria: carpeta del log y del snapshot, tamaño de cada segmento del log,
+    // cada cuánto se fuerza el log a disco (0 = en cada escritura) y cada cuánto se toma
+    // un snapshot (que permite borrar los segmentos viejos)
+    public String memoryDir = "library-data";
+    public int memoryLogSegmentMb = 64;
+    public int memoryFlushMs = 1000;
+    public int memorySnapshotIntervalSec = 300;
+
+    // Construye la configuración a partir de las propiedades del sistema
+    public static ServerConfig fromSystemProperties() {
+        ServerConfig c = new ServerConfig();
+        c.port = Integer.getInteger("library.port", c.port);
+        c.serviceName = System.getProperty("library.name", c.serviceName);
+        c.shardIndex = Integer.getInteger("library.shard.index", c.shardIndex);
+        c.shardCount = Integer.getInteger("library.shard.count", c.shardCount);
+        c.replicaOf = System.getProperty("library.replicaOf", c.replicaOf);
+        c.replicationHeartbeatMs = Integer.getInteger("library.replication.heartbeatMs", c.replicationHeartbeatMs);
+        c.replicaTimeoutMs = Integer.getInteger("library.replica.timeoutMs", c.replicaTimeoutMs);
+        c.engine = System.getProperty("library.engine", c.engine);
+        c.poolSize = Integer.getInteger("library.pool.size", c.poolSize);
+        c.synchronous = System.getProperty("library.sqlite.synchronous", c.synchronous);
+        c.busyTimeoutMs = Integer.getInteger("library.sqlite.busyTimeoutMs", c.busyTimeoutMs);
+        c.cacheSize = Integer.getInteger("library.cache.size", c.cacheSize);
+        c.groupCommit = Boolean.parseBoolean(System.getProperty("library.groupCommit", String.valueOf(c.groupCommit)));
+        c.groupCommitMaxBatch = Integer.getInteger("library.groupCommit.maxBatch", c.groupCommitMaxBatch);
+        c.groupCommitMaxDelayMs = Integer.getInteger("library.groupCommit.maxDelayMs", c.groupCommitMaxDelayMs);
+        c.overdueScanIntervalSec = Integer.getInteger("library.overdue.scanIntervalSec", c.overdueScanIntervalSec);
+        c.holdWindowSec = Integer.getInteger("library.hold.windowSec", c.holdWindowSec);
+        c.notifyThreads = Integer.getInteger("library.notify.threads", c.notifyThreads);
+        c.notifyTimeoutMs = Integer.getInteger("library.notify.timeoutMs", c.notifyTimeoutMs);
+        c.subscriptionTtlSec = Integer.getInteger("library.notify.subscriptionTtlSec", c.subscriptionTtlSec);
+        c.metricsLogIntervalSec = Integer.getInteger("library.metrics.logIntervalSec", c.metricsLogIntervalSec);
+        c.dispatch = System.getProperty("library.dispatch", c.dispatch);
+        c.dispatchThreads = Integer.getInteger("library.dispatch.threads", c.dispatchThreads);
+        c.dispatchMaxQueued = Integer.getInteger("library.dispatch.maxQueued", c.dispatchMaxQueued);
+        c.memoryDir = System.getProperty("library.memory.dir", c.memoryDir);
+        c.memoryLogSegmentMb = Integer.getInteger("library.memory.logSegmentMb", c.memoryLogSegmentMb);
+        c.memoryFlushMs = Integer.getInteger("library.memory.flushMs", c.memoryFlushMs);
+        c.memorySnapshotIntervalSec = Integer.getInteger("library.memory.snapshotIntervalSec", c.memorySnapshotIntervalSec);
+        return c.validate();
+    }
+
+    // Verifica los valores (el nivel synchronous se concatena en un PRAGMA)
+    public ServerConfig validate() {
+        if (port < 1 || port > 65535) {
+            throw new IllegalArgumentException("library.port inválido: " + port);
+        }
+        serviceName = serviceName.trim();
+        if (serviceName.isEmpty() || serviceName.contains("/")) {
+            throw new IllegalArgumentException("library.name inválido: '" + serviceName + "'");
+        }
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("Fragmento inválido: library.shard.index=" + shardIndex
+                    + " con library.shard.count=" + shardCount);
+        }
+        replicaOf = replicaOf.trim();
+        if (replicationHeartbeatMs < 10) {
+            throw new IllegalArgumentException("library.replication.heartbeatMs debe ser al menos 10: " + replicationHeartbeatMs);
+        }
+        if (replicaTimeoutMs <= replicationHeartbeatMs) {
+            throw new IllegalArgumentException("library.replica.timeoutMs debe ser mayor que el latido ("
+                    + replicationHeartbeatMs + "ms): " + replicaTimeoutMs);
+        }
+        engine = engine.trim().toLowerCase(Locale.ROOT);
+        if (!engine.equals(ENGINE_SQLITE) && !engine.equals(ENGINE_MEMORY)) {
+            throw new IllegalArgumentException("library.engine inválido: " + engine);
+        }
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("library.pool.size debe ser al menos 1: " + poolSize);
+        }
+        synchronous = synchronous.trim().toUpperCase(Locale.ROOT);
+        switch (synchronous) {
+            case "OFF":
+            case "NORMAL":
+            case "FULL":
+            case "EXTRA":
+                break;
+            default:
+                throw new IllegalArgumentException("library.sqlite.synchronous inválido: " + synchronous);
+        }
+        if (busyTimeoutMs < 0) {
+            throw new IllegalArgumentException("library.sqlite.busyTimeoutMs no puede ser negativo: " + busyTimeoutMs);
+        }
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("library.cache.size no puede ser negativo: " + cacheSize);
+        }
+        if (groupCommitMaxBatch < 1) {
+            throw new IllegalArgumentException("library.groupCommit.maxBatch debe ser al menos 1: " + groupCommitMaxBatch);
+        }
+        if (groupCommitMaxDelayMs < 0) {
+            throw new IllegalArgumentException("library.groupCommit.maxDelayMs no puede ser negativo: " + groupCommitMaxDelayMs);
+        }
+        if (overdueScanIntervalSec < 1) {
+            throw new IllegalArgumentException("library.overdue.scanIntervalSec debe ser al menos 1: " + overdueScanIntervalSec);
+        }
+        if (holdWindowSec < 1) {
+            throw new IllegalArgumentException("library.hold.windowSec debe ser al menos 1: " + holdWindowSec);
+        }
+        if (notifyThreads < 1) {
+            throw new IllegalArgumentException("library.notify.threads debe ser al menos 1: " + notifyThreads);
+        }
+        if (notifyTimeoutMs < 1) {
+            throw new IllegalArgumentException("library.notify.timeoutMs debe ser al menos 1: " + notifyTimeoutMs);
+        }
+        if (subscriptionTtlSec < 1) {
+            throw new IllegalArgumentException("library.notify.subscriptionTtlSec debe ser al menos 1: " + subscriptionTtlSec);
+        }
+        dispatch = dispatch.trim().toLowerCase(Locale.ROOT);
+        switch (dispatch) {
+            case DispatchExecutor.AUTO:
+            case DispatchExecutor.VIRTUAL:
+            case DispatchExecutor.POOL:
+            case DispatchExecutor.NONE:
+                break;
+            default:
+                throw new IllegalArgumentException("library.dispatch inválido: " + dispatch);
+        }
+        if (dispatchThreads < 1) {
+            throw new IllegalArgumentException("library.dispatch.threads debe ser al menos 1: " + dispatchThreads);
+        }
+        if (dispatchMaxQueued < 0) {
+            throw new IllegalArgumentException("library.dispatch.maxQueued no puede ser negativo: " + dispatchMaxQueued);
+        }
+        if (memoryLogSegmentMb < 1 || memoryLogSegmentMb > 1024) {
+            throw new IllegalArgumentException("library.memory.logSegmentMb debe estar entre 1 y 1024: " + memoryLogSegmentMb);
+        }
+        if (memoryFlushMs < 0) {
+            throw new IllegalArgumentException("library.memory.flushMs no puede ser negativo: " + memoryFlushMs);
+        }
+        if (memorySnapshotIntervalSec < 1) {
+            throw new IllegalArgumentException("library.memory.snapshotIntervalSec debe ser al menos 1: " + memorySnapshotIntervalSec);
+        }
+        return this;
+    }
+
+    // Indica si este servidor es una réplica de solo lectura
+    public boolean isReplica() {
+        return !replicaOf.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        String calls = ", dispatch=" + dispatch + "/" + dispatchThreads + "+" + dispatchMaxQueued
+                + (shardCount > 1 ? ", fragmento=" + shardIndex + "/" + shardCount : "");
+        if (isReplica()) {
+            return "réplica de " + replicaOf + ", tiempo límite=" + replicaTimeoutMs + "ms" + calls;
+        }
+        if (engine.equals(ENGINE_MEMORY)) {
+            return "motor=memory, dir=" + memoryDir + ", segmento=" + memoryLogSegmentMb + "MB, flush="
+                    + memoryFlushMs + "ms, snapshot=" + memorySnapshotIntervalSec + "s" + calls;
+        }
+        return "pool=" + poolSize + ", synchronous=" + synchronous + ", busyTimeoutMs=" + busyTimeoutMs
+                + ", cache=" + cacheSize
+                + (groupCommit ? ", groupCommit=" + groupCommitMaxBatch + "/" + groupCommitMaxDelayMs + "ms" : "")
+                + calls;
+    }
+}
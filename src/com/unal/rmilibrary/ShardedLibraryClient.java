@@ -0,0 +1,435 @@
+// ShardedLibraryClient.java
+package com.unal.rmilibrary;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+// Cliente enrutador para una instalación fragmentada por ISBN.
+//
+// Cada servidor (fragmento) tiene su propia BD y atiende los ISBN con
+// Shards.of(isbn, n) == su índice; la lista de URLs va en ese orden. Las operaciones
+// por ISBN van directo al fragmento dueño; los lotes se parten por fragmento y se envían
+// en paralelo. loanByTitle, searchBooks, listBooks y los listados de préstamos consultan a todos y
+// combinan las respuestas. Cada fragmento se usa a través de un LibraryServiceClient
+// (reconexión, reintentos y caché de consultas).
+//
+// Con una sola URL se comporta igual que un LibraryServiceClient.
+public class ShardedLibraryClient implements LibraryService, AutoCloseable {
+
+    // Intercalado de los resultados de searchBooks: título y después ISBN, comparando como
+    // cada fragmento ordena su página (ORDER BY title, isbn, sensible a mayúsculas); con otro
+    // orden el intercalado saltaría o repetiría libros entre páginas
+    private static final Comparator<BookSummary> BY_TITLE = Comparator
+            .comparing((BookSummary b) -> b.title)
+            .thenComparing(b -> b.isbn);
+
+    private final List<LibraryServiceClient> shards;
+
+    public ShardedLibraryClient(List<String> urls) {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("Se necesita al menos un servidor");
+        }
+        List<LibraryServiceClient> clients = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            clients.add(new LibraryServiceClient(url));
+        }
+        this.shards = Collections.unmodifiableList(clients);
+    }
+
+    // URL RMI a partir de "host", "host:puerto" o "host:puerto/nombre"
+    public static String url(String server) {
+        String s = server.trim();
+        String name = "LibraryService";
+        int slash = s.indexOf('/');
+        if (slash >= 0) {
+            name = s.substring(slash + 1);
+            s = s.substring(0, slash);
+        }
+        return "rmi://" + (s.contains(":") ? s : s + ":1099") + "/" + name;
+    }
+
+    // Conecta con todos los fragmentos ya, para avisar pronto si alguno no está
+    public ShardedLibraryClient connect() throws RemoteException {
+        for (LibraryServiceClient c : shards) {
+            c.connect();
+        }
+        return this;
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    private LibraryServiceClient shardFor(String isbn) {
+        return shards.get(isbn == null ? 0 : Shards.of(isbn, shards.size()));
+    }
+
+    // Espera el resultado de una llamada en paralelo, con la excepción original
+    private static <T> T await(CompletableFuture<T> f) throws RemoteException {
+        try {
+            return f.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrumpido esperando a un fragmento", ex);
+        } catch (ExecutionException | CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RemoteException) {
+                throw (RemoteException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RemoteException("Error en un fragmento", cause);
+        }
+    }
+
+    // ---- Operaciones por ISBN ----
+
+    @Override
+    public QueryResponse queryByISBN(String isbn) throws RemoteException {
+        return shardFor(isbn).queryByISBN(isbn);
+    }
+
+    @Override
+    public LoanResponse loanByISBN(String isbn, String userId) throws RemoteException {
+        return shardFor(isbn).loanByISBN(isbn, userId);
+    }
+
+    @Override
+    public ReturnResponse returnBook(String isbn, String userId) throws RemoteException {
+        return shardFor(isbn).returnBook(isbn, userId);
+    }
+
+    // Lote sobre una parte de los ISBN, en el fragmento indicado
+    private interface BatchCall<T> {
+        CompletableFuture<List<T>> run(LibraryServiceClient shard, List<String> isbns);
+    }
+
+    // Parte el lote por fragmento, envía las partes en paralelo y arma el resultado en el
+    // orden original. Cada fragmento confirma su parte por separado
+    private <T> List<T> split(List<String> isbns, BatchCall<T> call) throws RemoteException {
+        if (isbns == null || shards.size() == 1) {
+            return await(call.run(shards.get(0), isbns)); // el servidor valida el lote
+        }
+        int n = shards.size();
+        List<List<String>> parts = new ArrayList<>(n);
+        int[] shardOf = new int[isbns.size()];
+        for (int s = 0; s < n; s++) {
+            parts.add(new ArrayList<>());
+        }
+        for (int i = 0; i < isbns.size(); i++) {
+            String isbn = isbns.get(i);
+            shardOf[i] = isbn == null ? 0 : Shards.of(isbn, n);
+            parts.get(shardOf[i]).add(isbn);
+        }
+        List<CompletableFuture<List<T>>> futures = new ArrayList<>(n);
+        for (int s = 0; s < n; s++) {
+            futures.add(parts.get(s).isEmpty() ? null : call.run(shards.get(s), parts.get(s)));
+        }
+        List<List<T>> done = new ArrayList<>(n);
+        for (CompletableFuture<List<T>> f : futures) {
+            done.add(f == null ? List.of() : await(f));
+        }
+        int[] next = new int[n];
+        List<T> results = new ArrayList<>(isbns.size());
+        for (int i = 0; i < isbns.size(); i++) {
+            results.add(done.get(shardOf[i]).get(next[shardOf[i]]++));
+        }
+        return results;
+    }
+
+    @Override
+    public List<QueryResponse> queryMany(List<String> isbns) throws RemoteException {
+        return split(isbns, LibraryServiceClient::queryManyAsync);
+    }
+
+    @Override
+    public List<LoanResponse> loanMany(List<String> isbns, String userId) throws RemoteException {
+        return split(isbns, (shard, part) -> shard.loanManyAsync(part, userId));
+    }
+
+    @Override
+    public List<ReturnResponse> returnMany(List<String> isbns, String userId) throws RemoteException {
+        return split(isbns, (shard, part) -> shard.returnManyAsync(part, userId));
+    }
+
+    // ---- Operaciones sobre todos los fragmentos ----
+
+    // Los ejemplares de un título pueden estar en varios fragmentos. Primero se busca el
+    // título en todos a la vez para ordenarlos por ejemplares disponibles; después se pide
+    // el préstamo de a uno, en ese orden, hasta que alguno lo confirme (así nunca se
+    // prestan dos ejemplares)
+    @Override
+    public LoanResponse loanByTitle(String title, String userId) throws RemoteException {
+        if (shards.size() == 1) {
+            return shards.get(0).loanByTitle(title, userId);
+        }
+        List<CompletableFuture<SearchResponse>> probes = new ArrayList<>(shards.size());
+        for (LibraryServiceClient shard : shards) {
+            probes.add(shard.searchBooksAsync(new SearchQuery(title, SearchQuery.TITLE, SearchQuery.KEYWORD,
+                    0, SearchQuery.MAX_LIMIT)));
+        }
+        int[] available = new int[shards.size()];
+        for (int s = 0; s < shards.size(); s++) {
+            try {
+                SearchResponse r = await(probes.get(s));
+                for (BookSummary b : r.books) {
+                    if (b.title.equals(title)) {
+                        available[s] += b.availableCopies;
+                    }
+                }
+            } catch (RemoteException | RuntimeException ex) {
+                // Sin la búsqueda el fragmento queda al final, pero igual se intenta
+            }
+        }
+        List<Integer> order = new ArrayList<>(shards.size());
+        for (int s = 0; s < shards.size(); s++) {
+            order.add(s);
+        }
+        order.sort((a, b) -> available[b] - available[a]);
+        LoanResponse best = null;
+        for (int s : order) {
+            LoanResponse r = shards.get(s).loanByTitle(title, userId);
+            if (ResponseStatus.isSuccess(r.status)) {
+                return r;
+            }
+            if (best == null || failureRank(r.status) > failureRank(best.status)) {
+                best = r;
+            }
+        }
+        return best;
+    }
+
+    // Qué fallo informar cuando ningún fragmento pudo prestar el título
+    private static int failureRank(int status) {
+        switch (status) {
+            case ResponseStatus.NO_COPIES_FOR_TITLE:
+                return 3; // el título existe en algún fragmento
+            case ResponseStatus.BUSY:
+                return 2;
+            case ResponseStatus.TITLE_NOT_FOUND:
+                return 0;
+            default:
+                return 1;
+        }
+    }
+
+    // Resultados de búsqueda de un fragmento, leídos por páginas a medida que se combinan
+    private static final class SearchCursor {
+        final LibraryServiceClient shard;
+        final SearchQuery query;
+        List<BookSummary> books;
+        int pos;
+        int fetched;       // resultados ya pedidos al fragmento
+        int total;
+
+        SearchCursor(LibraryServiceClient shard, SearchQuery query) {
+            this.shard = shard;
+            this.query = query;
+        }
+
+        // Pide la página siguiente si se consumió la actual y el fragmento tiene más.
+        // Retorna false si el fragmento respondió BUSY
+        boolean fill() throws RemoteException {
+            if (pos < books.size() || fetched >= total) {
+                return true;
+            }
+            return accept(shard.searchBooks(page(fetched)));
+        }
+
+        SearchQuery page(int offset) {
+            return new SearchQuery(query.text, query.field, query.mode, offset, SearchQuery.MAX_LIMIT);
+        }
+
+        boolean accept(SearchResponse r) {
+            if (r.status == ResponseStatus.BUSY) {
+                return false;
+            }
+            books = r.books;
+            pos = 0;
+            total = r.total;
+            fetched = r.offset + r.books.size();
+            if (r.books.isEmpty()) {
+                total = fetched; // el catálogo cambió entre páginas: no hay más
+            }
+            return true;
+        }
+
+        BookSummary head() {
+            return pos < books.size() ? books.get(pos) : null;
+        }
+    }
+
+    // Combina los resultados de todos los fragmentos intercalándolos por título (cada
+    // fragmento los entrega en el orden de su índice, que es por título tras la carga
+    // inicial). El orden combinado es siempre el mismo, así que las páginas no se pisan.
+    // La primera página de cada fragmento se pide en paralelo y las siguientes solo si
+    // hacen falta: llegar a la página k cuesta leer k páginas de cada fragmento
+    @Override
+    public SearchResponse searchBooks(SearchQuery query) throws RemoteException {
+        if (shards.size() == 1 || query == null) {
+            return shards.get(0).searchBooks(query);
+        }
+        List<SearchCursor> cursors = new ArrayList<>(shards.size());
+        List<CompletableFuture<SearchResponse>> first = new ArrayList<>(shards.size());
+        for (LibraryServiceClient shard : shards) {
+            SearchCursor c = new SearchCursor(shard, query);
+            cursors.add(c);
+            first.add(shard.searchBooksAsync(c.page(0)));
+        }
+        int total = 0;
+        for (int s = 0; s < cursors.size(); s++) {
+            if (!cursors.get(s).accept(await(first.get(s)))) {
+                return new SearchResponse(ResponseStatus.BUSY, List.of(), 0, query.offset);
+            }
+            total += cursors.get(s).total;
+        }
+        List<BookSummary> page = new ArrayList<>(Math.min(query.limit, Math.max(0, total - query.offset)));
+        for (int skipped = 0; page.size() < query.limit; ) {
+            SearchCursor min = null;
+            for (SearchCursor c : cursors) {
+                if (!c.fill()) {
+                    return new SearchResponse(ResponseStatus.BUSY, List.of(), 0, query.offset);
+                }
+                if (c.head() != null && (min == null || BY_TITLE.compare(c.head(), min.head()) < 0)) {
+                    min = c;
+                }
+            }
+            if (min == null) {
+                break;
+            }
+            BookSummary b = min.head();
+            min.pos++;
+            if (skipped < query.offset) {
+                skipped++;
+            } else {
+                page.add(b);
+            }
+        }
+        return new SearchResponse(page, total, query.offset);
+    }
+
+    // Cada fragmento devuelve su página ordenada por ISBN después del mismo cursor: los
+    // primeros 'limit' de la unión son la página global
+    @Override
+    public BookPage listBooks(String afterIsbn, int limit) throws RemoteException {
+        if (shards.size() == 1) {
+            return shards.get(0).listBooks(afterIsbn, limit);
+        }
+        List<CompletableFuture<BookPage>> futures = new ArrayList<>(shards.size());
+        for (LibraryServiceClient shard : shards) {
+            futures.add(shard.listBooksAsync(afterIsbn, limit));
+        }
+        List<BookSummary> all = new ArrayList<>();
+        boolean more = false;
+        for (CompletableFuture<BookPage> f : futures) {
+            BookPage p = await(f);
+            if (p.status == ResponseStatus.BUSY) {
+                return new BookPage(ResponseStatus.BUSY, List.of(), afterIsbn);
+            }
+            all.addAll(p.books);
+            more |= p.nextAfterIsbn != null;
+        }
+        all.sort(Comparator.comparing(b -> b.isbn));
+        if (all.size() > limit) {
+            all = new ArrayList<>(all.subList(0, limit));
+            more = true;
+        }
+        return new BookPage(ResponseStatus.OK, all, more && !all.isEmpty() ? all.get(all.size() - 1).isbn : null);
+    }
+
+    // Los préstamos de un usuario quedan en el fragmento de cada libro, con ids propios de
+    // ese fragmento. Se recorren los fragmentos uno tras otro; el cursor combina el
+    // fragmento y el último id leído en él (id * fragmentos + fragmento), así que los
+    // LoanRecord.id son los de cada fragmento, no únicos entre fragmentos
+    @Override
+    public LoanPage listLoans(String userId, long afterId, int limit) throws RemoteException {
+        return loansByShard(afterId, (shard, after) -> shard.listLoans(userId, after, limit));
+    }
+
+    // Los préstamos activos y los vencidos se recorren igual que listLoans
+    @Override
+    public LoanPage listActiveLoans(String userId, long afterId, int limit) throws RemoteException {
+        return loansByShard(afterId, (shard, after) -> shard.listActiveLoans(userId, after, limit));
+    }
+
+    @Override
+    public LoanPage getOverdueLoans(long afterId, int limit) throws RemoteException {
+        return loansByShard(afterId, (shard, after) -> shard.getOverdueLoans(after, limit));
+    }
+
+    // Cada fragmento lleva las filas de espera de sus ISBN
+    @Override
+    public QueryResponse subscribeAvailability(String isbn, String userId, AvailabilityCallback callback)
+            throws RemoteException {
+        return shardFor(isbn).subscribeAvailability(isbn, userId, callback);
+    }
+
+    @Override
+    public void unsubscribeAvailability(String isbn, String userId) throws RemoteException {
+        shardFor(isbn).unsubscribeAvailability(isbn, userId);
+    }
+
+    // Página de préstamos de un fragmento, después de un id de ese fragmento
+    private interface LoanPageCall {
+        LoanPage run(LibraryServiceClient shard, long afterId) throws RemoteException;
+    }
+
+    private LoanPage loansByShard(long afterId, LoanPageCall call) throws RemoteException {
+        int n = shards.size();
+        if (afterId < 0) {
+            throw new IllegalArgumentException("Cursor de préstamos inválido: " + afterId);
+        }
+        int s = (int) (afterId % n);
+        long after = afterId / n;
+        while (true) {
+            LoanPage p = call.run(shards.get(s), after);
+            if (p.status == ResponseStatus.BUSY) {
+                return new LoanPage(ResponseStatus.BUSY, List.of(), afterId);
+            }
+            if (p.nextAfterId != LoanPage.END) {
+                return new LoanPage(ResponseStatus.OK, p.loans, p.nextAfterId * n + s);
+            }
+            if (s == n - 1) {
+                return new LoanPage(ResponseStatus.OK, p.loans, LoanPage.END);
+            }
+            if (!p.loans.isEmpty()) {
+                return new LoanPage(ResponseStatus.OK, p.loans, s + 1); // el siguiente, desde el inicio
+            }
+            s++;
+            after = 0;
+        }
+    }
+
+    // ---- Estado ----
+
+    public String describeStats() {
+        StringBuilder b = new StringBuilder();
+        for (int s = 0; s < shards.size(); s++) {
+            if (s > 0) {
+                b.append('\n');
+            }
+            if (shards.size() > 1) {
+                b.append("fragmento ").append(s).append(' ');
+            }
+            b.append(shards.get(s).describeStats());
+        }
+        return b.toString();
+    }
+
+    @Override
+    public void close() {
+        for (LibraryServiceClient c : shards) {
+            c.close();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+// Shards.java
+package com.unal.rmilibrary;
+
+// Reparto de los ISBN entre fragmentos (servidores con su propia BD).
+//
+// Servidor, cliente enrutador y CatalogTool usan la misma función, así todos coinciden
+// en dónde vive cada libro. String.hashCode está definido por la especificación de
+// Java, de modo que el resultado no depende de la JVM ni de la máquina. Cambiar la
+// cantidad de fragmentos cambia el dueño de casi todos los ISBN: hay que volver a
+// cargar el catálogo (CatalogTool import en cada fragmento).
+public final class Shards {
+
+    private Shards() {
+    }
+
+    // Fragmento (0..count-1) dueño del ISBN
+    public static int of(String isbn, int count) {
+        return Math.floorMod(isbn.hashCode(), count);
+    }
+}